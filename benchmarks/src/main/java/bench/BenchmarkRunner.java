@@ -0,0 +1,23 @@
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Executa todos os benchmarks com o profiler de GC, que acrescenta a taxa de alocação (gc.alloc.rate e
+ * gc.alloc.rate.norm, em bytes por pesquisa) aos resultados de throughput e tempo médio.
+ * Utilização: java -cp target/benchmarks.jar bench.BenchmarkRunner [expressão regular dos benchmarks]
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "bench\\..*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(opt).run();
+    }
+}
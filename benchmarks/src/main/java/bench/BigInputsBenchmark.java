@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark dos três algoritmos com os números grandes (positivos e negativos) usados nos BigTripleUnitTests.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BigInputsBenchmark {
+
+    @Param({"BestFirst", "BestFirstA", "BestFirstIDA"})
+    public String engine;
+
+    @Param({"1000", "2200", "-2000", "-3500"})
+    public int input;
+
+    private EngineHandle handle;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        handle = new EngineHandle(engine, input);
+    }
+
+    @Benchmark
+    public void solve(Blackhole bh) throws Throwable {
+        Iterator<?> it = handle.solve();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+
+/**
+ * A classe EngineHandle permite aos benchmarks chamar os algoritmos de pesquisa.
+ * Os algoritmos estão no pacote por omissão, que não pode ser importado a partir de um pacote com nome (e o JMH
+ * não aceita benchmarks no pacote por omissão), por isso as classes são obtidas por nome e o método solve é
+ * chamado através de um MethodHandle. O custo desta chamada é desprezável face ao custo de uma pesquisa.
+ */
+final class EngineHandle {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private final Object engine;
+    private final MethodHandle solve;
+    private final Object start;
+    private final Object goal;
+
+    /**
+     * Construtor para a classe EngineHandle.
+     *
+     * @param engineName O nome da classe do algoritmo (por exemplo, "BestFirstA")
+     * @param input O número inicial; o objetivo é o triplo deste número
+     */
+    EngineHandle(String engineName, int input) throws ReflectiveOperationException {
+        Class<?> engineClass = Class.forName(engineName);
+        Class<?> operation = Class.forName("Operation");
+        MethodHandle newOperation = LOOKUP.findConstructor(operation, MethodType.methodType(void.class, int.class));
+        engine = engineClass.getConstructor().newInstance();
+        solve = LOOKUP.unreflect(findSolve(engineClass));
+        try {
+            start = newOperation.invoke(input);
+            goal = newOperation.invoke(input * 3);
+        } catch (Throwable t) {
+            throw new ReflectiveOperationException(t);
+        }
+    }
+
+    private static Method findSolve(Class<?> engineClass) throws NoSuchMethodException {
+        for (Method m : engineClass.getMethods()) {
+            if (m.getName().equals("solve") && m.getParameterCount() == 2) {
+                return m;
+            }
+        }
+        throw new NoSuchMethodException(engineClass.getName() + ".solve");
+    }
+
+    /**
+     * Resolve o problema e retorna o caminho encontrado.
+     *
+     * @return Um iterador para o caminho, ou null se não houver solução
+     */
+    Iterator<?> solve() throws Throwable {
+        return (Iterator<?>) solve.invoke(engine, start, goal);
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark dos três algoritmos com os números pequenos (positivos e negativos) usados nos BigTripleUnitTests.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SmallInputsBenchmark {
+
+    @Param({"BestFirst", "BestFirstA", "BestFirstIDA"})
+    public String engine;
+
+    @Param({"30", "54", "-6", "-7", "-23", "-70"})
+    public int input;
+
+    private EngineHandle handle;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException {
+        handle = new EngineHandle(engine, input);
+    }
+
+    @Benchmark
+    public void solve(Blackhole bh) throws Throwable {
+        Iterator<?> it = handle.solve();
+        while (it.hasNext()) {
+            bh.consume(it.next());
+        }
+    }
+}
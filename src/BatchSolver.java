@@ -0,0 +1,300 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A classe BatchSolver resolve muitos problemas independentes (pares de layout inicial e objetivo) em paralelo.
+ * Os problemas são distribuídos por um executor configurável e cada pesquisa usa uma instância do BestFirstAInt
+ * retirada de um conjunto limitado, cujos arrays são mantidos entre pesquisas. O conjunto tem tantas instâncias como o
+ * paralelismo: com virtual threads as instâncias continuam a ser reutilizadas e nunca existem mais do que essas, e
+ * quando há mais pesquisas simultâneas do que instâncias as restantes esperam que uma seja devolvida.
+ * Os resultados podem ser obtidos pela ordem de entrada ou à medida que as pesquisas terminam, e cada pesquisa pode ser
+ * limitada por um {@link SearchBudget}.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BatchSolver implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean executorProprio;
+    private final ArrayBlockingQueue<BestFirstAInt> motores;
+    private final int maxMotores;
+    private final AtomicInteger criados = new AtomicInteger();
+
+    /**
+     * A classe Query representa um problema a resolver: um layout inicial e um layout objetivo.
+     */
+    static class Query {
+        private final Operation start;
+        private final Operation goal;
+
+        /**
+         * Construtor para a classe Query.
+         *
+         * @param start O layout inicial
+         * @param goal O layout objetivo
+         */
+        public Query(Operation start, Operation goal) {
+            this.start = start;
+            this.goal = goal;
+        }
+
+        /**
+         * Obtém o layout inicial do problema.
+         *
+         * @return O layout inicial
+         */
+        public Operation getStart() {return start;}
+
+        /**
+         * Obtém o layout objetivo do problema.
+         *
+         * @return O layout objetivo
+         */
+        public Operation getGoal() {return goal;}
+    }
+
+    /**
+     * A classe Result representa a resposta a um problema: o resultado da pesquisa ({@link SearchResult}) e a posição
+     * do problema na entrada.
+     */
+    static class Result {
+        private final int index;
+        private final Query query;
+        private final SearchResult result;
+
+        Result(int index, Query query, SearchResult result) {
+            this.index = index;
+            this.query = query;
+            this.result = result;
+        }
+
+        /**
+         * Obtém a posição do problema na lista de entrada.
+         *
+         * @return A posição do problema
+         */
+        public int getIndex() {return index;}
+
+        /**
+         * Obtém o problema a que este resultado responde.
+         *
+         * @return O problema
+         */
+        public Query getQuery() {return query;}
+
+        /**
+         * Obtém o resultado da pesquisa, com o estado em que terminou, o limite inferior e os estados expandidos.
+         *
+         * @return O resultado da pesquisa
+         */
+        public SearchResult getResult() {return result;}
+
+        /**
+         * Obtém o caminho encontrado, do layout inicial até ao objetivo.
+         *
+         * @return O caminho, ou uma lista vazia se não foi encontrada uma solução
+         */
+        public List<SearchEngine.State> getPath() {return result.getPath();}
+
+        /**
+         * Verifica se foi encontrada uma solução.
+         *
+         * @return true se foi encontrado um caminho, false caso contrário
+         */
+        public boolean isSolved() {return result.isSolved();}
+
+        /**
+         * Obtém o custo do caminho encontrado.
+         *
+         * @return O custo do caminho, ou infinito se não foi encontrada uma solução
+         */
+        public double getCost() {return result.getCost();}
+    }
+
+    /**
+     * Construtor para a classe BatchSolver, com um ForkJoinPool com uma thread por processador disponível.
+     */
+    public BatchSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construtor para a classe BatchSolver, com um ForkJoinPool próprio.
+     *
+     * @param paralelismo O número de threads usadas
+     */
+    public BatchSolver(int paralelismo) {
+        this(new ForkJoinPool(paralelismo), true, paralelismo);
+    }
+
+    /**
+     * Construtor para a classe BatchSolver, com um executor fornecido (por exemplo, um executor de virtual threads)
+     * e uma instância do BestFirstAInt por processador disponível.
+     * O executor não é terminado por {@link #close()}.
+     *
+     * @param executor O executor onde as pesquisas são executadas
+     */
+    public BatchSolver(ExecutorService executor) {
+        this(executor, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construtor para a classe BatchSolver, com um executor fornecido e um número máximo de pesquisas simultâneas.
+     * O executor não é terminado por {@link #close()}.
+     *
+     * @param executor O executor onde as pesquisas são executadas
+     * @param paralelismo O número de instâncias do BestFirstAInt, e por isso de pesquisas simultâneas
+     */
+    public BatchSolver(ExecutorService executor, int paralelismo) {
+        this(executor, false, paralelismo);
+    }
+
+    private BatchSolver(ExecutorService executor, boolean executorProprio, int paralelismo) {
+        if (paralelismo < 1) {
+            throw new IllegalArgumentException("É necessária pelo menos uma instância do BestFirstAInt");
+        }
+        this.executor = Objects.requireNonNull(executor);
+        this.executorProprio = executorProprio;
+        this.motores = new ArrayBlockingQueue<>(paralelismo);
+        this.maxMotores = paralelismo;
+    }
+
+    /**
+     * Retorna o número de instâncias do BestFirstAInt criadas até agora, que nunca passa do paralelismo.
+     *
+     * @return O número de instâncias criadas
+     */
+    public int getEngineCount() {
+        return criados.get();
+    }
+
+    /**
+     * Resolve todos os problemas e retorna os resultados pela mesma ordem da entrada.
+     *
+     * @param queries Os problemas a resolver
+     * @return A lista de resultados, pela ordem dos problemas
+     * @throws InterruptedException se a thread for interrompida enquanto espera pelos resultados
+     */
+    public List<Result> solveAll(List<Query> queries) throws InterruptedException {
+        return solveAll(queries, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Resolve todos os problemas, cada um dentro do mesmo orçamento, e retorna os resultados pela mesma ordem da
+     * entrada. Se a thread for interrompida, as pesquisas ainda em curso são interrompidas e param na próxima
+     * verificação do orçamento.
+     *
+     * @param queries Os problemas a resolver
+     * @param orcamento Os limites de cada pesquisa
+     * @return A lista de resultados, pela ordem dos problemas
+     * @throws InterruptedException se a thread for interrompida enquanto espera pelos resultados
+     */
+    public List<Result> solveAll(List<Query> queries, SearchBudget orcamento) throws InterruptedException {
+        Objects.requireNonNull(orcamento);
+        List<Future<Result>> futuros = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            futuros.add(executor.submit(tarefa(i, queries.get(i), orcamento)));
+        }
+        List<Result> resultados = new ArrayList<>(queries.size());
+        try {
+            for (Future<Result> f : futuros) {
+                resultados.add(obter(f));
+            }
+        } finally {
+            for (Future<Result> f : futuros) {
+                f.cancel(true);
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Resolve todos os problemas e entrega cada resultado ao consumidor assim que a sua pesquisa termina.
+     * O consumidor é chamado sempre na thread que invoca este método.
+     *
+     * @param queries Os problemas a resolver
+     * @param consumidor O consumidor dos resultados
+     * @throws InterruptedException se a thread for interrompida enquanto espera pelos resultados
+     */
+    public void solveAll(Iterable<Query> queries, Consumer<Result> consumidor) throws InterruptedException {
+        solveAll(queries, SearchBudget.UNLIMITED, consumidor);
+    }
+
+    /**
+     * Resolve todos os problemas, cada um dentro do mesmo orçamento, e entrega cada resultado ao consumidor assim que
+     * a sua pesquisa termina. O consumidor é chamado sempre na thread que invoca este método.
+     *
+     * @param queries Os problemas a resolver
+     * @param orcamento Os limites de cada pesquisa
+     * @param consumidor O consumidor dos resultados
+     * @throws InterruptedException se a thread for interrompida enquanto espera pelos resultados
+     */
+    public void solveAll(Iterable<Query> queries, SearchBudget orcamento, Consumer<Result> consumidor) throws InterruptedException {
+        Objects.requireNonNull(orcamento);
+        CompletionService<Result> conclusoes = new ExecutorCompletionService<>(executor);
+        List<Future<Result>> futuros = new ArrayList<>();
+        int i = 0;
+        for (Query q : queries) {
+            futuros.add(conclusoes.submit(tarefa(i++, q, orcamento)));
+        }
+        try {
+            for (int n = 0; n < futuros.size(); n++) {
+                consumidor.accept(obter(conclusoes.take()));
+            }
+        } finally {
+            for (Future<Result> f : futuros) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Cria a tarefa que resolve um problema com um BestFirstAInt do conjunto, devolvendo-o no fim.
+     */
+    private Callable<Result> tarefa(int index, Query q, SearchBudget orcamento) {
+        return () -> {
+            BestFirstAInt motor = obterMotor();
+            try {
+                return new Result(index, q, motor.solve(q.start, q.goal, orcamento));
+            } finally {
+                motores.offer(motor);
+            }
+        };
+    }
+
+    /**
+     * Retira uma instância livre do conjunto; se não houver nenhuma, cria uma nova enquanto não forem atingidas as
+     * maxMotores instâncias e, depois disso, espera que outra pesquisa devolva a sua.
+     */
+    private BestFirstAInt obterMotor() throws InterruptedException {
+        BestFirstAInt motor = motores.poll();
+        if (motor != null) {
+            return motor;
+        }
+        for (int n = criados.get(); n < maxMotores; n = criados.get()) {
+            if (criados.compareAndSet(n, n + 1)) {
+                return new BestFirstAInt();
+            }
+        }
+        return motores.take();
+    }
+
+    private static Result obter(Future<Result> f) throws InterruptedException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Erro ao resolver um problema", e.getCause());
+        }
+    }
+
+    /**
+     * Termina o executor, se ele tiver sido criado por esta classe.
+     */
+    @Override
+    public void close() {
+        if (executorProprio) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,407 @@
+import java.util.*;
+
+/**
+ * A classe BestFirstAInt é uma versão do algoritmo A* (BestFirstA) especializada para layouts de valor inteiro, como a Operation.
+ * Em vez de criar um objeto State, uma lista de filhos e entradas num HashMap por cada expansão, os nós são guardados em
+ * arrays primitivos paralelos (valor, g, f, pai), a lista de abertos é um heap de índices inteiros e a lista de fechados
+ * é uma tabela de dispersão de endereçamento aberto de valor para índice de nó.
+ * O heap, os cortes pelos limites do custo e a rejeição de duplicados são os do BestFirstA, pelo que os dois encontram
+ * o mesmo caminho, mesmo quando a heurística da Operation sobrestima o custo.
+ * Os arrays são reutilizados entre chamadas a solve, pelo que uma instância não deve ser partilhada entre threads.
+ * Uma pesquisa pode ser limitada por um {@link SearchBudget} e pára se a thread for interrompida.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstAInt {
+    private static final int VAZIO = -1;
+    private static final int FECHADO = -1;
+    // O relógio e a interrupção da thread só são consultados de tantas em tantas expansões
+    private static final int EXPANSOES_ENTRE_RELOGIO = 64;
+
+    // Nós guardados em arrays paralelos
+    private int[] valor = new int[1024];
+    private int[] g = new int[1024];
+    private int[] f = new int[1024];
+    private int[] pai = new int[1024];
+    private int[] posHeap = new int[1024];
+    private int nos;
+
+    // Lista de abertos: heap binário de índices de nós, ordenado por f
+    private int[] abertos = new int[1024];
+    private int tamanhoAbertos;
+
+    // Tabela de endereçamento aberto de valor para índice de nó (abertos e fechados)
+    private int[] tabelaValores = new int[2048];
+    private int[] tabelaNos = new int[2048];
+    private int ocupados;
+
+    // Resultado da última pesquisa: o motivo da paragem (null se terminou), as expansões e o maior f expandido
+    private SearchResult.Status paragem;
+    private long expansoes;
+    private int limiteInferior;
+
+    private SearchListener listener = SearchListener.NONE;
+
+    /**
+     * A classe State representa um estado do caminho devolvido pelo algoritmo BestFirstAInt.
+     * Só é criada no fim da pesquisa, ao reconstruir o caminho.
+     */
+    static class State {
+        private final Operation layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Operation l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo usando o algoritmo A*.
+     * Os sucessores são gerados com {@link Operation#childValue(int, int)} e a heurística com
+     * {@link Operation#heuristic(int, int)}, sem alocar objetos por cada expansão.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     */
+    final public Iterator<State> solve(Operation s, Operation goal) {
+        int objetivo = procurar(s, goal, SearchBudget.UNLIMITED);
+        return objetivo == VAZIO ? null : reconstruirCaminho(objetivo);
+    }
+
+    /**
+     * Resolve o problema dentro de um orçamento de tempo e de estados expandidos, como
+     * {@link SearchEngine#solve(Ilayout, Ilayout, SearchBudget)}. A pesquisa também pára se a thread for interrompida
+     * (o estado de interrupção é mantido). O caminho do resultado é formado por estados do {@link SearchEngine}.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param orcamento Os limites da pesquisa
+     * @return O resultado da pesquisa: a solução, a prova de que não há solução ou o limite inferior atingido
+     */
+    public SearchResult solve(Operation s, Operation goal, SearchBudget orcamento) {
+        int objetivo = procurar(s, goal, orcamento);
+        if (objetivo != VAZIO) {
+            List<SearchEngine.State> caminho = caminhoMotor(objetivo);
+            double inferior = Math.min(g[objetivo], Math.max(limiteInferior, tamanhoAbertos > 0 ? f[abertos[0]] : g[objetivo]));
+            return new SearchResult(SearchResult.Status.SOLVED, caminho, inferior, expansoes);
+        }
+        if (paragem != null) {
+            return new SearchResult(paragem, null, limiteInferior, expansoes);
+        }
+        return new SearchResult(SearchResult.Status.UNSOLVABLE, null, Double.POSITIVE_INFINITY, expansoes);
+    }
+
+    /**
+     * Executa o A* até retirar o objetivo dos abertos, esgotar os abertos ou parar por causa do orçamento.
+     *
+     * @return O índice do nó objetivo, ou VAZIO se não foi encontrado (paragem indica se a pesquisa parou antes)
+     */
+    private int procurar(Operation s, Operation goal, SearchBudget orcamento) {
+        limpar();
+        listener.solveStarted("BestFirstAInt", s, goal);
+        long maxExpansoes = orcamento.getExpansoes();
+        long maxTempo = orcamento.getTempo() == null ? -1 : orcamento.getTempo().toNanos();
+        long inicio = System.nanoTime();
+        int objetivo = goal.getValue();
+        double limiteSuperior = s.upperBound(goal);
+        int raiz = novoNo(s.getValue(), 0, Operation.heuristic(s.getValue(), objetivo), VAZIO);
+        inserirTabela(s.getValue(), raiz);
+        push(raiz);
+
+        while (tamanhoAbertos > 0) {
+            if (valor[abertos[0]] == objetivo) {
+                return pop();
+            }
+            if (esgotado(maxExpansoes, inicio, maxTempo)) {
+                listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+                return VAZIO;
+            }
+            int atual = pop();
+            expansoes++;
+            limiteInferior = Math.max(limiteInferior, f[atual]);
+            int gerados = 0;
+            int duplicados = 0;
+            for (int move = 0; move < Operation.MOVES; move++) {
+                // Tal como na Operation, os movimentos que saem dos limites de int não são gerados
+                if (Operation.overflows(valor[atual], move)) {
+                    continue;
+                }
+                int v = Operation.childValue(valor[atual], move);
+                // Tal como nos outros algoritmos, não se gera o pai do estado atual
+                if (pai[atual] != VAZIO && v == valor[pai[atual]]) {
+                    continue;
+                }
+                gerados++;
+                int existente = procurarTabela(v);
+                if (existente != VAZIO && posHeap[existente] == FECHADO) {
+                    duplicados++;
+                    continue;
+                }
+                int ng = g[atual] + Operation.moveCost(move);
+                // Os mesmos cortes pelos limites do custo que o SearchEngine faz, para que o heap tenha os mesmos nós
+                if (v == objetivo) {
+                    limiteSuperior = Math.min(limiteSuperior, ng);
+                } else if (ng + s.lowerBound(v, goal) > limiteSuperior) {
+                    continue;
+                }
+                if (existente == VAZIO) {
+                    int filho = novoNo(v, ng, ng + Operation.heuristic(v, objetivo), atual);
+                    inserirTabela(v, filho);
+                    push(filho);
+                } else if (ng < g[existente]) {
+                    // Caminho melhor para um estado que ainda está nos abertos
+                    f[existente] += ng - g[existente];
+                    g[existente] = ng;
+                    pai[existente] = atual;
+                    subir(posHeap[existente]);
+                } else {
+                    duplicados++;
+                }
+            }
+            listener.nodesExpanded(1, tamanhoAbertos);
+            listener.nodesGenerated(gerados);
+            listener.duplicatesRejected(duplicados);
+        }
+        listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        return VAZIO;
+    }
+
+    /**
+     * Verifica se a pesquisa tem de parar antes da próxima expansão, registando o motivo.
+     */
+    private boolean esgotado(long maxExpansoes, long inicio, long maxTempo) {
+        if (expansoes >= maxExpansoes) {
+            paragem = SearchResult.Status.BUDGET_EXHAUSTED;
+        } else if (expansoes % EXPANSOES_ENTRE_RELOGIO == 0) {
+            if (Thread.currentThread().isInterrupted()) {
+                paragem = SearchResult.Status.CANCELLED;
+            } else if (maxTempo >= 0 && System.nanoTime() - inicio >= maxTempo) {
+                paragem = SearchResult.Status.BUDGET_EXHAUSTED;
+            }
+        }
+        return paragem != null;
+    }
+
+    /**
+     * Reinicia as estruturas de dados, mantendo a capacidade já alocada.
+     */
+    private void limpar() {
+        paragem = null;
+        expansoes = 0;
+        limiteInferior = 0;
+        nos = 0;
+        tamanhoAbertos = 0;
+        ocupados = 0;
+        Arrays.fill(tabelaNos, VAZIO);
+    }
+
+    /**
+     * Cria um novo nó nos arrays paralelos, aumentando a sua capacidade se necessário.
+     *
+     * @return O índice do novo nó
+     */
+    private int novoNo(int v, int custo, int avaliacao, int p) {
+        if (nos == valor.length) {
+            int capacidade = nos * 2;
+            valor = Arrays.copyOf(valor, capacidade);
+            g = Arrays.copyOf(g, capacidade);
+            f = Arrays.copyOf(f, capacidade);
+            pai = Arrays.copyOf(pai, capacidade);
+            posHeap = Arrays.copyOf(posHeap, capacidade);
+        }
+        valor[nos] = v;
+        g[nos] = custo;
+        f[nos] = avaliacao;
+        pai[nos] = p;
+        return nos++;
+    }
+
+    /**
+     * Calcula a posição inicial de um valor na tabela de dispersão.
+     */
+    private int dispersao(int v) {
+        int h = v * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (tabelaValores.length - 1);
+    }
+
+    /**
+     * Procura um valor na tabela de dispersão.
+     *
+     * @return O índice do nó com esse valor, ou VAZIO se o valor ainda não foi gerado
+     */
+    private int procurarTabela(int v) {
+        int mascara = tabelaValores.length - 1;
+        for (int i = dispersao(v); tabelaNos[i] != VAZIO; i = (i + 1) & mascara) {
+            if (tabelaValores[i] == v) {
+                return tabelaNos[i];
+            }
+        }
+        return VAZIO;
+    }
+
+    /**
+     * Insere um valor (que ainda não existe) na tabela de dispersão, duplicando-a quando fica meio cheia.
+     */
+    private void inserirTabela(int v, int no) {
+        if (++ocupados * 2 > tabelaValores.length) {
+            int[] valoresAntigos = tabelaValores;
+            int[] nosAntigos = tabelaNos;
+            tabelaValores = new int[valoresAntigos.length * 2];
+            tabelaNos = new int[nosAntigos.length * 2];
+            Arrays.fill(tabelaNos, VAZIO);
+            for (int i = 0; i < nosAntigos.length; i++) {
+                if (nosAntigos[i] != VAZIO) {
+                    colocar(valoresAntigos[i], nosAntigos[i]);
+                }
+            }
+        }
+        colocar(v, no);
+    }
+
+    private void colocar(int v, int no) {
+        int mascara = tabelaValores.length - 1;
+        int i = dispersao(v);
+        while (tabelaNos[i] != VAZIO) {
+            i = (i + 1) & mascara;
+        }
+        tabelaValores[i] = v;
+        tabelaNos[i] = no;
+    }
+
+    /**
+     * Compara dois nós pelo valor de f. Os empates não são desfeitos, tal como no heap da {@link IndexedPriorityQueue}
+     * usada pelo BestFirstA: com as mesmas inserções pela mesma ordem, os dois heaps retiram os nós pela mesma ordem.
+     */
+    private boolean menor(int a, int b) {
+        return f[a] < f[b];
+    }
+
+    private void push(int no) {
+        if (tamanhoAbertos == abertos.length) {
+            abertos = Arrays.copyOf(abertos, tamanhoAbertos * 2);
+        }
+        abertos[tamanhoAbertos] = no;
+        posHeap[no] = tamanhoAbertos;
+        subir(tamanhoAbertos++);
+    }
+
+    /**
+     * Remove o nó com menor f da lista de abertos e marca-o como fechado.
+     */
+    private int pop() {
+        int topo = abertos[0];
+        int ultimo = abertos[--tamanhoAbertos];
+        if (tamanhoAbertos > 0) {
+            abertos[0] = ultimo;
+            posHeap[ultimo] = 0;
+            descer(0);
+        }
+        posHeap[topo] = FECHADO;
+        return topo;
+    }
+
+    private void subir(int i) {
+        int no = abertos[i];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!menor(no, abertos[p])) break;
+            abertos[i] = abertos[p];
+            posHeap[abertos[i]] = i;
+            i = p;
+        }
+        abertos[i] = no;
+        posHeap[no] = i;
+    }
+
+    private void descer(int i) {
+        int no = abertos[i];
+        while (true) {
+            int filho = 2 * i + 1;
+            if (filho >= tamanhoAbertos) break;
+            if (filho + 1 < tamanhoAbertos && menor(abertos[filho + 1], abertos[filho])) filho++;
+            if (!menor(abertos[filho], no)) break;
+            abertos[i] = abertos[filho];
+            posHeap[abertos[i]] = i;
+            i = filho;
+        }
+        abertos[i] = no;
+        posHeap[no] = i;
+    }
+
+    /**
+     * Reconstrói o caminho a partir do nó objetivo até o nó inicial, seguindo os índices dos pais.
+     *
+     * @param objetivo O índice do nó objetivo
+     * @return Um iterador para o caminho reconstruído
+     */
+    private Iterator<State> reconstruirCaminho(int objetivo) {
+        int comprimento = 0;
+        for (int n = objetivo; n != VAZIO; n = pai[n]) {
+            comprimento++;
+        }
+        State[] result = new State[comprimento];
+        for (int n = objetivo; n != VAZIO; n = pai[n]) {
+            result[--comprimento] = new State(new Operation(valor[n], pai[n] == VAZIO ? 0 : g[n] - g[pai[n]]), g[n]);
+        }
+        listener.solveFinished(true, g[objetivo], result.length - 1);
+        return Arrays.asList(result).iterator();
+    }
+
+    /**
+     * Reconstrói o caminho até ao nó objetivo com estados do {@link SearchEngine}, para o resultado de uma pesquisa
+     * com orçamento.
+     *
+     * @param objetivo O índice do nó objetivo
+     * @return O caminho reconstruído, do estado inicial até ao objetivo
+     */
+    private List<SearchEngine.State> caminhoMotor(int objetivo) {
+        int comprimento = 0;
+        for (int n = objetivo; n != VAZIO; n = pai[n]) {
+            comprimento++;
+        }
+        int[] nosCaminho = new int[comprimento];
+        for (int n = objetivo; n != VAZIO; n = pai[n]) {
+            nosCaminho[--comprimento] = n;
+        }
+        List<SearchEngine.State> result = new ArrayList<>(nosCaminho.length);
+        SearchEngine.State anterior = null;
+        for (int n : nosCaminho) {
+            Operation l = new Operation(valor[n], pai[n] == VAZIO ? 0 : g[n] - g[pai[n]]);
+            anterior = new SearchEngine.State(l, anterior, g[n], f[n]);
+            result.add(anterior);
+        }
+        listener.solveFinished(true, g[objetivo], result.size() - 1);
+        return result;
+    }
+}
@@ -0,0 +1,442 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * A classe BestFirstAOffHeap é uma versão do algoritmo A* (BestFirstA) cujos nós, lista de abertos e tabela de estados
+ * ficam fora do heap de Java, em buffers diretos, para pesquisas com dezenas de milhões de nós.
+ * Cada nó é um registo de tamanho fixo (chave, g, f, índice do pai, movimento e posição no heap de abertos), a lista de
+ * abertos é um heap binário de índices de nós e a tabela de estados (abertos e fechados) é uma tabela de endereçamento
+ * aberto de chave para índice de nó. Não é criado nenhum objeto por nó, pelo que o trabalho do GC não cresce com a
+ * pesquisa: cada expansão cria apenas o layout do estado expandido ({@link KeyedLayout#fromStateKey(long)}), que morre logo.
+ *
+ * A memória é reservada em blocos à medida que é precisa e reutilizada pelas pesquisas seguintes; {@link #close()}
+ * liberta-a. Os buffers diretos de Java 17 não podem ser libertados explicitamente (a API de memória externa ainda
+ * é experimental nesta versão), pelo que a memória é devolvida ao sistema quando o GC recolhe os buffers largados.
+ * Uma instância não deve ser partilhada entre threads.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstAOffHeap implements AutoCloseable {
+    /** Tamanho de cada nó: chave (8 bytes), g (8), f (8), pai (4), movimento (4), posição no heap (4) e 4 livres. */
+    static final int BYTES_POR_NO = 40;
+    private static final int CHAVE = 0;
+    private static final int G = 8;
+    private static final int F = 16;
+    private static final int PAI = 24;
+    private static final int MOVIMENTO = 28;
+    private static final int POSICAO = 32;
+    /** Cada entrada da tabela guarda a chave (8 bytes) e o índice do nó mais 1 (4), com 0 para uma entrada vazia. */
+    private static final int BYTES_POR_ENTRADA = 12;
+    private static final int VAZIO = -1;
+    private static final int FECHADO = -1;
+
+    private Regiao nos;
+    private Regiao abertos;
+    private Regiao tabela;
+    private int numeroNos;
+    private int tamanhoAbertos;
+    private int ocupados;
+    private boolean fechado;
+
+    private KeyedLayout<?> objective;
+    private SearchListener listener = SearchListener.NONE;
+
+    // Nó a ser expandido e contadores da expansão atual, usados pelo gerador de sucessores
+    private int atual;
+    private long chavePai;
+    private int gerados;
+    private int duplicados;
+    private final Ilayout.ChildSink gerador = this::gerar;
+
+    /**
+     * A classe interna Regiao representa uma sequência de elementos de tamanho fixo em memória fora do heap, dividida
+     * em blocos de buffers diretos, para que possa ter mais de 2 GB e crescer sem copiar os elementos já guardados.
+     */
+    private static final class Regiao {
+        private static final int MAXIMO_BLOCO_LOG = 20;
+
+        private final int bytes;
+        private final int blocoLog;
+        private final int mascara;
+        private final int elementosPorBloco;
+        private final List<ByteBuffer> blocos = new ArrayList<>();
+
+        Regiao(int bytes, long capacidade) {
+            this.bytes = bytes;
+            // Blocos com uma potência de 2 de elementos, no máximo 2^20, para que o bloco e a posição sejam deslocamentos
+            blocoLog = Math.min(MAXIMO_BLOCO_LOG, 64 - Long.numberOfLeadingZeros(Math.max(1, capacidade - 1)));
+            elementosPorBloco = 1 << blocoLog;
+            mascara = elementosPorBloco - 1;
+            garantir(capacidade);
+        }
+
+        void garantir(long capacidade) {
+            while ((long) blocos.size() * elementosPorBloco < capacidade) {
+                blocos.add(ByteBuffer.allocateDirect(elementosPorBloco * bytes).order(ByteOrder.nativeOrder()));
+            }
+        }
+
+        long capacidade() {
+            return (long) blocos.size() * elementosPorBloco;
+        }
+
+        long bytesReservados() {
+            return capacidade() * bytes;
+        }
+
+        ByteBuffer bloco(long i) {
+            return blocos.get((int) (i >>> blocoLog));
+        }
+
+        int posicao(long i, int campo) {
+            return (int) (i & mascara) * bytes + campo;
+        }
+
+        long getLong(long i, int campo) {return bloco(i).getLong(posicao(i, campo));}
+
+        double getDouble(long i, int campo) {return bloco(i).getDouble(posicao(i, campo));}
+
+        int getInt(long i, int campo) {return bloco(i).getInt(posicao(i, campo));}
+
+        void putLong(long i, int campo, long v) {bloco(i).putLong(posicao(i, campo), v);}
+
+        void putDouble(long i, int campo, double v) {bloco(i).putDouble(posicao(i, campo), v);}
+
+        void putInt(long i, int campo, int v) {bloco(i).putInt(posicao(i, campo), v);}
+
+        void limpar() {
+            for (ByteBuffer b : blocos) {
+                for (int p = 0; p < b.capacity(); p += Long.BYTES) {
+                    b.putLong(p, 0L);
+                }
+            }
+        }
+    }
+
+    /**
+     * A classe State representa um estado do caminho devolvido pelo algoritmo BestFirstAOffHeap.
+     * Só é criada no fim da pesquisa, ao reconstruir o caminho.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Ilayout l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstAOffHeap, com capacidade inicial para 1024 nós.
+     */
+    public BestFirstAOffHeap() {
+        this(1024);
+    }
+
+    /**
+     * Construtor para a classe BestFirstAOffHeap.
+     *
+     * @param capacidade O número de nós para o qual a memória é reservada logo de início
+     */
+    public BestFirstAOffHeap(int capacidade) {
+        if (capacidade < 1) {
+            throw new IllegalArgumentException("A capacidade tem de ser positiva");
+        }
+        nos = new Regiao(BYTES_POR_NO, capacidade);
+        abertos = new Regiao(Integer.BYTES, capacidade);
+        tabela = new Regiao(BYTES_POR_ENTRADA, Integer.highestOneBit(Math.max(8, capacidade - 1)) << 1);
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Retorna a memória reservada fora do heap por esta instância.
+     *
+     * @return O número de bytes reservados
+     */
+    public long getOffHeapBytes() {
+        return fechado ? 0 : nos.bytesReservados() + abertos.bytesReservados() + tabela.bytesReservados();
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo usando o algoritmo A*.
+     * O layout tem de poder ser recriado a partir da sua chave ({@link KeyedLayout#fromStateKey(long)}).
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo, a partir do qual os layouts são recriados pela sua chave
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     */
+    final public Iterator<State> solve(Ilayout s, KeyedLayout<?> goal) {
+        if (fechado) {
+            throw new IllegalStateException("A memória desta instância já foi libertada");
+        }
+        limpar();
+        objective = goal;
+        long chaveObjetivo = goal.stateKey();
+        listener.solveStarted("BestFirstAOffHeap", s, goal);
+        double h = s.getH(s, goal);
+        int raiz = novoNo(s.stateKey(), 0.0, h, VAZIO, -1);
+        inserirTabela(s.stateKey(), raiz);
+        push(raiz);
+
+        while (tamanhoAbertos > 0) {
+            atual = pop();
+            long chave = nos.getLong(atual, CHAVE);
+            if (chave == chaveObjetivo) {
+                return reconstruirCaminho(s, atual);
+            }
+            int pai = nos.getInt(atual, PAI);
+            chavePai = pai == VAZIO ? chave : nos.getLong(pai, CHAVE);
+            gerados = 0;
+            duplicados = 0;
+            (atual == raiz ? s : goal.fromStateKey(chave)).forEachChild(goal, gerador);
+            listener.nodesExpanded(1, tamanhoAbertos);
+            listener.nodesGenerated(gerados);
+            listener.duplicatesRejected(duplicados);
+        }
+        listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        return null;
+    }
+
+    /**
+     * Recebe um filho do nó a ser expandido: cria um nó novo, melhora o caminho de um nó que ainda está nos abertos,
+     * ou rejeita o filho como duplicado.
+     */
+    private void gerar(int move, long chave, double custo, double h) {
+        // Tal como nos outros algoritmos, não se gera o pai do estado atual
+        if (chave == chavePai) {
+            return;
+        }
+        gerados++;
+        double ng = nos.getDouble(atual, G) + custo;
+        int existente = procurarTabela(chave);
+        if (existente == VAZIO) {
+            int filho = novoNo(chave, ng, ng + h, atual, move);
+            inserirTabela(chave, filho);
+            push(filho);
+        } else if (nos.getInt(existente, POSICAO) != FECHADO && ng < nos.getDouble(existente, G)) {
+            // Caminho melhor para um estado que ainda está nos abertos
+            nos.putDouble(existente, F, nos.getDouble(existente, F) + ng - nos.getDouble(existente, G));
+            nos.putDouble(existente, G, ng);
+            nos.putInt(existente, PAI, atual);
+            nos.putInt(existente, MOVIMENTO, move);
+            subir(nos.getInt(existente, POSICAO));
+        } else {
+            duplicados++;
+        }
+    }
+
+    /**
+     * Reinicia as estruturas de dados, mantendo a memória já reservada.
+     */
+    private void limpar() {
+        numeroNos = 0;
+        tamanhoAbertos = 0;
+        ocupados = 0;
+        tabela.limpar();
+    }
+
+    /**
+     * Cria um novo nó, reservando mais memória se necessário.
+     *
+     * @return O índice do novo nó
+     */
+    private int novoNo(long chave, double custo, double avaliacao, int pai, int move) {
+        if (numeroNos == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Número máximo de nós atingido");
+        }
+        nos.garantir(numeroNos + 1L);
+        nos.putLong(numeroNos, CHAVE, chave);
+        nos.putDouble(numeroNos, G, custo);
+        nos.putDouble(numeroNos, F, avaliacao);
+        nos.putInt(numeroNos, PAI, pai);
+        nos.putInt(numeroNos, MOVIMENTO, move);
+        return numeroNos++;
+    }
+
+    /**
+     * Calcula a posição inicial de uma chave na tabela de dispersão.
+     */
+    private long dispersao(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (h ^ (h >>> 32)) & (tabela.capacidade() - 1);
+    }
+
+    /**
+     * Procura uma chave na tabela de dispersão.
+     *
+     * @return O índice do nó com essa chave, ou VAZIO se a chave ainda não foi gerada
+     */
+    private int procurarTabela(long chave) {
+        long mascara = tabela.capacidade() - 1;
+        for (long i = dispersao(chave); ; i = (i + 1) & mascara) {
+            int no = tabela.getInt(i, Long.BYTES) - 1;
+            if (no == VAZIO) {
+                return VAZIO;
+            }
+            if (tabela.getLong(i, 0) == chave) {
+                return no;
+            }
+        }
+    }
+
+    /**
+     * Insere uma chave (que ainda não existe) na tabela de dispersão, duplicando-a quando fica meio cheia.
+     */
+    private void inserirTabela(long chave, int no) {
+        if (++ocupados * 2L > tabela.capacidade()) {
+            Regiao antiga = tabela;
+            tabela = new Regiao(BYTES_POR_ENTRADA, antiga.capacidade() * 2);
+            for (long i = 0; i < antiga.capacidade(); i++) {
+                int n = antiga.getInt(i, Long.BYTES) - 1;
+                if (n != VAZIO) {
+                    colocar(antiga.getLong(i, 0), n);
+                }
+            }
+        }
+        colocar(chave, no);
+    }
+
+    private void colocar(long chave, int no) {
+        long mascara = tabela.capacidade() - 1;
+        long i = dispersao(chave);
+        while (tabela.getInt(i, Long.BYTES) != 0) {
+            i = (i + 1) & mascara;
+        }
+        tabela.putLong(i, 0, chave);
+        tabela.putInt(i, Long.BYTES, no + 1);
+    }
+
+    /**
+     * Compara dois nós pelo valor de f; em caso de empate prefere o nó com maior g (mais próximo do objetivo).
+     */
+    private boolean menor(int a, int b) {
+        double fa = nos.getDouble(a, F);
+        double fb = nos.getDouble(b, F);
+        return fa < fb || (fa == fb && nos.getDouble(a, G) > nos.getDouble(b, G));
+    }
+
+    private int abertoEm(int i) {
+        return abertos.getInt(i, 0);
+    }
+
+    private void colocarAberto(int i, int no) {
+        abertos.putInt(i, 0, no);
+        nos.putInt(no, POSICAO, i);
+    }
+
+    private void push(int no) {
+        abertos.garantir(tamanhoAbertos + 1L);
+        colocarAberto(tamanhoAbertos, no);
+        subir(tamanhoAbertos++);
+    }
+
+    /**
+     * Remove o nó com menor f da lista de abertos e marca-o como fechado.
+     */
+    private int pop() {
+        int topo = abertoEm(0);
+        int ultimo = abertoEm(--tamanhoAbertos);
+        if (tamanhoAbertos > 0) {
+            colocarAberto(0, ultimo);
+            descer(0);
+        }
+        nos.putInt(topo, POSICAO, FECHADO);
+        return topo;
+    }
+
+    private void subir(int i) {
+        int no = abertoEm(i);
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (!menor(no, abertoEm(p))) break;
+            colocarAberto(i, abertoEm(p));
+            i = p;
+        }
+        colocarAberto(i, no);
+    }
+
+    private void descer(int i) {
+        int no = abertoEm(i);
+        while (true) {
+            int filho = 2 * i + 1;
+            if (filho >= tamanhoAbertos) break;
+            if (filho + 1 < tamanhoAbertos && menor(abertoEm(filho + 1), abertoEm(filho))) filho++;
+            if (!menor(abertoEm(filho), no)) break;
+            colocarAberto(i, abertoEm(filho));
+            i = filho;
+        }
+        colocarAberto(i, no);
+    }
+
+    /**
+     * Reconstrói o caminho a partir do nó objetivo: recolhe os movimentos seguindo os índices dos pais e repete-os
+     * a partir do layout inicial.
+     *
+     * @param s O layout inicial
+     * @param objetivo O índice do nó objetivo
+     * @return Um iterador para o caminho reconstruído
+     */
+    private Iterator<State> reconstruirCaminho(Ilayout s, int objetivo) {
+        int comprimento = 0;
+        for (int n = objetivo; n != VAZIO; n = nos.getInt(n, PAI)) {
+            comprimento++;
+        }
+        int[] movimentos = new int[comprimento - 1];
+        int k = movimentos.length;
+        for (int n = objetivo; nos.getInt(n, PAI) != VAZIO; n = nos.getInt(n, PAI)) {
+            movimentos[--k] = nos.getInt(n, MOVIMENTO);
+        }
+        State[] result = new State[comprimento];
+        Ilayout layout = s;
+        double g = 0.0;
+        result[0] = new State(layout, g);
+        for (int i = 0; i < movimentos.length; i++) {
+            layout = layout.apply(movimentos[i]);
+            g += layout.getG();
+            result[i + 1] = new State(layout, g);
+        }
+        listener.solveFinished(true, g, result.length - 1);
+        return Arrays.asList(result).iterator();
+    }
+
+    /**
+     * Liberta a memória fora do heap. A instância não pode voltar a ser usada.
+     */
+    @Override
+    public void close() {
+        fechado = true;
+        nos = null;
+        abertos = null;
+        tabela = null;
+    }
+}
@@ -0,0 +1,362 @@
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A classe BestFirstARA representa o algoritmo ARA* (Anytime Repairing A*), uma pesquisa que encontra rapidamente uma
+ * primeira solução e a vai melhorando enquanto houver tempo.
+ * Cada iteração é um A* pesado, que ordena os estados por f = g + w * h com um peso w maior que 1. Com w grande a
+ * pesquisa vai quase diretamente para o objetivo; no fim de cada iteração o peso é diminuído e a pesquisa seguinte
+ * reaproveita os valores de g já calculados: só os estados cujo g melhorou depois de terem sido expandidos (os
+ * "inconsistentes") voltam aos abertos.
+ * Cada solução melhor que a anterior é entregue ao chamador com o seu limite de subotimalidade, isto é, um fator que
+ * garante que o custo da solução não é maior que esse fator vezes o custo ótimo (se a heurística não sobrestimar o custo).
+ * A pesquisa termina quando esse limite chega a 1, quando os abertos se esgotam ou quando o prazo termina.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstARA {
+    private static final int EXPANSOES_ENTRE_RELOGIO = 64;
+
+    private final double pesoInicial;
+    private final double decremento;
+    private SearchListener listener = SearchListener.NONE;
+
+    private Ilayout objective;
+    private long chaveObjetivo;
+    private double peso;
+    private long inicio;
+    private long maxTempo;
+    private int iteracao;
+    private LongMap<No> nos;
+    private IndexedPriorityQueue<No, No> abertos;
+    private List<No> inconsistentes;
+
+    // Estado a ser expandido e contadores da expansão atual, usados pelo gerador de sucessores
+    private No atual;
+    private int gerados;
+    private int duplicados;
+    private final Ilayout.ChildSink gerador = this::gerar;
+
+    /**
+     * A classe interna No guarda a informação de cada layout alcançado: o melhor g conhecido, o pai e o movimento
+     * nesse caminho e a iteração em que foi expandido pela última vez. O layout só é criado quando é preciso.
+     */
+    private static final class No {
+        private final long chave;
+        private final double h;
+        private Ilayout layout;
+        private No pai;
+        private int move;
+        private double g = Double.POSITIVE_INFINITY;
+        private int fechadoEm;
+        private boolean inconsistente;
+
+        No(long chave, double h) {
+            this.chave = chave;
+            this.h = h;
+        }
+
+        Ilayout layout() {
+            if (layout == null) {
+                layout = pai.layout().apply(move);
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * A classe State representa um estado de um caminho encontrado pelo algoritmo BestFirstARA.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Ilayout l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * A classe Solution representa uma solução publicada pelo algoritmo: o caminho, o seu custo, o peso da iteração
+     * que a encontrou e o seu limite de subotimalidade.
+     */
+    static class Solution {
+        private final List<State> path;
+        private final double weight;
+        private final double bound;
+
+        Solution(List<State> path, double weight, double bound) {
+            this.path = path;
+            this.weight = weight;
+            this.bound = bound;
+        }
+
+        /**
+         * Obtém o caminho da solução, do layout inicial até ao objetivo.
+         *
+         * @return O caminho
+         */
+        public List<State> getPath() {return path;}
+
+        /**
+         * Obtém o custo da solução.
+         *
+         * @return O custo do caminho
+         */
+        public double getCost() {return path.get(path.size() - 1).getG();}
+
+        /**
+         * Obtém o peso da heurística na iteração que encontrou a solução.
+         *
+         * @return O peso w
+         */
+        public double getWeight() {return weight;}
+
+        /**
+         * Obtém o limite de subotimalidade: o custo da solução não é maior que este valor vezes o custo ótimo.
+         *
+         * @return O limite de subotimalidade (1 significa que a solução é ótima)
+         */
+        public double getBound() {return bound;}
+
+        /**
+         * Verifica se a solução foi provada ótima.
+         *
+         * @return true se o limite de subotimalidade é 1
+         */
+        public boolean isOptimal() {return bound <= 1.0;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstARA, com peso inicial 3 e decremento 0.5.
+     */
+    public BestFirstARA() {
+        this(3.0, 0.5);
+    }
+
+    /**
+     * Construtor para a classe BestFirstARA.
+     *
+     * @param pesoInicial O peso da heurística na primeira iteração (pelo menos 1)
+     * @param decremento O valor subtraído ao peso depois de cada iteração (positivo)
+     */
+    public BestFirstARA(double pesoInicial, double decremento) {
+        if (!(pesoInicial >= 1.0) || !(decremento > 0.0)) {
+            throw new IllegalArgumentException("O peso inicial tem de ser pelo menos 1 e o decremento positivo");
+        }
+        this.pesoInicial = pesoInicial;
+        this.decremento = decremento;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     * Cada iteração é reportada com o seu peso como limite.
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema sem prazo, até a solução ser provada ótima (ou os abertos se esgotarem).
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o melhor caminho encontrado; retorna null se não houver solução
+     */
+    final public Iterator<State> solve(Ilayout s, Ilayout goal) {
+        Solution melhor = solve(s, goal, null, null);
+        return melhor == null ? null : melhor.getPath().iterator();
+    }
+
+    /**
+     * Resolve o problema até a solução ser provada ótima ou até o prazo terminar, entregando cada solução melhor que a
+     * anterior ao consumidor, na thread que chama este método.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param prazo O tempo máximo da pesquisa; null para não ter prazo
+     * @param solucoes O consumidor das soluções encontradas; pode ser null
+     * @return A melhor solução encontrada; null se não foi encontrada nenhuma dentro do prazo
+     */
+    public Solution solve(Ilayout s, Ilayout goal, Duration prazo, Consumer<Solution> solucoes) {
+        inicio = System.nanoTime();
+        maxTempo = prazo == null ? -1 : prazo.toNanos();
+        objective = goal;
+        chaveObjetivo = goal.stateKey();
+        nos = new LongMap<>();
+        abertos = new IndexedPriorityQueue<>(10, n -> n.chave);
+        inconsistentes = new ArrayList<>();
+        iteracao = 0;
+        peso = pesoInicial;
+        listener.solveStarted("BestFirstARA", s, goal);
+
+        No inicial = new No(s.stateKey(), s.getH(s, goal));
+        inicial.layout = s;
+        inicial.g = 0.0;
+        nos.put(inicial.chave, inicial);
+        abertos.offer(inicial, inicial, chavePrioridade(inicial));
+        Solution melhor = null;
+        while (true) {
+            iteracao++;
+            listener.iterationStarted(iteracao, peso);
+            boolean completa = melhorarCaminho();
+            No alvo = nos.get(chaveObjetivo);
+            double limite = limiteSubotimalidade(alvo);
+            listener.iterationFinished(iteracao, Math.max(1.0, peso - decremento));
+            if (alvo != null && alvo.g < Double.POSITIVE_INFINITY
+                    && (melhor == null || alvo.g < melhor.getCost() || limite < melhor.getBound())) {
+                melhor = new Solution(caminho(alvo), peso, limite);
+                if (solucoes != null) {
+                    solucoes.accept(melhor);
+                }
+            }
+            if (!completa || limite <= 1.0 || (abertos.isEmpty() && inconsistentes.isEmpty())) {
+                break;
+            }
+            peso = Math.max(1.0, peso - decremento);
+            reordenarAbertos();
+        }
+        if (melhor == null) {
+            listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        } else {
+            listener.solveFinished(true, melhor.getCost(), melhor.getPath().size() - 1);
+        }
+        return melhor;
+    }
+
+    private double chavePrioridade(No n) {
+        return n.g + peso * n.h;
+    }
+
+    /**
+     * Executa uma iteração do A* pesado, até o objetivo ter um f não maior que o de todos os abertos.
+     * Os estados que melhoram depois de expandidos nesta iteração ficam na lista de inconsistentes.
+     *
+     * @return false se o prazo terminou antes do fim da iteração
+     */
+    private boolean melhorarCaminho() {
+        int expansoes = 0;
+        while (!abertos.isEmpty()) {
+            No alvo = nos.get(chaveObjetivo);
+            if (alvo != null && chavePrioridade(alvo) <= abertos.peekPriority()) {
+                return true;
+            }
+            if (++expansoes % EXPANSOES_ENTRE_RELOGIO == 0 && maxTempo >= 0 && System.nanoTime() - inicio >= maxTempo) {
+                return false;
+            }
+            atual = abertos.poll();
+            atual.fechadoEm = iteracao;
+            gerados = 0;
+            duplicados = 0;
+            atual.layout().forEachChild(objective, gerador);
+            listener.nodesExpanded(1, abertos.size());
+            listener.nodesGenerated(gerados);
+            listener.duplicatesRejected(duplicados);
+        }
+        return true;
+    }
+
+    /**
+     * Recebe um sucessor do estado a ser expandido e atualiza o seu nó se o caminho pelo estado atual for melhor.
+     * Um nó melhorado vai para os abertos ou, se já foi expandido nesta iteração, para os inconsistentes.
+     */
+    private void gerar(int move, long chave, double custo, double h) {
+        if (atual.pai != null && chave == atual.pai.chave) {
+            return;
+        }
+        gerados++;
+        No filho = nos.get(chave);
+        if (filho == null) {
+            filho = new No(chave, h);
+            nos.put(chave, filho);
+        }
+        double g = atual.g + custo;
+        if (g >= filho.g) {
+            duplicados++;
+            return;
+        }
+        filho.g = g;
+        filho.pai = atual;
+        filho.move = move;
+        if (filho.fechadoEm != iteracao) {
+            abertos.offer(filho, filho, chavePrioridade(filho));
+        } else if (!filho.inconsistente) {
+            filho.inconsistente = true;
+            inconsistentes.add(filho);
+        }
+    }
+
+    /**
+     * Calcula o limite de subotimalidade da solução atual: o menor entre o peso e o custo da solução a dividir pelo
+     * menor g + h dos estados abertos e inconsistentes.
+     */
+    private double limiteSubotimalidade(No alvo) {
+        if (alvo == null || alvo.g == Double.POSITIVE_INFINITY) {
+            return Double.POSITIVE_INFINITY;
+        }
+        // Percorre o heap sem retirar os abertos, que continuam pela mesma ordem
+        double[] minimo = {alvo.g};
+        abertos.forEach(n -> minimo[0] = Math.min(minimo[0], n.g + n.h));
+        for (No n : inconsistentes) {
+            minimo[0] = Math.min(minimo[0], n.g + n.h);
+        }
+        return minimo[0] <= 0 ? peso : Math.max(1.0, Math.min(peso, alvo.g / minimo[0]));
+    }
+
+    /**
+     * Junta os estados inconsistentes aos abertos e recalcula as prioridades de todos com o novo peso.
+     */
+    private void reordenarAbertos() {
+        List<No> todos = new ArrayList<>(abertos.size() + inconsistentes.size());
+        while (!abertos.isEmpty()) {
+            todos.add(abertos.poll());
+        }
+        for (No n : inconsistentes) {
+            n.inconsistente = false;
+            todos.add(n);
+        }
+        inconsistentes.clear();
+        for (No n : todos) {
+            abertos.offer(n, n, chavePrioridade(n));
+        }
+    }
+
+    /**
+     * Copia o caminho atual até um nó, porque os pais podem mudar nas iterações seguintes.
+     */
+    private List<State> caminho(No alvo) {
+        int comprimento = 0;
+        for (No n = alvo; n != null; n = n.pai) {
+            comprimento++;
+        }
+        State[] result = new State[comprimento];
+        for (No n = alvo; n != null; n = n.pai) {
+            result[--comprimento] = new State(n.layout(), n.g);
+        }
+        return Arrays.asList(result);
+    }
+}
@@ -0,0 +1,194 @@
+import java.util.*;
+
+/**
+ * A classe BestFirstBi representa uma pesquisa de custo uniforme bidirecional. Uma pesquisa avança a partir do estado
+ * inicial com os filhos de cada layout e outra recua a partir do objetivo com os predecessores ({@link ReversibleLayout#parents()}),
+ * expandindo sempre o lado com menos estados abertos. Sempre que um estado é alcançado pelos dois lados fica registado o
+ * melhor ponto de encontro; a pesquisa termina quando a soma dos menores custos dos dois lados já não pode melhorar esse
+ * caminho, o que garante que o caminho devolvido é ótimo.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstBi {
+    private IndexedPriorityQueue<Ilayout, State> abertosInicio;
+    private IndexedPriorityQueue<Ilayout, State> abertosObjetivo;
+    private LongMap<State> fechadosInicio;
+    private LongMap<State> fechadosObjetivo;
+
+    // Melhor caminho conhecido: custo e estados de encontro de cada lado
+    private double melhorCusto;
+    private State encontroInicio;
+    private State encontroObjetivo;
+    private SearchListener listener = SearchListener.NONE;
+
+    /**
+     * A classe State representa um estado dentro do algoritmo BestFirstBi.
+     * Ela mantém informações sobre o layout do estado, o estado pai (na direção da pesquisa) e o valor de g,
+     * o custo acumulado desde a origem dessa pesquisa.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final State father;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param n O estado pai
+         * @param g O custo acumulado desde a origem da pesquisa
+         */
+        public State(Ilayout l, State n, double g) {
+            layout = l;
+            father = n;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo com uma pesquisa bidirecional.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo, cujos predecessores são calculados
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     */
+    final public Iterator<State> solve(Ilayout s, ReversibleLayout goal) {
+        abertosInicio = new IndexedPriorityQueue<>(10, Ilayout::stateKey);
+        abertosObjetivo = new IndexedPriorityQueue<>(10, Ilayout::stateKey);
+        fechadosInicio = new LongMap<>();
+        fechadosObjetivo = new LongMap<>();
+        melhorCusto = Double.POSITIVE_INFINITY;
+        encontroInicio = null;
+        encontroObjetivo = null;
+        listener.solveStarted("BestFirstBi", s, goal);
+
+        State inicial = new State(s, null, 0.0);
+        State objetivo = new State(goal, null, 0.0);
+        abertosInicio.offer(s, inicial, 0.0);
+        abertosObjetivo.offer(goal, objetivo, 0.0);
+        if (s.isGoal(goal)) {
+            registarEncontro(inicial, objetivo);
+        }
+
+        while (!abertosInicio.isEmpty() && !abertosObjetivo.isEmpty()) {
+            // Nenhum caminho ainda por descobrir pode custar menos do que a soma dos menores g dos dois lados
+            if (abertosInicio.peekPriority() + abertosObjetivo.peekPriority() >= melhorCusto) {
+                break;
+            }
+            if (abertosInicio.size() <= abertosObjetivo.size()) {
+                expandir(abertosInicio, fechadosInicio, abertosObjetivo, fechadosObjetivo, true);
+            } else {
+                expandir(abertosObjetivo, fechadosObjetivo, abertosInicio, fechadosInicio, false);
+            }
+        }
+        if (encontroInicio == null) {
+            listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+            return null;
+        }
+        return reconstruirCaminho(encontroInicio, encontroObjetivo);
+    }
+
+    /**
+     * Expande o melhor estado de um dos lados da pesquisa e verifica se os seus sucessores já foram alcançados pelo outro lado.
+     *
+     * @param abertos Os estados abertos do lado a expandir
+     * @param fechados Os estados fechados do lado a expandir
+     * @param abertosOutro Os estados abertos do outro lado
+     * @param fechadosOutro Os estados fechados do outro lado
+     * @param paraFrente true se o lado a expandir é o que parte do estado inicial
+     */
+    private void expandir(IndexedPriorityQueue<Ilayout, State> abertos, LongMap<State> fechados,
+                          IndexedPriorityQueue<Ilayout, State> abertosOutro, LongMap<State> fechadosOutro,
+                          boolean paraFrente) {
+        State atual = abertos.poll();
+        fechados.put(atual.layout.stateKey(), atual);
+        // Os layouts do lado do objetivo são todos predecessores do objetivo, e por isso também invertíveis
+        List<? extends Ilayout> vizinhos = paraFrente ? atual.layout.children() : ((ReversibleLayout) atual.layout).parents();
+        listener.nodesExpanded(1, abertos.size() + abertosOutro.size());
+        listener.nodesGenerated(vizinhos.size());
+        for (Ilayout e : vizinhos) {
+            long chave = e.stateKey();
+            if (fechados.containsKey(chave)) {
+                listener.duplicatesRejected(1);
+                continue;
+            }
+            State nn = new State(e, atual, atual.g + e.getG());
+            if (!abertos.offer(e, nn, nn.g)) {
+                listener.duplicatesRejected(1);
+            }
+            State outro = fechadosOutro.get(chave);
+            if (outro == null) {
+                outro = abertosOutro.get(e);
+            }
+            if (outro != null) {
+                if (paraFrente) {
+                    registarEncontro(nn, outro);
+                } else {
+                    registarEncontro(outro, nn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Regista um ponto de encontro entre as duas pesquisas, se ele resultar num caminho mais barato que o melhor conhecido.
+     *
+     * @param doInicio O estado de encontro da pesquisa que parte do estado inicial
+     * @param doObjetivo O estado de encontro da pesquisa que parte do objetivo
+     */
+    private void registarEncontro(State doInicio, State doObjetivo) {
+        double custo = doInicio.g + doObjetivo.g;
+        if (custo < melhorCusto) {
+            melhorCusto = custo;
+            encontroInicio = doInicio;
+            encontroObjetivo = doObjetivo;
+        }
+    }
+
+    /**
+     * Reconstrói o caminho completo: do estado inicial até ao ponto de encontro e, daí, até ao objetivo.
+     * Os estados do lado do objetivo são convertidos para custos acumulados desde o estado inicial.
+     *
+     * @param doInicio O estado de encontro da pesquisa que parte do estado inicial
+     * @param doObjetivo O estado de encontro da pesquisa que parte do objetivo
+     * @return Um iterador para o caminho reconstruído
+     */
+    private Iterator<State> reconstruirCaminho(State doInicio, State doObjetivo) {
+        List<State> result = new ArrayList<>();
+        for (State e = doInicio; e != null; e = e.father) {
+            result.add(e);
+        }
+        Collections.reverse(result);
+        State ultimo = result.get(result.size() - 1);
+        // O custo (g) do layout de cada estado do lado do objetivo é o custo do movimento até ao seu pai
+        for (State e = doObjetivo; e.father != null; e = e.father) {
+            ultimo = new State(e.father.layout, ultimo, ultimo.g + e.layout.getG());
+            result.add(ultimo);
+        }
+        listener.solveFinished(true, ultimo.g, result.size() - 1);
+        return result.iterator();
+    }
+}
@@ -0,0 +1,627 @@
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * A classe BestFirstExternal representa o algoritmo A* em memória externa, para problemas cujos estados não cabem em
+ * memória. Os estados são guardados em ficheiros, por balde (g, h): um ficheiro com os estados gerados e ainda não
+ * expandidos (abertos) e um ou mais ficheiros ordenados pela chave com os estados já expandidos (fechados).
+ * Os baldes são processados por ordem de f = g + h e, dentro do mesmo f, por ordem de g. Como os custos são positivos,
+ * os sucessores de um balde vão sempre para baldes com g maior, pelo que os abertos de um balde estão completos quando
+ * ele é processado. Os duplicados são removidos só nesse momento (deteção diferida de duplicados): os abertos são lidos
+ * em lotes de tamanho limitado, cada lote é ordenado e escrito numa corrida ordenada, e as corridas são depois juntas
+ * numa única passagem, que descarta as chaves repetidas entre lotes e as que já estão nos ficheiros de fechados com o
+ * mesmo h e g não maior, percorridos em simultâneo. Os estados que restam são expandidos e escritos, já ordenados, num
+ * novo ficheiro de fechados do balde, pelo que os ficheiros de fechados nunca são reescritos.
+ * Como h depende apenas do estado, um duplicado tem sempre o mesmo h, pelo que não é preciso ler os outros baldes.
+ *
+ * Em memória ficam apenas um lote, uma janela de leitura por ficheiro a ser percorrido e um pequeno buffer de escrita por
+ * balde. Os ficheiros são lidos por janelas mapeadas em memória com posições long, pelo que podem ter mais de 2 GB, e os
+ * canais de escrita dos abertos ficam abertos entre escritas, até um número máximo de canais.
+ * Cada registo guarda a chave do estado ({@link Ilayout#stateKey()}), a chave do pai e o movimento, pelo que o layout tem
+ * de poder ser recriado a partir da chave ({@link KeyedLayout}) e ter custos inteiros e positivos
+ * ({@link Ilayout#hasIntegralCosts()}).
+ * O caminho é reconstruído no fim procurando cada pai nos ficheiros de fechados do seu balde.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstExternal {
+    /** Tamanho de cada registo: chave (8 bytes), chave do pai (8), movimento (4) e custo do movimento (4). */
+    static final int BYTES_POR_REGISTO = 24;
+    private static final int REGISTOS_POR_BUFFER = 512;
+    private static final int REGISTOS_POR_JANELA = 1 << 16;
+    private static final int MAX_CANAIS = 64;
+    private static final int SEM_MOVIMENTO = -1;
+
+    private final Path diretorio;
+    private final int lote;
+    private SearchListener listener = SearchListener.NONE;
+
+    private Path pasta;
+    private KeyedLayout<?> objective;
+    private long chaveObjetivo;
+    private Map<Long, Balde> baldes;
+    private Map<Integer, List<Balde>> fechadosPorH;
+    private PriorityQueue<Balde> porProcessar;
+    private LinkedHashSet<Balde> canaisAbertos;
+    private long abertos;
+    private int ficheiros;
+
+    // Lote em formação
+    private long[] chaves;
+    private long[] pais;
+    private int[] movimentos;
+    private int[] custos;
+    private int tamanho;
+
+    // Registo do objetivo, quando é encontrado
+    private long paiObjetivo;
+    private int movimentoObjetivo;
+
+    // Estado a ser expandido e contadores da expansão atual, usados pelo gerador de sucessores
+    private long chaveAtual;
+    private long paiAtual;
+    private int gAtual;
+    private int gerados;
+    private final Ilayout.ChildSink gerador = this::gerar;
+
+    /**
+     * A classe interna Balde guarda os ficheiros e o buffer de escrita dos estados com um dado g e um dado h.
+     */
+    private final class Balde {
+        private final int g;
+        private final int h;
+        private final Path aberto;
+        private final List<Path> fechados = new ArrayList<>();
+        private FileChannel canal;
+        private ByteBuffer escrita;
+        private boolean temAberto;
+        private boolean naFila;
+
+        Balde(int g, int h) {
+            this.g = g;
+            this.h = h;
+            aberto = pasta.resolve("aberto_" + g + "_" + h);
+        }
+
+        /**
+         * Acrescenta um registo ao buffer do balde, escrevendo o buffer no fim do ficheiro de abertos quando enche.
+         */
+        void escrever(long chave, long pai, int move, int custo) throws IOException {
+            if (escrita == null) {
+                escrita = ByteBuffer.allocate(4 * BYTES_POR_REGISTO);
+            } else if (!escrita.hasRemaining()) {
+                if (escrita.capacity() < REGISTOS_POR_BUFFER * BYTES_POR_REGISTO) {
+                    escrita.flip();
+                    escrita = ByteBuffer.allocate(escrita.capacity() * 2).put(escrita);
+                } else {
+                    despejar();
+                }
+            }
+            escrita.putLong(chave).putLong(pai).putInt(move).putInt(custo);
+            abertos++;
+            if (!naFila) {
+                naFila = true;
+                porProcessar.add(this);
+            }
+        }
+
+        /**
+         * Escreve o buffer no fim do ficheiro de abertos. O canal fica aberto para as próximas escritas; se já houver
+         * {@link #MAX_CANAIS} canais abertos, é fechado o do balde escrito há mais tempo.
+         */
+        void despejar() throws IOException {
+            if (canal == null) {
+                if (canaisAbertos.size() == MAX_CANAIS) {
+                    Balde antigo = canaisAbertos.iterator().next();
+                    antigo.fecharCanal();
+                }
+                canal = FileChannel.open(aberto, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            } else {
+                canaisAbertos.remove(this);
+            }
+            canaisAbertos.add(this);
+            escrita.flip();
+            escreverTudo(canal, escrita);
+            escrita.clear();
+            temAberto = true;
+        }
+
+        void fecharCanal() throws IOException {
+            if (canal != null) {
+                canaisAbertos.remove(this);
+                canal.close();
+                canal = null;
+            }
+        }
+    }
+
+    /**
+     * A classe interna Leitor percorre sequencialmente os registos de um ficheiro, mapeado em memória por janelas de
+     * {@link #REGISTOS_POR_JANELA} registos com posições long.
+     */
+    private static final class Leitor implements Closeable {
+        private final FileChannel canal;
+        private final long registos;
+        private MappedByteBuffer janela;
+        private long lidos;
+        private long chave;
+        private long pai;
+        private int move;
+        private int custo;
+
+        Leitor(Path ficheiro) throws IOException {
+            canal = FileChannel.open(ficheiro, StandardOpenOption.READ);
+            registos = canal.size() / BYTES_POR_REGISTO;
+        }
+
+        /**
+         * Lê o próximo registo.
+         *
+         * @return false se não houver mais registos
+         */
+        boolean avancar() throws IOException {
+            if (lidos == registos) {
+                return false;
+            }
+            if (janela == null || !janela.hasRemaining()) {
+                long n = Math.min(REGISTOS_POR_JANELA, registos - lidos);
+                janela = canal.map(FileChannel.MapMode.READ_ONLY, lidos * BYTES_POR_REGISTO, n * BYTES_POR_REGISTO);
+            }
+            chave = janela.getLong();
+            pai = janela.getLong();
+            move = janela.getInt();
+            custo = janela.getInt();
+            lidos++;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            janela = null;
+            canal.close();
+        }
+    }
+
+    /**
+     * A classe State representa um estado do caminho encontrado pelo algoritmo BestFirstExternal.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Ilayout l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstExternal.
+     *
+     * @param diretorio O diretório onde são criados os ficheiros temporários de cada pesquisa
+     * @param lote O número máximo de registos ordenados em memória de cada vez
+     */
+    public BestFirstExternal(Path diretorio, int lote) {
+        if (lote < 1) {
+            throw new IllegalArgumentException("O lote tem de ter pelo menos um registo");
+        }
+        this.diretorio = Objects.requireNonNull(diretorio);
+        this.lote = lote;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo, guardando os estados em
+     * ficheiros temporários, que são apagados no fim da pesquisa.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo, a partir do qual os layouts são recriados pela sua chave
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     * @throws UncheckedIOException se os ficheiros temporários não puderem ser lidos ou escritos
+     */
+    final public Iterator<State> solve(Ilayout s, KeyedLayout<?> goal) {
+        if (!s.hasIntegralCosts() || !goal.hasIntegralCosts()) {
+            throw new IllegalArgumentException("A pesquisa em disco só aceita layouts com custos inteiros");
+        }
+        try {
+            pasta = Files.createTempDirectory(diretorio, "bestfirst");
+            try {
+                return procurar(s, goal);
+            } finally {
+                apagar();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Iterator<State> procurar(Ilayout s, KeyedLayout<?> goal) throws IOException {
+        objective = goal;
+        chaveObjetivo = goal.stateKey();
+        baldes = new HashMap<>();
+        fechadosPorH = new HashMap<>();
+        porProcessar = new PriorityQueue<>((b1, b2) -> b1.g + b1.h != b2.g + b2.h
+                ? Integer.compare(b1.g + b1.h, b2.g + b2.h) : Integer.compare(b1.g, b2.g));
+        canaisAbertos = new LinkedHashSet<>();
+        abertos = 0;
+        ficheiros = 0;
+        chaves = new long[lote];
+        pais = new long[lote];
+        movimentos = new int[lote];
+        custos = new int[lote];
+        listener.solveStarted("BestFirstExternal", s, goal);
+
+        balde(0, (int) s.getH(s, goal)).escrever(s.stateKey(), s.stateKey(), SEM_MOVIMENTO, 0);
+        while (!porProcessar.isEmpty()) {
+            Balde b = porProcessar.poll();
+            b.naFila = false;
+            if (processar(b)) {
+                return reconstruirCaminho(s, b);
+            }
+        }
+        listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        return null;
+    }
+
+    /**
+     * Retorna o balde de um par (g, h), criando-o se ainda não existir.
+     */
+    private Balde balde(int g, int h) {
+        long id = (long) g << 32 | (h & 0xFFFFFFFFL);
+        Balde b = baldes.get(id);
+        if (b == null) {
+            b = new Balde(g, h);
+            baldes.put(id, b);
+        }
+        return b;
+    }
+
+    /**
+     * Processa os abertos de um balde: divide-os em corridas ordenadas, junta as corridas removendo os duplicados e
+     * expande os estados que restam, escrevendo-os num novo ficheiro de fechados do balde.
+     *
+     * @return true se o objetivo estiver entre os abertos do balde (o seu registo fica em paiObjetivo e movimentoObjetivo)
+     */
+    private boolean processar(Balde b) throws IOException {
+        if (b.escrita != null && b.escrita.position() > 0) {
+            b.despejar();
+        }
+        b.escrita = null;
+        b.fecharCanal();
+        if (!b.temAberto) {
+            return false;
+        }
+        b.temAberto = false;
+        List<Path> corridas = formarCorridas(b);
+
+        List<Leitor> leitores = new ArrayList<>();
+        PriorityQueue<Leitor> juncao = new PriorityQueue<>((l1, l2) -> Long.compare(l1.chave, l2.chave));
+        Path fechado = pasta.resolve("fechado_" + b.g + "_" + b.h + "_" + b.fechados.size());
+        ByteBuffer escrita = ByteBuffer.allocate(REGISTOS_POR_BUFFER * BYTES_POR_REGISTO);
+        long expandidos = 0;
+        long duplicados = 0;
+        gerados = 0;
+        try (FileChannel saida = FileChannel.open(fechado, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path corrida : corridas) {
+                Leitor l = new Leitor(corrida);
+                leitores.add(l);
+                if (l.avancar()) {
+                    juncao.add(l);
+                }
+            }
+            List<Leitor> anteriores = new ArrayList<>();
+            for (Balde anterior : fechadosPorH.getOrDefault(b.h, Collections.emptyList())) {
+                if (anterior.g <= b.g) {
+                    for (Path f : anterior.fechados) {
+                        Leitor l = new Leitor(f);
+                        leitores.add(l);
+                        if (l.avancar()) {
+                            anteriores.add(l);
+                        }
+                    }
+                }
+            }
+
+            while (!juncao.isEmpty()) {
+                Leitor menor = juncao.poll();
+                long chave = menor.chave;
+                long pai = menor.pai;
+                int move = menor.move;
+                int custo = menor.custo;
+                if (menor.avancar()) {
+                    juncao.add(menor);
+                }
+                // Repetidos da mesma chave noutras corridas, isto é, noutros lotes do balde
+                while (!juncao.isEmpty() && juncao.peek().chave == chave) {
+                    Leitor l = juncao.poll();
+                    duplicados++;
+                    if (l.avancar()) {
+                        juncao.add(l);
+                    }
+                }
+                if (jaFechado(anteriores, chave)) {
+                    duplicados++;
+                    continue;
+                }
+                if (chave == chaveObjetivo) {
+                    paiObjetivo = pai;
+                    movimentoObjetivo = move;
+                    listener.duplicatesRejected(duplicados);
+                    return true;
+                }
+                chaveAtual = chave;
+                paiAtual = move == SEM_MOVIMENTO ? chave : pai;
+                gAtual = b.g;
+                objective.fromStateKey(chave).forEachChild(objective, gerador);
+                expandidos++;
+                if (!escrita.hasRemaining()) {
+                    escrita.flip();
+                    escreverTudo(saida, escrita);
+                    escrita.clear();
+                }
+                escrita.putLong(chave).putLong(pai).putInt(move).putInt(custo);
+            }
+            escrita.flip();
+            escreverTudo(saida, escrita);
+        } finally {
+            for (Leitor l : leitores) {
+                l.close();
+            }
+            for (Path corrida : corridas) {
+                Files.delete(corrida);
+            }
+        }
+        listener.duplicatesRejected(duplicados);
+        listener.nodesExpanded(expandidos, (int) Math.min(Integer.MAX_VALUE, abertos));
+        listener.nodesGenerated(gerados);
+        if (expandidos == 0) {
+            Files.delete(fechado);
+        } else {
+            if (b.fechados.isEmpty()) {
+                fechadosPorH.computeIfAbsent(b.h, h -> new ArrayList<>()).add(b);
+            }
+            b.fechados.add(fechado);
+        }
+        return false;
+    }
+
+    /**
+     * Lê o ficheiro de abertos de um balde em lotes, ordena cada lote pela chave, sem as chaves repetidas do próprio
+     * lote, e escreve-o numa corrida. O ficheiro de abertos é apagado no fim.
+     *
+     * @return Os ficheiros das corridas
+     */
+    private List<Path> formarCorridas(Balde b) throws IOException {
+        List<Path> corridas = new ArrayList<>();
+        try (Leitor leitor = new Leitor(b.aberto)) {
+            tamanho = 0;
+            while (leitor.avancar()) {
+                chaves[tamanho] = leitor.chave;
+                pais[tamanho] = leitor.pai;
+                movimentos[tamanho] = leitor.move;
+                custos[tamanho] = leitor.custo;
+                abertos--;
+                if (++tamanho == lote) {
+                    corridas.add(escreverCorrida());
+                }
+            }
+            if (tamanho > 0) {
+                corridas.add(escreverCorrida());
+            }
+        }
+        Files.delete(b.aberto);
+        return corridas;
+    }
+
+    /**
+     * Escreve o lote atual, ordenado pela chave e sem chaves repetidas, numa nova corrida.
+     */
+    private Path escreverCorrida() throws IOException {
+        LongMap<Integer> posicoes = new LongMap<>(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            posicoes.putIfAbsent(chaves[i], i);
+        }
+        long[] ordenadas = new long[posicoes.size()];
+        int n = 0;
+        for (int i = 0; i < tamanho; i++) {
+            if (posicoes.get(chaves[i]) == i) {
+                ordenadas[n++] = chaves[i];
+            }
+        }
+        Arrays.sort(ordenadas);
+        listener.duplicatesRejected(tamanho - n);
+
+        Path corrida = pasta.resolve("corrida_" + ficheiros++);
+        ByteBuffer escrita = ByteBuffer.allocate(n * BYTES_POR_REGISTO);
+        for (long chave : ordenadas) {
+            int i = posicoes.get(chave);
+            escrita.putLong(chaves[i]).putLong(pais[i]).putInt(movimentos[i]).putInt(custos[i]);
+        }
+        escrita.flip();
+        try (FileChannel canal = FileChannel.open(corrida, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            escreverTudo(canal, escrita);
+        }
+        tamanho = 0;
+        return corrida;
+    }
+
+    /**
+     * Avança os leitores dos fechados anteriores até à chave e verifica se algum deles a contém. Como as chaves são
+     * pedidas por ordem crescente, cada ficheiro é percorrido uma única vez.
+     */
+    private static boolean jaFechado(List<Leitor> anteriores, long chave) throws IOException {
+        boolean encontrado = false;
+        Iterator<Leitor> it = anteriores.iterator();
+        while (it.hasNext()) {
+            Leitor l = it.next();
+            boolean temMais = true;
+            while (temMais && l.chave < chave) {
+                temMais = l.avancar();
+            }
+            if (!temMais) {
+                it.remove();
+            } else if (l.chave == chave) {
+                encontrado = true;
+            }
+        }
+        return encontrado;
+    }
+
+    /**
+     * Recebe um filho do estado a ser expandido e escreve-o no balde do seu (g, h), exceto se for o pai do estado.
+     */
+    private void gerar(int move, long chave, double custo, double h) {
+        if (chave == paiAtual) {
+            return;
+        }
+        gerados++;
+        int c = (int) custo;
+        try {
+            balde(gAtual + c, (int) h).escrever(chave, chaveAtual, move, c);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void escreverTudo(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    private static void lerTudo(FileChannel canal, ByteBuffer buffer, long posicao) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicao + buffer.position()) < 0) {
+                throw new EOFException("Registo incompleto na posição " + posicao);
+            }
+        }
+    }
+
+    /**
+     * Reconstrói o caminho a partir do estado objetivo, procurando o registo de cada pai nos ficheiros de fechados do
+     * balde onde foi expandido, e recria os layouts a partir do layout inicial.
+     *
+     * @param s O layout inicial
+     * @param b O balde do objetivo
+     * @return Um iterador para o caminho reconstruído
+     */
+    private Iterator<State> reconstruirCaminho(Ilayout s, Balde b) throws IOException {
+        List<Integer> movimentosDoCaminho = new ArrayList<>();
+        long pai = paiObjetivo;
+        int move = movimentoObjetivo;
+        int g = b.g;
+        while (move != SEM_MOVIMENTO) {
+            movimentosDoCaminho.add(move);
+            g -= custoDoMovimento(pai, move);
+            Ilayout layoutPai = objective.fromStateKey(pai);
+            Balde anterior = balde(g, (int) layoutPai.getH(layoutPai, objective));
+            long[] registo = procurarFechado(anterior, pai);
+            pai = registo[0];
+            move = (int) registo[1];
+        }
+        Collections.reverse(movimentosDoCaminho);
+
+        List<State> result = new ArrayList<>(movimentosDoCaminho.size() + 1);
+        Ilayout atual = s;
+        double custo = 0.0;
+        result.add(new State(atual, custo));
+        for (int m : movimentosDoCaminho) {
+            atual = atual.apply(m);
+            custo += atual.getG();
+            result.add(new State(atual, custo));
+        }
+        listener.solveFinished(true, custo, result.size() - 1);
+        return result.iterator();
+    }
+
+    private int custoDoMovimento(long pai, int move) {
+        return (int) objective.fromStateKey(pai).apply(move).getG();
+    }
+
+    /**
+     * Procura, por pesquisa binária, o registo de uma chave nos ficheiros de fechados de um balde. Cada registo
+     * consultado é lido na sua posição (long) do ficheiro.
+     *
+     * @return A chave do pai e o movimento do registo
+     */
+    private long[] procurarFechado(Balde b, long chave) throws IOException {
+        ByteBuffer registo = ByteBuffer.allocate(BYTES_POR_REGISTO);
+        for (Path f : b.fechados) {
+            try (FileChannel canal = FileChannel.open(f, StandardOpenOption.READ)) {
+                long inicio = 0;
+                long fim = canal.size() / BYTES_POR_REGISTO - 1;
+                while (inicio <= fim) {
+                    long meio = (inicio + fim) >>> 1;
+                    registo.clear();
+                    lerTudo(canal, registo, meio * BYTES_POR_REGISTO);
+                    long c = registo.getLong(0);
+                    if (c < chave) {
+                        inicio = meio + 1;
+                    } else if (c > chave) {
+                        fim = meio - 1;
+                    } else {
+                        return new long[] {registo.getLong(8), registo.getInt(16)};
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("O pai " + chave + " não está nos fechados do balde (" + b.g + ", " + b.h + ")");
+    }
+
+    /**
+     * Apaga os ficheiros temporários da pesquisa.
+     */
+    private void apagar() throws IOException {
+        for (Balde b : new ArrayList<>(canaisAbertos)) {
+            b.fecharCanal();
+        }
+        try (DirectoryStream<Path> ficheiros = Files.newDirectoryStream(pasta)) {
+            for (Path f : ficheiros) {
+                Files.delete(f);
+            }
+        }
+        Files.delete(pasta);
+        baldes = null;
+        fechadosPorH = null;
+        porProcessar = null;
+        canaisAbertos = null;
+    }
+}
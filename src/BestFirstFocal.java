@@ -0,0 +1,35 @@
+/**
+ * A classe BestFirstFocal representa uma pesquisa focal (A*ε), que aceita caminhos até (1+ε) vezes o custo ótimo em
+ * troca de menos expansões. Entre os estados abertos com f = g + h até (1+ε) vezes o menor f, expande o que tem a
+ * menor heurística, isto é, o que parece mais perto do objetivo. O {@link SearchResult} de
+ * {@link #solve(Ilayout, Ilayout, SearchBudget)} indica o limite inferior do custo e o fator de sub-otimalidade
+ * realmente atingido ({@link SearchResult#getSuboptimality()}), que nunca é maior que 1+ε com uma heurística admissível
+ * e consistente. Como o estado expandido nem sempre é o de menor f, um estado fechado pode ser alcançado depois por
+ * um caminho mais barato; nesse caso é reaberto ({@link HashClosedSet#HashClosedSet(boolean)}), pois de outra forma o
+ * menor f dos abertos deixaria de ser um limite inferior do custo. O algoritmo é uma configuração do
+ * {@link SearchEngine}.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ *
+ */
+public class BestFirstFocal extends SearchEngine {
+    private final double epsilon;
+
+    /**
+     * Construtor para a classe BestFirstFocal.
+     *
+     * @param epsilon A sub-otimalidade aceite: o custo pode ser até (1+ε) vezes o ótimo
+     */
+    public BestFirstFocal(double epsilon) {
+        super("BestFirstFocal", Evaluation.A_STAR, new FocalOpenList(epsilon), new HashClosedSet(true),
+                BoundingPolicy.UNBOUNDED);
+        this.epsilon = epsilon;
+    }
+
+    /**
+     * Obtém a sub-otimalidade aceite.
+     *
+     * @return O valor de ε
+     */
+    public double getEpsilon() {return epsilon;}
+}
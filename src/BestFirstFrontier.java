@@ -0,0 +1,367 @@
+import java.util.*;
+
+/**
+ * A classe BestFirstFrontier é uma pesquisa de fronteira (frontier search, com divisão e conquista): um custo uniforme
+ * ou um A* que não guarda os estados fechados. Cada estado expandido é descartado; em vez dele, cada estado da fronteira
+ * guarda uma máscara com as arestas que o ligam a estados já expandidos (os operadores "usados"), que não voltam a ser
+ * seguidas, pelo que um estado expandido nunca é gerado outra vez. Como os movimentos não são reversíveis, ao expandir
+ * um estado os seus predecessores ({@link ReversibleLayout#forEachParent(Ilayout, Ilayout.ChildSink)}) também entram na tabela,
+ * ainda sem caminho conhecido, só para guardar a aresta usada.
+ * Sem os fechados não há cadeia de pais para reconstruir o caminho: cada estado guarda apenas o estado intermédio do seu
+ * caminho (o último com g até metade do custo esperado) e o primeiro movimento. Encontrado o objetivo, o caminho é
+ * obtido resolvendo recursivamente as duas metades, do início ao estado intermédio e dele ao objetivo.
+ * A memória é proporcional à fronteira e não à região explorada, à custa de repetir a pesquisa em cada metade.
+ * Os predecessores sem caminho (com g infinito) não são removidos da tabela: se um deles fosse descartado e mais tarde
+ * recebesse um caminho, voltaria a gerar o estado expandido, que seria expandido outra vez. Cada um é vizinho de um
+ * estado expandido que ainda não foi expandido, pelo que fazem parte da fronteira da região explorada, tal como os
+ * abertos; o seu número é reportado por {@link #getMaxPlaceholders()}.
+ * Os caminhos são ótimos nas mesmas condições do A*. Os layouts têm de poder ser criados a partir da sua chave
+ * ({@link KeyedLayout}), calcular os seus predecessores ({@link ReversibleLayout}) e não podem ter mais de 16 movimentos.
+ * Os bits das arestas usadas só identificam uma aresta se, em cada expansão, os filhos tiverem movimentos diferentes
+ * entre si e os predecessores também; um movimento repetido é rejeitado com IllegalStateException.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstFrontier {
+    private static final int MAX_MOVIMENTOS = 16;
+
+    private final boolean heuristica;
+    private SearchListener listener = SearchListener.NONE;
+    private long expansoes;
+    private int maiorFronteira;
+    private int marcadores;
+    private int maisMarcadores;
+
+    private LongMap<No> nos;
+    private IndexedPriorityQueue<No, No> abertos;
+
+    // Estado a ser expandido e pesquisa atual, usados pelo gerador de sucessores e de predecessores
+    private No atual;
+    private Ilayout objetivo;
+    private long chaveInicio;
+    private double meio;
+    private double limiteSuperior;
+    private Ilayout dominio;
+    private int gerados;
+    private int duplicados;
+    private int movesFilhos;
+    private int movesPais;
+    private final Ilayout.ChildSink geradorFilhos = this::gerarFilho;
+    private final Ilayout.ChildSink geradorPais = this::gerarPai;
+
+    /**
+     * A classe interna No guarda um estado da fronteira: o melhor g conhecido (infinito para um predecessor ainda sem
+     * caminho), a heurística, as arestas usadas (os bits 0 a 15 para os movimentos que saem do estado, os bits 16 a 31
+     * para os que chegam a ele), o estado intermédio do caminho e o primeiro movimento do caminho.
+     */
+    private static final class No {
+        private final long chave;
+        private double g = Double.POSITIVE_INFINITY;
+        private double h;
+        private int usados;
+        private long intermedio;
+        private double gIntermedio;
+        private int primeiroMove;
+
+        No(long chave, double h) {
+            this.chave = chave;
+            this.h = h;
+        }
+    }
+
+    /**
+     * A classe State representa um estado do caminho devolvido pelo algoritmo BestFirstFrontier.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Ilayout l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstFrontier, com a heurística (A*).
+     */
+    public BestFirstFrontier() {
+        this(true);
+    }
+
+    /**
+     * Construtor para a classe BestFirstFrontier.
+     *
+     * @param heuristica true para um A*, false para uma pesquisa de custo uniforme
+     */
+    public BestFirstFrontier(boolean heuristica) {
+        this.heuristica = heuristica;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Retorna o maior número de estados guardados ao mesmo tempo (fronteira e predecessores) na última chamada a solve,
+     * em qualquer das pesquisas feitas para reconstruir o caminho.
+     *
+     * @return O maior tamanho da fronteira
+     */
+    public int getMaxFrontier() {
+        return maiorFronteira;
+    }
+
+    /**
+     * Retorna o maior número de predecessores sem caminho (com g infinito) guardados ao mesmo tempo na última chamada a
+     * solve. Estão incluídos em {@link #getMaxFrontier()}.
+     *
+     * @return O maior número de predecessores sem caminho
+     */
+    public int getMaxPlaceholders() {
+        return maisMarcadores;
+    }
+
+    /**
+     * Retorna o número de estados expandidos na última chamada a solve, somando todas as pesquisas feitas para
+     * reconstruir o caminho.
+     *
+     * @return O número de estados expandidos
+     */
+    public long getExpanded() {
+        return expansoes;
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo, a partir do qual os layouts são recriados pela sua chave
+     * @param <L> O tipo do layout objetivo
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     */
+    final public <L extends KeyedLayout<L> & ReversibleLayout> Iterator<State> solve(Ilayout s, L goal) {
+        expansoes = 0;
+        maiorFronteira = 0;
+        maisMarcadores = 0;
+        nos = new LongMap<>();
+        abertos = new IndexedPriorityQueue<>(10, n -> n.chave);
+        listener.solveStarted("BestFirstFrontier", s, goal);
+        List<Ilayout> caminho = new ArrayList<>();
+        caminho.add(s);
+        if (!caminho(s, goal, Double.NaN, caminho)) {
+            listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+            return null;
+        }
+        State[] result = new State[caminho.size()];
+        double g = 0.0;
+        for (int i = 0; i < result.length; i++) {
+            Ilayout l = caminho.get(i);
+            g = i == 0 ? 0.0 : g + l.getG();
+            result[i] = new State(l, g);
+        }
+        nos = null;
+        abertos = null;
+        listener.solveFinished(true, g, result.length - 1);
+        return Arrays.asList(result).iterator();
+    }
+
+    /**
+     * Acrescenta ao caminho os layouts depois de a até b, dividindo o problema no estado intermédio do caminho.
+     *
+     * @param a O layout inicial, que já está no fim do caminho
+     * @param b O layout objetivo
+     * @param custo O custo do caminho de a até b, se já for conhecido (NaN se não for)
+     * @param caminho O caminho a completar
+     * @return true se existe um caminho de a até b
+     */
+    private <L extends KeyedLayout<L> & ReversibleLayout> boolean caminho(Ilayout a, L b, double custo, List<Ilayout> caminho) {
+        if (a.stateKey() == b.stateKey()) {
+            return true;
+        }
+        No fim = pesquisar(a, b, custo);
+        if (fim == null) {
+            return false;
+        }
+        if (Double.isNaN(custo) && (fim.intermedio == a.stateKey() || fim.intermedio == b.stateKey())) {
+            // A estimativa do custo estava errada; com o custo exato o estado intermédio fica a meio do caminho
+            return caminho(a, b, fim.g, caminho);
+        }
+        long intermedio = fim.intermedio;
+        double gIntermedio = fim.gIntermedio;
+        double total = fim.g;
+        int primeiroMove = fim.primeiroMove;
+        if (intermedio != a.stateKey() && intermedio != b.stateKey()) {
+            L r = b.fromStateKey(intermedio);
+            return caminho(a, r, gIntermedio, caminho) && caminho(caminho.get(caminho.size() - 1), b, total - gIntermedio, caminho);
+        }
+        // O primeiro movimento já passa do meio: o primeiro estado do caminho é conhecido sem outra pesquisa
+        Ilayout x = a.apply(primeiroMove);
+        caminho.add(x);
+        return caminho(x, b, total - x.getG(), caminho);
+    }
+
+    /**
+     * Faz uma pesquisa de fronteira de a até b.
+     *
+     * @param a O layout inicial
+     * @param b O layout objetivo
+     * @param custo O custo esperado, que define o meio do caminho (NaN para usar uma estimativa)
+     * @return O nó do objetivo, com o estado intermédio e o primeiro movimento do caminho; null se não houver solução
+     */
+    private <L extends KeyedLayout<L> & ReversibleLayout> No pesquisar(Ilayout a, L b, double custo) {
+        nos.clear();
+        abertos.clear();
+        marcadores = 0;
+        objetivo = b;
+        dominio = a;
+        chaveInicio = a.stateKey();
+        long chaveObjetivo = b.stateKey();
+        limiteSuperior = a.upperBound(b);
+        if (Double.isNaN(custo)) {
+            double estimativa = limiteSuperior != Double.POSITIVE_INFINITY ? limiteSuperior : a.getH(a, b);
+            meio = estimativa / 2;
+        } else {
+            meio = custo / 2;
+        }
+        No raiz = new No(chaveInicio, heuristica ? a.getH(a, b) : 0.0);
+        raiz.g = 0.0;
+        raiz.intermedio = chaveInicio;
+        nos.put(raiz.chave, raiz);
+        abertos.offer(raiz, raiz, raiz.h);
+        while (!abertos.isEmpty()) {
+            atual = abertos.poll();
+            if (atual.chave == chaveObjetivo) {
+                return atual;
+            }
+            nos.remove(atual.chave);
+            expansoes++;
+            gerados = 0;
+            duplicados = 0;
+            movesFilhos = 0;
+            movesPais = 0;
+            L l = b.fromStateKey(atual.chave);
+            l.forEachChild(b, geradorFilhos);
+            l.forEachParent(b, geradorPais);
+            maiorFronteira = Math.max(maiorFronteira, nos.size());
+            maisMarcadores = Math.max(maisMarcadores, marcadores);
+            listener.nodesExpanded(1, abertos.size());
+            listener.nodesGenerated(gerados);
+            listener.duplicatesRejected(duplicados);
+        }
+        return null;
+    }
+
+    /**
+     * Recebe um filho do estado a ser expandido: segue a aresta se ainda não foi usada, marca-a como usada no filho e
+     * atualiza o caminho do filho se for melhor.
+     */
+    private void gerarFilho(int move, long chave, double custo, double h) {
+        movesFilhos = verificar(move, movesFilhos, "filhos");
+        if (chave == atual.chave || (atual.usados & (1 << move)) != 0) {
+            return;
+        }
+        gerados++;
+        double g = atual.g + custo;
+        if (chave == objetivo.stateKey()) {
+            limiteSuperior = Math.min(limiteSuperior, g);
+        } else if (g + dominio.lowerBound(chave, objetivo) > limiteSuperior) {
+            return;
+        }
+        No filho = procurar(chave, h);
+        filho.usados |= 1 << (MAX_MOVIMENTOS + move);
+        if (g >= filho.g) {
+            duplicados++;
+            return;
+        }
+        if (filho.g == Double.POSITIVE_INFINITY) {
+            marcadores--;
+        }
+        filho.g = g;
+        if (atual.chave == chaveInicio) {
+            filho.primeiroMove = move;
+        } else {
+            filho.primeiroMove = atual.primeiroMove;
+        }
+        // O estado intermédio é o último do caminho com g até ao meio
+        if (g <= meio) {
+            filho.intermedio = chave;
+            filho.gIntermedio = g;
+        } else if (atual.g <= meio) {
+            filho.intermedio = atual.chave;
+            filho.gIntermedio = atual.g;
+        } else {
+            filho.intermedio = atual.intermedio;
+            filho.gIntermedio = atual.gIntermedio;
+        }
+        abertos.offer(filho, filho, g + filho.h);
+    }
+
+    /**
+     * Recebe um predecessor do estado a ser expandido: se a aresta ainda não foi usada, marca-a como usada no
+     * predecessor, que fica na tabela (sem caminho, se ainda não tiver um) para não voltar a gerar o estado expandido.
+     */
+    private void gerarPai(int move, long chave, double custo, double h) {
+        movesPais = verificar(move, movesPais, "predecessores");
+        if (chave == atual.chave || (atual.usados & (1 << (MAX_MOVIMENTOS + move))) != 0) {
+            return;
+        }
+        procurar(chave, h).usados |= 1 << move;
+    }
+
+    /**
+     * Procura um estado na tabela, criando-o (ainda sem caminho) se não existir.
+     */
+    private No procurar(long chave, double h) {
+        No n = nos.get(chave);
+        if (n == null) {
+            n = new No(chave, heuristica ? h : 0.0);
+            nos.put(chave, n);
+            marcadores++;
+        }
+        return n;
+    }
+
+    /**
+     * Verifica que um movimento cabe na máscara das arestas usadas e que ainda não apareceu nesta expansão.
+     *
+     * @param move O movimento
+     * @param vistos Os movimentos já recebidos nesta expansão
+     * @param tipo O tipo de vizinhos, para a mensagem de erro
+     * @return Os movimentos recebidos, incluindo este
+     */
+    private static int verificar(int move, int vistos, String tipo) {
+        if (move < 0 || move >= MAX_MOVIMENTOS) {
+            throw new IllegalArgumentException("A pesquisa de fronteira só suporta " + MAX_MOVIMENTOS + " movimentos");
+        }
+        if ((vistos & (1 << move)) != 0) {
+            throw new IllegalStateException("O movimento " + move + " repete-se entre os " + tipo + " de um estado");
+        }
+        return vistos | (1 << move);
+    }
+}
@@ -0,0 +1,529 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A classe BestFirstHDA representa uma versão paralela do algoritmo A* (Hash Distributed A*).
+ * Cada estado pertence a uma thread, escolhida pela chave do seu layout ({@link Ilayout#stateKey()}), e cada thread tem a sua própria fila de abertos
+ * e o seu próprio mapa com o melhor estado conhecido de cada chave. Os sucessores que pertencem a outra thread são enviados
+ * para a caixa de correio dessa thread, uma fila sem locks.
+ * Cada thread expande a sua fila de abertos sem esperar pelas outras, pelo que pode expandir estados que o A* sequencial
+ * nunca expandiria; esse trabalho especulativo deixa de ser feito assim que é encontrada uma solução, porque os estados
+ * que já não a podem melhorar são descartados. Antes disso é limitado pelos limites do custo do layout
+ * ({@link Ilayout#upperBound(Ilayout)} e {@link Ilayout#lowerBound(long, Ilayout)}), tal como no {@link SearchEngine}.
+ * A pesquisa termina quando o custo da melhor solução não é maior que o menor f de todas as filas de abertos e de todas
+ * as mensagens em trânsito: uma thread fica parada quando nenhum dos seus abertos pode melhorar a solução, e um contador
+ * com o número de threads ativas mais o número de mensagens em trânsito chega a 0 quando todas estão paradas e não há
+ * mensagens por entregar. Isto garante o mesmo custo ótimo que o BestFirstA.
+ * Uma thread parada espera ativamente por pouco tempo ({@link Thread#onSpinWait()}, depois {@link Thread#yield()}) e
+ * depois suspende-se ({@link LockSupport#park(Object)}) até lhe ser enviada uma mensagem ou a pesquisa terminar, pelo
+ * que não ocupa um processador enquanto as outras trabalham.
+ * Uma pesquisa pode ser limitada por um {@link SearchBudget}: o número de expansões é contado por todas as threads e
+ * o prazo é verificado de tantas em tantas expansões de cada thread. Se a thread que chama solve for interrompida, as
+ * threads da pesquisa são paradas antes de solve terminar.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstHDA {
+    private final int numThreads;
+    private Ilayout objective;
+    private Ilayout dominio;
+    private double limiteSuperior;
+    private double limiteInferior;
+    private Worker[] workers;
+
+    // Número de threads ativas mais o número de mensagens em trânsito; quando chega a 0 a pesquisa terminou
+    private final AtomicLong trabalho = new AtomicLong();
+    // Número de voltas de espera ativa de uma thread parada antes de se suspender
+    private static final int ESPERAS_ATIVAS = 64;
+    private static final int EXPANSOES_ENTRE_RELOGIO = 64;
+    private volatile boolean terminado;
+    private final AtomicReference<SearchResult.Status> paragem = new AtomicReference<>();
+    private final AtomicLong expansoesGlobais = new AtomicLong();
+    private long maxExpansoes;
+    private long inicio;
+    private long maxTempo;
+    private final AtomicReference<State> melhorSolucao = new AtomicReference<>();
+    private final AtomicReference<Throwable> erro = new AtomicReference<>();
+    private long expansoes;
+    private SearchListener listener = SearchListener.NONE;
+
+    /**
+     * A classe State representa um estado dentro do algoritmo BestFirstHDA.
+     * Ela mantém informações sobre o layout do estado, o estado pai, o valor de g (custo acumulado) e o valor de f = g + h.
+     * Os estados são imutáveis, pelo que podem ser enviados entre threads.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final State father;
+        private final double g;
+        private final double f;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param n O estado pai
+         * @param goal O layout objetivo, usado para calcular f
+         */
+        public State(Ilayout l, State n, Ilayout goal) {
+            layout = l;
+            father = n;
+            if (father!=null)
+                g = father.g + l.getG();
+            else g = 0.0;
+            f = g + l.getH(l, goal);
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+
+        /**
+         * Obtém o valor de f (g + h) para o estado.
+         *
+         * @return O valor de f para o estado
+         */
+        public double getF() {return f;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstHDA, com uma thread por processador disponível.
+     */
+    public BestFirstHDA() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construtor para a classe BestFirstHDA.
+     *
+     * @param numThreads O número de threads usadas na pesquisa
+     */
+    public BestFirstHDA(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("É necessária pelo menos uma thread");
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas, sempre na thread que chama solve (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * A classe interna Worker representa uma thread da pesquisa, com a sua fila de abertos, o seu mapa de melhores g
+     * e a sua caixa de correio.
+     */
+    private final class Worker implements Runnable {
+        private final PriorityQueue<State> abertos = new PriorityQueue<>(10, (s1, s2) -> Double.compare(s1.f, s2.f));
+        private final LongMap<State> melhores = new LongMap<>();
+        private final ConcurrentLinkedQueue<State> caixa = new ConcurrentLinkedQueue<>();
+        private Thread thread;
+        private volatile boolean suspenso;
+        private boolean ativo;
+        private long expansoes;
+        private int desdeRelogio;
+        private long gerados;
+        private long duplicados;
+        private int maxAbertos;
+
+        @Override
+        public void run() {
+            try {
+                while (!terminado) {
+                    State m;
+                    while ((m = caixa.poll()) != null) {
+                        receber(m);
+                    }
+                    State atual = proximo();
+                    if (atual == null) {
+                        // Nenhum estado desta thread pode melhorar a solução: fica parada até receber uma mensagem
+                        if (ativo) {
+                            ativo = false;
+                            if (trabalho.decrementAndGet() == 0) {
+                                terminar();
+                            }
+                        }
+                        esperar();
+                        continue;
+                    }
+                    if (atual.layout.isGoal(objective)) {
+                        abertos.poll();
+                        registarSolucao(atual);
+                    } else if (esgotado()) {
+                        return;
+                    } else {
+                        abertos.poll();
+                        expandir(atual);
+                    }
+                }
+            } catch (Throwable t) {
+                erro.compareAndSet(null, t);
+                terminar();
+            }
+        }
+
+        /**
+         * Verifica se o orçamento permite mais uma expansão; caso contrário pára a pesquisa. O estado que ia ser
+         * expandido fica nos abertos, para contar no limite inferior.
+         */
+        private boolean esgotado() {
+            if (maxExpansoes != Long.MAX_VALUE && expansoesGlobais.incrementAndGet() > maxExpansoes) {
+                parar(SearchResult.Status.BUDGET_EXHAUSTED);
+                return true;
+            }
+            if (++desdeRelogio == EXPANSOES_ENTRE_RELOGIO) {
+                desdeRelogio = 0;
+                if (maxTempo >= 0 && System.nanoTime() - inicio >= maxTempo) {
+                    parar(SearchResult.Status.BUDGET_EXHAUSTED);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Retorna o menor f entre os abertos desta thread e as mensagens por entregar, depois de a pesquisa terminar.
+         */
+        private double menorF() {
+            double minimo = abertos.isEmpty() ? Double.POSITIVE_INFINITY : abertos.peek().f;
+            for (State m : caixa) {
+                minimo = Math.min(minimo, m.f);
+            }
+            return minimo;
+        }
+
+        /**
+         * Espera por uma mensagem ou pelo fim da pesquisa: primeiro ativamente, depois cedendo o processador e por fim
+         * suspensa. Quem envia uma mensagem lê suspenso depois de a pôr na caixa, e esta thread volta a ver a caixa
+         * depois de escrever suspenso, pelo que uma mensagem nunca fica por ver enquanto a thread está suspensa.
+         */
+        private void esperar() {
+            for (int i = 0; i < ESPERAS_ATIVAS; i++) {
+                if (!caixa.isEmpty() || terminado) {
+                    return;
+                }
+                if (i < ESPERAS_ATIVAS / 2) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+            }
+            suspenso = true;
+            if (caixa.isEmpty() && !terminado) {
+                LockSupport.park(this);
+            }
+            suspenso = false;
+        }
+
+        /**
+         * Entrega uma mensagem a esta thread, acordando-a se estiver suspensa.
+         */
+        private void enviar(State m) {
+            caixa.add(m);
+            if (suspenso) {
+                // Só o primeiro remetente precisa de a acordar
+                suspenso = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Recebe um estado enviado por outra thread. A mensagem deixa de estar em trânsito: se a thread estava parada,
+         * passa a ativa e fica com a contagem da mensagem; caso contrário a contagem é descontada.
+         */
+        private void receber(State m) {
+            if (ativo) {
+                trabalho.decrementAndGet();
+            } else {
+                ativo = true;
+            }
+            adicionar(m);
+        }
+
+        /**
+         * Adiciona um estado à fila de abertos se ele melhorar o g conhecido para o seu layout (reabrindo-o se necessário).
+         */
+        private void adicionar(State e) {
+            State melhor = melhores.get(e.layout.stateKey());
+            if (melhor == null || e.g < melhor.g) {
+                melhores.put(e.layout.stateKey(), e);
+                abertos.add(e);
+                maxAbertos = Math.max(maxAbertos, abertos.size());
+            } else {
+                duplicados++;
+            }
+        }
+
+        /**
+         * Retorna, sem o remover, o próximo estado a expandir, descartando os estados desatualizados. Retorna null se não
+         * houver estados que ainda possam melhorar a melhor solução encontrada.
+         */
+        private State proximo() {
+            while (!abertos.isEmpty()) {
+                State topo = abertos.peek();
+                if (!promissor(topo)) {
+                    return null;
+                }
+                if (topo.g <= melhores.get(topo.layout.stateKey()).g) {
+                    return topo;
+                }
+                abertos.poll();
+            }
+            return null;
+        }
+
+        private void expandir(State atual) {
+            expansoes++;
+            for (Ilayout e : atual.layout.children()) {
+                if (atual.father != null && e.equals(atual.father.layout)) {
+                    continue;
+                }
+                gerados++;
+                State nn = new State(e, atual, objective);
+                if (!promissor(nn) || nn.g + dominio.lowerBound(e.stateKey(), objective) > limiteSuperior) {
+                    continue;
+                }
+                Worker dono = workers[dono(e)];
+                if (dono == this) {
+                    adicionar(nn);
+                } else {
+                    trabalho.incrementAndGet();
+                    dono.enviar(nn);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo, usando várias threads.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     * @throws InterruptedException se a thread for interrompida enquanto espera pelas threads da pesquisa, que são paradas
+     */
+    final public Iterator<State> solve(Ilayout s, Ilayout goal) throws InterruptedException {
+        State solucao = procurar(s, goal, SearchBudget.UNLIMITED);
+        if (paragem.get() == SearchResult.Status.CANCELLED) {
+            Thread.interrupted();
+            throw new InterruptedException();
+        }
+        return solucao == null ? null : Arrays.asList(reconstruirCaminho(solucao)).iterator();
+    }
+
+    /**
+     * Resolve o problema dentro de um orçamento de tempo e de estados expandidos, usando várias threads. Se a thread
+     * for interrompida, as threads da pesquisa são paradas e o resultado fica CANCELLED (o estado de interrupção é
+     * mantido). Se o orçamento acabar depois de já ter sido encontrada uma solução, esta é devolvida com o limite
+     * inferior dado pelo menor f dos abertos. O caminho do resultado é formado por estados do {@link SearchEngine}.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param orcamento Os limites da pesquisa
+     * @return O resultado da pesquisa: a solução, a prova de que não há solução ou o limite inferior atingido
+     */
+    public SearchResult solve(Ilayout s, Ilayout goal, SearchBudget orcamento) {
+        Objects.requireNonNull(orcamento);
+        State solucao = procurar(s, goal, orcamento);
+        SearchResult.Status status = paragem.get();
+        if (solucao != null) {
+            List<SearchEngine.State> caminho = new ArrayList<>();
+            SearchEngine.State anterior = null;
+            for (State e : reconstruirCaminho(solucao)) {
+                anterior = new SearchEngine.State(e.layout, anterior, e.g, e.f);
+                caminho.add(anterior);
+            }
+            double inferior = status == null ? solucao.g : Math.min(solucao.g, limiteInferior);
+            return new SearchResult(SearchResult.Status.SOLVED, caminho, inferior, expansoes);
+        }
+        if (status != null) {
+            return new SearchResult(status, null, limiteInferior, expansoes);
+        }
+        return new SearchResult(SearchResult.Status.UNSOLVABLE, null, Double.POSITIVE_INFINITY, expansoes);
+    }
+
+    /**
+     * Executa a pesquisa com as várias threads até terminar, esgotar o orçamento ou a thread ser interrompida.
+     *
+     * @return O estado objetivo da melhor solução, ou null se não foi encontrada nenhuma
+     */
+    private State procurar(Ilayout s, Ilayout goal, SearchBudget orcamento) {
+        objective = goal;
+        dominio = s;
+        limiteSuperior = s.upperBound(goal);
+        listener.solveStarted("BestFirstHDA", s, goal);
+        terminado = false;
+        melhorSolucao.set(null);
+        erro.set(null);
+        paragem.set(null);
+        expansoesGlobais.set(0);
+        maxExpansoes = orcamento.getExpansoes();
+        maxTempo = orcamento.getTempo() == null ? -1 : orcamento.getTempo().toNanos();
+        inicio = System.nanoTime();
+        workers = new Worker[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker();
+        }
+        // O estado inicial conta como uma mensagem em trânsito para a thread que é sua dona
+        trabalho.set(1);
+        workers[dono(s)].caixa.add(new State(s, null, goal));
+
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread(workers[i], "hda-" + i);
+            workers[i].thread = threads[i];
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            parar(SearchResult.Status.CANCELLED);
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        boolean interrompida = false;
+        for (Thread t : threads) {
+            while (true) {
+                try {
+                    t.join();
+                    break;
+                } catch (InterruptedException e) {
+                    // As threads da pesquisa são paradas e esperadas; a interrupção é reposta no fim
+                    interrompida = true;
+                    parar(SearchResult.Status.CANCELLED);
+                }
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+        if (erro.get() != null) {
+            workers = null;
+            throw new IllegalStateException("Erro numa thread da pesquisa", erro.get());
+        }
+        expansoes = 0;
+        long gerados = 0;
+        long duplicados = 0;
+        int maxAbertos = 0;
+        double menorF = Double.POSITIVE_INFINITY;
+        for (Worker w : workers) {
+            expansoes += w.expansoes;
+            gerados += w.gerados;
+            duplicados += w.duplicados;
+            maxAbertos += w.maxAbertos;
+            menorF = Math.min(menorF, w.menorF());
+        }
+        limiteInferior = menorF;
+        workers = null;
+        // O tamanho reportado é a soma dos máximos de cada thread, um limite superior do máximo real
+        listener.nodesExpanded(expansoes, maxAbertos);
+        listener.nodesGenerated(gerados);
+        listener.duplicatesRejected(duplicados);
+        State solucao = melhorSolucao.get();
+        if (solucao == null) {
+            listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        }
+        return solucao;
+    }
+
+    /**
+     * Pára a pesquisa por causa do orçamento ou de uma interrupção, registando o primeiro motivo.
+     */
+    private void parar(SearchResult.Status motivo) {
+        paragem.compareAndSet(null, motivo);
+        terminar();
+    }
+
+    /**
+     * Termina a pesquisa e acorda as threads suspensas, para que vejam o fim.
+     */
+    private void terminar() {
+        terminado = true;
+        // O array pode ser descartado por solve enquanto uma thread ainda está a terminar
+        Worker[] ws = workers;
+        if (ws != null) {
+            for (Worker w : ws) {
+                LockSupport.unpark(w.thread);
+            }
+        }
+    }
+
+    /**
+     * Retorna o número de estados expandidos, por todas as threads, na última chamada a solve.
+     *
+     * @return O número de estados expandidos
+     */
+    public long getExpansoes() {
+        return expansoes;
+    }
+
+    /**
+     * Retorna a thread dona de um layout, calculada a partir da sua chave.
+     */
+    private int dono(Ilayout l) {
+        long h = l.stateKey() * 0x9E3779B97F4A7C15L;
+        return (int) Long.remainderUnsigned(h ^ (h >>> 32), numThreads);
+    }
+
+    /**
+     * Verifica se um estado ainda pode levar a uma solução melhor que a melhor conhecida. Os estados com f igual ao custo
+     * dessa solução não são cortados, porque a heurística da Operation pode sobrestimar o custo em alguns estados.
+     */
+    private boolean promissor(State e) {
+        double custo = custoSolucao();
+        return e.f <= custo && e.g < custo;
+    }
+
+    private double custoSolucao() {
+        State solucao = melhorSolucao.get();
+        return solucao == null ? Double.POSITIVE_INFINITY : solucao.g;
+    }
+
+    /**
+     * Regista uma solução se ela for mais barata que a melhor conhecida.
+     */
+    private void registarSolucao(State e) {
+        State atual;
+        do {
+            atual = melhorSolucao.get();
+            if (atual != null && atual.g <= e.g) {
+                return;
+            }
+        } while (!melhorSolucao.compareAndSet(atual, e));
+    }
+
+    /**
+     * Reconstrói o caminho a partir do estado objetivo até o estado inicial, num array com o tamanho do caminho.
+     *
+     * @param goalState O estado objetivo a partir do qual o caminho será reconstruído
+     * @return O caminho reconstruído
+     */
+    private State[] reconstruirCaminho(State goalState) {
+        int comprimento = 0;
+        for (State e = goalState; e != null; e = e.father) {
+            comprimento++;
+        }
+        State[] result = new State[comprimento];
+        for (State e = goalState; e != null; e = e.father) {
+            result[--comprimento] = e;
+        }
+        listener.solveFinished(true, goalState.g, result.length - 1);
+        return result;
+    }
+}
@@ -1,177 +1,39 @@
-import java.util.*;
-
 /**
- * A classe BestFirstIDA representa uma versão do algoritmo Best-First que utiliza o Iterative deepening A* (IDA*) para melhorar a eficiência.
- * A BestFirstIDA mantém uma fila de estados abertos, um mapa de estados fechados e uma lista de estados na fringe(os nós que são superiores ao limite atual), 
- * e atraves da fringe vai calcular o novo limite, processo que é repetido ate ser encontrado a solucao.
- * A classe inclui métodos para encontrar o caminho até um estado objetivo a partir de um estado inicial, levando em consideração uma função heurística adicional.
+ * A classe BestFirstIDA representa o algoritmo Iterative deepening A* (IDA*).
+ * Cada iteração é uma pesquisa em profundidade, feita com uma pilha explícita, que corta os estados cujo f = g + h
+ * ultrapassa o limite atual. O menor f entre os estados cortados é guardado como mínimo corrente e passa a ser o limite
+ * da iteração seguinte, processo que é repetido ate ser encontrado a solucao.
+ * Quando é encontrada uma solução, a iteração é terminada em modo branch-and-bound (cortando os estados com g maior ou igual
+ * ao da melhor solução), de forma a devolver a solução mais barata dentro do limite mesmo que a heurística sobrestime o custo.
+ * Como só o caminho atual é guardado, a memória usada é proporcional à profundidade da solução. Opcionalmente pode ser
+ * usada uma tabela de transposição de capacidade limitada, que evita voltar a explorar estados já alcançados na mesma
+ * iteração com um custo igual ou menor. O algoritmo é uma configuração do {@link SearchEngine}.
  *
  * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
  */
-public class BestFirstIDA {
-    protected Queue<State> abertos;
-    private Map<Ilayout, State> fechados;
-    private State atual;
-    private Ilayout objective;
-
-    private List<State> fringe = new ArrayList<>();
-
-    /**
-     * A classe State representa um estado dentro do algoritmo Best-FirstIDA. 
-     * Ela mantém informações sobre o layout do estado, o estado pai, o valor de g (custo acumulado) e uma função heurística adicional, h.
-     */
-    static class State {
-        private final Ilayout layout;
-        private final State father;
-        private final double g;
-        
-        /**
-         * Construtor para a classe State.
-         *
-         * @param l O layout do estado
-         * @param n O estado pai
-         */
-        public State(Ilayout l, State n) {
-            layout = l;
-            father = n;
-            if (father!=null)
-                g = father.g + l.getG();
-            else g = 0.0;
-        }
-
-        /**
-         * Converte o estado em uma representação de string.
-         *
-         * @return A representação em string do estado
-         */
-        public String toString() { return layout.toString(); }
-
-        
-        /**
-         * Obtém o valor de g para o estado.
-         *
-         * @return O valor de g para o estado
-         */
-        public double getG() {return g;}
-
-
-        /**
-         * Gera o código hash para o estado.
-         *
-         * @return O código hash gerado para o estado
-         */
-        public int hashCode() {
-            return toString().hashCode();
-        }
-
-        
-        /**
-         * Verifica se o objeto passado é igual a este estado.
-         *
-         * @param o O objeto a ser comparado com este estado
-         * @return true se os objetos são iguais, false caso contrário
-         */
-        public boolean equals (Object o) {
-            if (o==null) return false;
-            if (this.getClass() != o.getClass()) return false;
-            State n = (State) o;
-            return this.layout.equals(n.layout);
-        }
+public class BestFirstIDA extends SearchEngine {
 
-        
-        /**
-         * Obtém o valor da função heurística h para o estado, considerando o estado atual e o estado objetivo.
-         *
-         * @param layout O layout do estado
-         * @param goal O estado objetivo
-         * @return O valor da função heurística h para o estado
-         */
-        public double getH(Ilayout layout, Ilayout goal) {
-            return layout.getH(layout,goal);
-        }
-    }
-
-    
     /**
-     * Gera uma lista de sucessores para o estado fornecido.
-     *
-     * @param n O estado para o qual os sucessores serão gerados
-     * @return Uma lista de sucessores do estado fornecido
+     * Construtor para a classe BestFirstIDA, sem tabela de transposição.
      */
-    final private List<State> sucessores(State n) {
-        List<State> sucs = new ArrayList<>();
-        List<Ilayout> children = n.layout.children();
-        for(Ilayout e: children) {
-            if (n.father == null || !e.equals(n.father.layout)){
-                State nn = new State(e, n);
-                sucs.add(nn);
-            }
-        }
-        return sucs;
+    public BestFirstIDA() {
+        this(0);
     }
 
-
     /**
-     * Resolve o problema, encontrando o caminho do estado inicial para o objetivo.
+     * Construtor para a classe BestFirstIDA.
      *
-     * @param s O estado inicial
-     * @param goal O estado objetivo
-     * @return Um iterador para o caminho do estado inicial para o estado objetivo, se encontrado. Caso contrário, retorna null.
+     * @param capacidadeTransposicao O número máximo de estados guardados na tabela de transposição; 0 desativa a tabela
      */
-    final public Iterator<State> solve(Ilayout s, Ilayout goal) {
-        double limit = s.getH(s,goal);
-        abertos = new PriorityQueue<>(10, (s1, s2) -> (int) Math.signum((s1.getH(s1.layout,goal) + s1.getG()) - (s2.getH(s2.layout, goal) + s2.getG())));
-        objective = goal;
-        fechados = new HashMap<>();
-        abertos.add(new State(s, null));
-        while (true) {
-            if (abertos.isEmpty()) {
-                if(!fringe.isEmpty()){
-                    fringe.sort((s1, s2) -> (int) Math.signum((s1.getH(s1.layout,goal) + s1.getG()) - (s2.getH(s2.layout, goal) + s2.getG())));
-                    State first =  fringe.get(0);
-                    limit = first.getG() + first.getH(first.layout, goal);
-                    fringe.clear();
-                    abertos.clear();
-                    fechados.clear();
-                    abertos.add(new State(s,null));
-
-                }
-                else{
-                    return null;
-                }
-            }
-            atual = abertos.poll();
-            assert atual != null;
-            if (atual.layout.isGoal(objective)) {
-                return reconstruirCaminho(atual);
-            }
-            fechados.put(atual.layout, atual);
-            List<State> sucs = sucessores(atual);
-            for (State e : sucs) {
-                double eCost = e.getG() + e.getH(e.layout,goal);
-                if (!fechados.containsKey(e.layout) && eCost <= limit) {
-                    abertos.add(e);
-                }else{
-                    fringe.add(e);
-                }
-            }
-        }
+    public BestFirstIDA(int capacidadeTransposicao) {
+        super("BestFirstIDA", Evaluation.A_STAR, new DepthFirstOpenList(), transposicao(capacidadeTransposicao),
+                BoundingPolicy.ITERATIVE_DEEPENING);
     }
 
-
-    /**
-     * Reconstrói o caminho a partir do estado objetivo até o estado inicial.
-     *
-     * @param goalState O estado objetivo a partir do qual o caminho será reconstruído
-     * @return Um iterador para o caminho reconstruído
-     */
-    private Iterator<State> reconstruirCaminho(State goalState) {
-        List<State> result = new ArrayList<>();
-        while (goalState != null) {
-            result.add(0, goalState);
-            goalState = goalState.father;
+    private static ClosedSet transposicao(int capacidade) {
+        if (capacidade < 0) {
+            throw new IllegalArgumentException("A capacidade da tabela de transposição não pode ser negativa");
         }
-        return result.iterator();
+        return capacidade == 0 ? new NoClosedSet() : new TranspositionTable(capacidade);
     }
-
 }
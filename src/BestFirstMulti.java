@@ -0,0 +1,291 @@
+import java.util.*;
+
+/**
+ * A classe BestFirstMulti resolve vários objetivos a partir do mesmo layout inicial numa única pesquisa, partilhando
+ * a árvore de pesquisa entre todos, em vez de fazer uma pesquisa completa por objetivo.
+ * A pesquisa é um custo uniforme ou um A* cuja heurística é a menor das heurísticas para os objetivos que ainda
+ * faltam encontrar, o que a guia para o objetivo mais próximo. Cada objetivo fica resolvido quando é retirado dos
+ * abertos e a pesquisa termina quando todos foram encontrados, pelo que o trabalho total é próximo do da pesquisa
+ * para o objetivo mais difícil.
+ * Quando um objetivo é encontrado a heurística só pode aumentar; as prioridades dos abertos calculadas antes ficam
+ * desatualizadas e são corrigidas quando os estados são retirados (um estado cujo f aumentou volta aos abertos).
+ * Assim cada caminho é ótimo nas mesmas condições do A*: se a heurística de cada objetivo for consistente.
+ * Com a heurística, cada expansão calcula a heurística dos filhos para cada objetivo em falta.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstMulti {
+    private final boolean heuristica;
+    private SearchListener listener = SearchListener.NONE;
+
+    private LongMap<No> nos;
+    private IndexedPriorityQueue<No, No> abertos;
+    private LongMap<Ilayout> restantes;
+    private List<Ilayout> objetivos;
+    private int versao;
+
+    // Estado a ser expandido e filhos da expansão atual, recolhidos pelo gerador de sucessores
+    private int filhos;
+    private int[] movimentos = new int[4];
+    private long[] chaves = new long[4];
+    private double[] custos = new double[4];
+    private double[] hs = new double[4];
+    private boolean primeiroObjetivo;
+    private final Ilayout.ChildSink gerador = this::recolher;
+
+    /**
+     * A classe interna No guarda a informação de cada layout alcançado: o melhor g conhecido, o pai e o movimento nesse
+     * caminho, a heurística (e o número de objetivos encontrados quando foi calculada) e se já foi expandido.
+     */
+    private static final class No {
+        private final long chave;
+        private Ilayout layout;
+        private No pai;
+        private int move;
+        private double g;
+        private double h;
+        private int versao;
+        private boolean fechado;
+
+        No(long chave) {
+            this.chave = chave;
+        }
+
+        Ilayout layout() {
+            if (layout == null) {
+                layout = pai.layout().apply(move);
+            }
+            return layout;
+        }
+    }
+
+    /**
+     * A classe State representa um estado de um caminho encontrado pelo algoritmo BestFirstMulti.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Ilayout l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    /**
+     * Construtor para a classe BestFirstMulti, com a heurística (A*).
+     */
+    public BestFirstMulti() {
+        this(true);
+    }
+
+    /**
+     * Construtor para a classe BestFirstMulti.
+     *
+     * @param heuristica true para um A* guiado pelo objetivo mais próximo, false para uma pesquisa de custo uniforme
+     */
+    public BestFirstMulti(boolean heuristica) {
+        this.heuristica = heuristica;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema para todos os objetivos, encontrando o caminho entre o layout inicial e cada um deles.
+     *
+     * @param s o layout inicial
+     * @param goals os layouts objetivo
+     * @return Os caminhos encontrados, pela ordem dos objetivos; os objetivos sem solução não estão no mapa
+     */
+    public Map<Ilayout, List<State>> solve(Ilayout s, Collection<? extends Ilayout> goals) {
+        Map<Ilayout, List<State>> result = new LinkedHashMap<>();
+        if (goals.isEmpty()) {
+            return result;
+        }
+        restantes = new LongMap<>(goals.size());
+        objetivos = new ArrayList<>(goals.size());
+        for (Ilayout goal : goals) {
+            if (restantes.put(goal.stateKey(), goal) == null) {
+                objetivos.add(goal);
+            }
+        }
+        nos = new LongMap<>();
+        abertos = new IndexedPriorityQueue<>(10, n -> n.chave);
+        versao = 0;
+        Map<Long, List<State>> caminhos = new HashMap<>();
+        listener.solveStarted("BestFirstMulti", s, goals.iterator().next());
+
+        No raiz = new No(s.stateKey());
+        raiz.layout = s;
+        raiz.h = heuristica(s);
+        raiz.versao = versao;
+        nos.put(raiz.chave, raiz);
+        abertos.offer(raiz, raiz, raiz.h);
+        double maiorCusto = 0.0;
+        int maiorProfundidade = 0;
+        while (!abertos.isEmpty() && !restantes.isEmpty()) {
+            double prioridade = abertos.peekPriority();
+            No n = abertos.poll();
+            if (n.versao != versao) {
+                n.h = heuristica(n.layout());
+                n.versao = versao;
+            }
+            if (n.g + n.h > prioridade) {
+                // A heurística aumentou desde que o estado foi colocado nos abertos
+                abertos.offer(n, n, n.g + n.h);
+                continue;
+            }
+            n.fechado = true;
+            Ilayout encontrado = restantes.remove(n.chave);
+            if (encontrado != null) {
+                objetivos.remove(encontrado);
+                List<State> caminho = reconstruirCaminho(n);
+                caminhos.put(n.chave, caminho);
+                maiorCusto = Math.max(maiorCusto, n.g);
+                maiorProfundidade = Math.max(maiorProfundidade, caminho.size() - 1);
+                versao++;
+                if (restantes.isEmpty()) {
+                    break;
+                }
+            }
+            expandir(n);
+        }
+        for (Ilayout goal : goals) {
+            List<State> caminho = caminhos.get(goal.stateKey());
+            if (caminho != null) {
+                result.put(goal, caminho);
+            }
+        }
+        boolean todos = restantes.isEmpty();
+        listener.solveFinished(todos, todos ? maiorCusto : Double.POSITIVE_INFINITY, todos ? maiorProfundidade : -1);
+        return result;
+    }
+
+    /**
+     * Calcula a menor heurística de um layout para os objetivos que ainda faltam encontrar (0 sem heurística).
+     */
+    private double heuristica(Ilayout l) {
+        if (!heuristica) {
+            return 0.0;
+        }
+        double h = Double.POSITIVE_INFINITY;
+        for (Ilayout goal : objetivos) {
+            h = Math.min(h, l.getH(l, goal));
+        }
+        return h;
+    }
+
+    /**
+     * Expande um estado: recolhe os filhos com a heurística de cada objetivo em falta e coloca nos abertos os que
+     * melhoram o g conhecido.
+     */
+    private void expandir(No n) {
+        filhos = 0;
+        primeiroObjetivo = true;
+        if (heuristica) {
+            for (Ilayout goal : objetivos) {
+                n.layout().forEachChild(goal, gerador);
+                primeiroObjetivo = false;
+            }
+        } else {
+            n.layout().forEachChild(n.layout(), gerador);
+        }
+        int gerados = 0;
+        int duplicados = 0;
+        for (int i = 0; i < filhos; i++) {
+            long chave = chaves[i];
+            if (n.pai != null && chave == n.pai.chave) {
+                continue;
+            }
+            gerados++;
+            double g = n.g + custos[i];
+            No filho = nos.get(chave);
+            if (filho == null) {
+                filho = new No(chave);
+                nos.put(chave, filho);
+            } else if (filho.fechado || g >= filho.g) {
+                duplicados++;
+                continue;
+            }
+            filho.pai = n;
+            filho.move = movimentos[i];
+            filho.g = g;
+            filho.h = heuristica ? hs[i] : 0.0;
+            filho.versao = versao;
+            abertos.offer(filho, filho, g + filho.h);
+        }
+        listener.nodesExpanded(1, abertos.size());
+        listener.nodesGenerated(gerados);
+        listener.duplicatesRejected(duplicados);
+    }
+
+    /**
+     * Recebe um filho do estado a ser expandido. Na primeira passagem guarda o filho; nas seguintes (uma por objetivo
+     * em falta) só atualiza a menor heurística.
+     */
+    private void recolher(int move, long chave, double custo, double h) {
+        if (primeiroObjetivo) {
+            if (filhos == chaves.length) {
+                movimentos = Arrays.copyOf(movimentos, filhos * 2);
+                chaves = Arrays.copyOf(chaves, filhos * 2);
+                custos = Arrays.copyOf(custos, filhos * 2);
+                hs = Arrays.copyOf(hs, filhos * 2);
+            }
+            movimentos[filhos] = move;
+            chaves[filhos] = chave;
+            custos[filhos] = custo;
+            hs[filhos] = h;
+            filhos++;
+        } else {
+            // Os filhos são enviados sempre pela mesma ordem, identificados pelo movimento
+            for (int i = 0; i < filhos; i++) {
+                if (movimentos[i] == move) {
+                    hs[i] = Math.min(hs[i], h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copia o caminho até um estado, do layout inicial até ele.
+     */
+    private List<State> reconstruirCaminho(No alvo) {
+        int comprimento = 0;
+        for (No n = alvo; n != null; n = n.pai) {
+            comprimento++;
+        }
+        State[] result = new State[comprimento];
+        for (No n = alvo; n != null; n = n.pai) {
+            result[--comprimento] = new State(n.layout(), n.g);
+        }
+        return Arrays.asList(result);
+    }
+}
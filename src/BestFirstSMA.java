@@ -0,0 +1,324 @@
+import java.util.*;
+
+/**
+ * A classe BestFirstSMA representa o algoritmo SMA* (Simplified Memory-bounded A*), uma versão do A* que nunca guarda
+ * mais do que um número máximo de estados em memória.
+ * Enquanto há memória disponível o algoritmo comporta-se como o A*. Quando o limite é atingido, a folha com maior f
+ * (e, em caso de empate, a menos profunda) é esquecida: é retirada da árvore e o seu f fica guardado no pai, que volta
+ * a ser uma folha e pode voltar a gerar esse sucessor mais tarde. O f de cada estado é sempre o menor f dos seus
+ * sucessores (valores "copiados" para cima), pelo que o algoritmo sabe qual a subárvore esquecida que vale a pena
+ * voltar a explorar. Um sucessor cujo layout já está em memória com um custo igual ou menor não é gerado, o que evita
+ * repetir em memória os estados alcançados por vários caminhos.
+ * Os estados a uma profundidade igual ao limite de memória não podem fazer parte de um caminho que caiba em memória,
+ * e recebem f infinito. Se a solução ótima tiver profundidade menor que o limite, o caminho devolvido é ótimo (desde que a
+ * heurística não sobrestime o custo); caso contrário é devolvido o melhor caminho que cabe em memória, ou null.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BestFirstSMA {
+    /** Estimativa da memória ocupada por cada estado guardado, usada para converter um orçamento em bytes. */
+    public static final int BYTES_POR_ESTADO = 160;
+
+    private final int maxEstados;
+    private Ilayout objective;
+    private TreeSet<State> abertos;
+    private LongMap<State> memoria;
+    private int estados;
+    private int maxUsados;
+    private long esquecidos;
+    private long contador;
+    private SearchListener listener = SearchListener.NONE;
+
+    /**
+     * A classe State representa um estado dentro do algoritmo BestFirstSMA.
+     * Ela mantém informações sobre o layout do estado, o estado pai, o valor de g (custo acumulado), o valor de f
+     * (atualizado com os valores dos sucessores), a profundidade, os sucessores em memória e o menor f dos sucessores esquecidos.
+     */
+    static class State {
+        private final Ilayout layout;
+        private final State father;
+        private final double g;
+        private final int profundidade;
+        private final long ordem;
+        private double f;
+        private List<State> filhos;
+        private double esquecido = Double.POSITIVE_INFINITY;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param n O estado pai
+         * @param f O valor de f do estado
+         * @param ordem O número de ordem de criação do estado, usado para desempatar
+         */
+        State(Ilayout l, State n, double f, long ordem) {
+            layout = l;
+            father = n;
+            if (father!=null) {
+                g = father.g + l.getG();
+                profundidade = father.profundidade + 1;
+            } else {
+                g = 0.0;
+                profundidade = 0;
+            }
+            this.f = f;
+            this.ordem = ordem;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+
+        private boolean folha() {
+            return filhos == null || filhos.isEmpty();
+        }
+    }
+
+    /**
+     * Ordem dos abertos: menor f primeiro e, em caso de empate, o estado mais profundo e depois o mais recente.
+     * O último estado do conjunto é assim a folha com maior f e menor profundidade, a primeira candidata a ser esquecida.
+     */
+    private static final Comparator<State> ORDEM = (s1, s2) -> {
+        int c = Double.compare(s1.f, s2.f);
+        if (c != 0) return c;
+        c = Integer.compare(s2.profundidade, s1.profundidade);
+        if (c != 0) return c;
+        return Long.compare(s2.ordem, s1.ordem);
+    };
+
+    /**
+     * Construtor para a classe BestFirstSMA.
+     *
+     * @param maxEstados O número máximo de estados guardados em memória (pelo menos 2)
+     */
+    public BestFirstSMA(int maxEstados) {
+        if (maxEstados < 2) {
+            throw new IllegalArgumentException("São necessários pelo menos 2 estados em memória");
+        }
+        this.maxEstados = maxEstados;
+    }
+
+    /**
+     * Cria um BestFirstSMA com um orçamento de memória em bytes, convertido em estados com {@link #BYTES_POR_ESTADO}.
+     *
+     * @param bytes O orçamento de memória, em bytes
+     * @return O algoritmo com o número de estados correspondente
+     */
+    public static BestFirstSMA forByteBudget(long bytes) {
+        return new BestFirstSMA((int) Math.min(Integer.MAX_VALUE, Math.max(2, bytes / BYTES_POR_ESTADO)));
+    }
+
+    /**
+     * Retorna o número máximo de estados guardados em memória.
+     *
+     * @return O número máximo de estados
+     */
+    public int getMaxEstados() {
+        return maxEstados;
+    }
+
+    /**
+     * Retorna o maior número de estados em memória em qualquer momento da última chamada a solve, incluindo os
+     * sucessores gerados numa expansão antes de serem esquecidas folhas. Antes de cada expansão há no máximo
+     * {@link #getMaxEstados()} estados, pelo que este valor nunca passa de getMaxEstados() mais o número de sucessores
+     * de um estado; só passa de getMaxEstados() se alguma folha tiver sido esquecida.
+     *
+     * @return O maior número de estados em memória
+     */
+    public int getMaxEstadosUsados() {
+        return maxUsados;
+    }
+
+    /**
+     * Retorna o número de folhas esquecidas na última chamada a solve.
+     *
+     * @return O número de folhas esquecidas
+     */
+    public long getEsquecidos() {
+        return esquecidos;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo, sem nunca guardar mais
+     * estados do que o limite de memória.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver
+     *         solução que caiba em memória
+     */
+    final public Iterator<State> solve(Ilayout s, Ilayout goal) {
+        objective = goal;
+        abertos = new TreeSet<>(ORDEM);
+        memoria = new LongMap<>();
+        contador = 0;
+        listener.solveStarted("BestFirstSMA", s, goal);
+        State raiz = new State(s, null, s.getH(s, goal), contador++);
+        abertos.add(raiz);
+        memoria.put(s.stateKey(), raiz);
+        estados = 1;
+        maxUsados = 1;
+        esquecidos = 0;
+
+        while (!abertos.isEmpty()) {
+            State atual = abertos.first();
+            if (atual.f == Double.POSITIVE_INFINITY) {
+                // Nenhum caminho que caiba em memória chega ao objetivo
+                break;
+            }
+            if (atual.layout.isGoal(objective)) {
+                return reconstruirCaminho(atual);
+            }
+            expandir(atual);
+        }
+        listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+        return null;
+    }
+
+    /**
+     * Gera os sucessores de um estado que ainda não estão em memória (todos na primeira expansão, ou os esquecidos
+     * nas seguintes), atualiza o f do estado e dos antecessores e esquece folhas enquanto o limite for ultrapassado.
+     *
+     * @param atual O estado a expandir
+     */
+    private void expandir(State atual) {
+        abertos.remove(atual);
+        if (atual.filhos == null) {
+            atual.filhos = new ArrayList<>(3);
+        }
+        int gerados = 0;
+        int duplicados = 0;
+        for (Ilayout e : atual.layout.children()) {
+            if (atual.father != null && e.equals(atual.father.layout)) {
+                continue;
+            }
+            State existente = memoria.get(e.stateKey());
+            if (existente != null && existente.g <= atual.g + e.getG()) {
+                // O layout já está em memória com um caminho igual ou melhor (ou é um sucessor que não foi esquecido)
+                duplicados++;
+                continue;
+            }
+            State nn = new State(e, atual, 0.0, contador++);
+            if (e.isGoal(objective)) {
+                nn.f = nn.g;
+            } else if (nn.profundidade >= maxEstados - 1) {
+                // Um caminho que passe por este estado não cabe em memória
+                nn.f = Double.POSITIVE_INFINITY;
+            } else {
+                // O f de um sucessor nunca é menor que o do pai (pathmax)
+                nn.f = Math.max(atual.f, nn.g + e.getH(e, objective));
+            }
+            atual.filhos.add(nn);
+            abertos.add(nn);
+            memoria.put(e.stateKey(), nn);
+            estados++;
+            gerados++;
+            // O pico é medido antes de as folhas serem esquecidas
+            maxUsados = Math.max(maxUsados, estados);
+        }
+        atual.esquecido = Double.POSITIVE_INFINITY;
+        listener.nodesExpanded(1, abertos.size());
+        listener.nodesGenerated(gerados + duplicados);
+        listener.duplicatesRejected(duplicados);
+        atualizar(atual);
+        if (atual.folha()) {
+            // Sem sucessores: o estado é um beco sem saída, com f infinito, e fica nos abertos para ser esquecido
+            abertos.add(atual);
+        }
+        while (estados > maxEstados) {
+            esquecer();
+        }
+    }
+
+    /**
+     * Atualiza o f de um estado já expandido com o menor f dos seus sucessores (em memória e esquecidos) e propaga a
+     * alteração para os antecessores enquanto esta mudar alguma coisa.
+     *
+     * @param e O estado cujos sucessores mudaram
+     */
+    private void atualizar(State e) {
+        while (e != null) {
+            double minimo = e.esquecido;
+            for (State filho : e.filhos) {
+                minimo = Math.min(minimo, filho.f);
+            }
+            if (minimo == e.f) {
+                return;
+            }
+            boolean aberto = abertos.remove(e);
+            e.f = minimo;
+            if (aberto) {
+                abertos.add(e);
+            }
+            e = e.father;
+        }
+    }
+
+    /**
+     * Esquece a folha com maior f e menor profundidade: retira-a da árvore, guarda o seu f no pai e volta a colocar
+     * o pai nos abertos, para que o sucessor possa ser gerado outra vez.
+     */
+    private void esquecer() {
+        Iterator<State> it = abertos.descendingIterator();
+        while (it.hasNext()) {
+            State pior = it.next();
+            if (pior.father == null || !pior.folha()) {
+                continue;
+            }
+            it.remove();
+            State pai = pior.father;
+            pai.filhos.remove(pior);
+            pai.esquecido = Math.min(pai.esquecido, pior.f);
+            long chave = pior.layout.stateKey();
+            if (memoria.get(chave) == pior) {
+                memoria.remove(chave);
+            }
+            estados--;
+            esquecidos++;
+            abertos.remove(pai);
+            atualizar(pai);
+            abertos.add(pai);
+            return;
+        }
+        throw new IllegalStateException("Não há folhas que possam ser esquecidas");
+    }
+
+    /**
+     * Reconstrói o caminho a partir do estado objetivo até o estado inicial, num array com o tamanho do caminho.
+     *
+     * @param goalState O estado objetivo a partir do qual o caminho será reconstruído
+     * @return Um iterador para o caminho reconstruído
+     */
+    private Iterator<State> reconstruirCaminho(State goalState) {
+        int comprimento = 0;
+        for (State e = goalState; e != null; e = e.father) {
+            comprimento++;
+        }
+        State[] result = new State[comprimento];
+        for (State e = goalState; e != null; e = e.father) {
+            result[--comprimento] = e;
+        }
+        listener.solveFinished(true, goalState.g, result.length - 1);
+        return Arrays.asList(result).iterator();
+    }
+}
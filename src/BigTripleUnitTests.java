@@ -2,12 +2,40 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 
 class BigTripleUnitTests {
 
+	 // Os casos dos testes de base: o layout inicial n, cujo objetivo é 3n, e o custo ótimo
+	 private static final int[][] CASOS = {{30, 18}, {-70, 24}, {2200, 1103}, {0, 0}, {54, 30}, {-6, 8},
+			 {-2000, 506}, {1000, 503}, {-7, 9}, {-23, 13}, {-3500, 881}};
+
+	 static Stream<Arguments> casos() {
+		 return Arrays.stream(CASOS).map(c -> Arguments.of(c[0], c[1]));
+	 }
+
+	 // Os casos com |n| até 100, para os testes que repetem a pesquisa muitas vezes por caso
+	 static Stream<Arguments> casosPequenos() {
+		 return Arrays.stream(CASOS).filter(c -> Math.abs(c[0]) <= 100).map(c -> Arguments.of(c[0], c[1]));
+	 }
+
 	 @Test
 	 public void testSmallPositive() {
         // Test case 1: current is a small positive number
@@ -238,5 +266,913 @@ class BigTripleUnitTests {
 	        assertEquals(881, result);
 	 }
 	 
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testPrimitiveEngineMatchesBestFirstA(int input, int expectedCost) {
+        // O motor primitivo tem de encontrar o mesmo custo que o BestFirstA
+        Operation actual1 = new Operation(input);
+        Operation goal1 = new Operation(input*3);
+
+        Iterator<BestFirstA.State> expected = new BestFirstA().solve(actual1, goal1);
+        Iterator<BestFirstAInt.State> it = new BestFirstAInt().solve(actual1, goal1);
+
+        double custoA = 0;
+        while (expected.hasNext()) custoA = expected.next().getG();
+        double result = 0;
+        while (it.hasNext()) result = it.next().getG();
+
+        assertEquals(expectedCost, custoA);
+        assertEquals(custoA, result);
+	 }
+
+	 @Test
+	 public void testPrimitiveEngineFindsTheSamePathAsBestFirstA() {
+        // Também com objetivos que não são 3n, onde a heurística sobrestima o custo e o desempate decide o caminho
+		 BestFirstAInt motor = new BestFirstAInt();
+		 for (int input = -60; input <= 60; input++) {
+			 for (int goal : new int[] {input * 3, input * 2 + 7, input - 11}) {
+				 assertEquals(caminhoA(input, goal), caminhoAInt(motor, input, goal), input + " -> " + goal);
+			 }
+		 }
+		 // Os casos em que o desempate por maior g dava um custo diferente
+		 for (int[] p : new int[][] {{-11, -15}, {-31, -42}, {-32, -43}}) {
+			 assertEquals(caminhoA(p[0], p[1]), caminhoAInt(motor, p[0], p[1]));
+		 }
+	 }
+
+	 private static List<String> caminhoA(int input, int goal) {
+		 List<String> caminho = new ArrayList<>();
+		 for (Iterator<BestFirstA.State> it = new BestFirstA().solve(new Operation(input), new Operation(goal)); it.hasNext();) {
+			 BestFirstA.State e = it.next();
+			 caminho.add(e + "@" + e.getG());
+		 }
+		 return caminho;
+	 }
+
+	 private static List<String> caminhoAInt(BestFirstAInt motor, int input, int goal) {
+		 List<String> caminho = new ArrayList<>();
+		 for (Iterator<BestFirstAInt.State> it = motor.solve(new Operation(input), new Operation(goal)); it.hasNext();) {
+			 BestFirstAInt.State e = it.next();
+			 caminho.add(e + "@" + e.getG());
+		 }
+		 return caminho;
+	 }
+
+	 @Test
+	 public void testPrimitiveEngineSkipsMovesThatOverflow() {
+        // 1_500_000_000 * 2 dá a volta a int e daria -1_294_967_296 com custo 3; esse movimento não pode ser gerado
+        SearchResult r = new BestFirstAInt().solve(new Operation(1_500_000_000), new Operation(-1_294_967_296),
+                SearchBudget.ofExpansions(10000));
+        assertEquals(SearchResult.Status.BUDGET_EXHAUSTED, r.getStatus());
+
+        // Perto do limite só os movimentos que cabem num int são usados
+        SearchResult limite = new BestFirstAInt().solve(new Operation(Integer.MAX_VALUE - 2),
+                new Operation(Integer.MAX_VALUE), SearchBudget.UNLIMITED);
+        assertEquals(2, limite.getCost());
+        assertEquals(3, limite.getPath().size());
+	 }
+	 
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testBidirectionalMatchesExpectedCosts(int input, int expected) {
+        // A pesquisa bidirecional tem de encontrar os mesmos custos ótimos que os outros algoritmos
+		 Iterator<BestFirstBi.State> it = new BestFirstBi().solve(new Operation(input), new Operation(input*3));
+
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+
+		 assertEquals(expected, (int) result);
+	 }
+	 
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testParallelSearchMatchesExpectedCosts(int input, int expected) throws InterruptedException {
+        // O HDA* com várias threads tem de encontrar os mesmos custos ótimos que o A* sequencial
+		 Iterator<BestFirstHDA.State> it = new BestFirstHDA(3).solve(new Operation(input), new Operation(input*3));
+
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+
+		 assertEquals(expected, (int) result);
+	 }
+	 
+	 @Test
+	 public void testParallelSearchHonoursBudgetAndInterrupt() {
+        // O HDA* pára quando o orçamento acaba e quando a thread que o chama é interrompida
+		 BestFirstHDA hda = new BestFirstHDA(3);
+		 SearchResult completo = hda.solve(new Operation(2000), new Operation(6000), SearchBudget.UNLIMITED);
+		 assertEquals(SearchResult.Status.SOLVED, completo.getStatus());
+		 assertEquals(1003, (int) completo.getCost());
+		 assertEquals(1.0, completo.getSuboptimality());
+
+		 SearchResult limitado = hda.solve(new Operation(2000), new Operation(6000), SearchBudget.ofExpansions(100));
+		 assertEquals(SearchResult.Status.BUDGET_EXHAUSTED, limitado.getStatus());
+		 assertTrue(limitado.getExpanded() <= 100);
+		 assertTrue(limitado.getLowerBound() <= 1003);
+
+		 Thread.currentThread().interrupt();
+		 try {
+			 SearchResult cancelado = hda.solve(new Operation(2000), new Operation(6000), SearchBudget.UNLIMITED);
+			 assertEquals(SearchResult.Status.CANCELLED, cancelado.getStatus());
+			 assertTrue(Thread.currentThread().isInterrupted());
+		 } finally {
+			 Thread.interrupted();
+		 }
+	 }
+	 
+	 @Test
+	 public void testBatchKeepsInputOrder() throws InterruptedException {
+        // Os resultados do BatchSolver têm de vir pela ordem dos problemas, ou uma vez cada quando são entregues ao terminar
+		 List<BatchSolver.Query> queries = new ArrayList<>();
+		 for (int[] caso : CASOS) {
+			 queries.add(new BatchSolver.Query(new Operation(caso[0]), new Operation(caso[0]*3)));
+		 }
+
+		 try (BatchSolver batch = new BatchSolver(4)) {
+			 List<BatchSolver.Result> results = batch.solveAll(queries);
+			 for (int k = 0; k < CASOS.length; k++) {
+				 assertEquals(k, results.get(k).getIndex());
+				 assertEquals(CASOS[k][1], (int) results.get(k).getCost());
+			 }
+
+			 int[] entregues = new int[CASOS.length];
+			 batch.solveAll(queries, r -> {
+				 entregues[r.getIndex()]++;
+				 assertEquals(CASOS[r.getIndex()][1], (int) r.getCost());
+			 });
+			 for (int n : entregues) {
+				 assertEquals(1, n);
+			 }
+		 }
+	 }
+
+	 @Test
+	 public void testBatchReusesABoundedPoolOfEngines() throws InterruptedException {
+        // Com um executor de muitas threads, o BatchSolver não pode criar mais motores do que o paralelismo pedido
+		 List<BatchSolver.Query> queries = new ArrayList<>();
+		 for (int input = 1; input <= 40; input++) {
+			 queries.add(new BatchSolver.Query(new Operation(input), new Operation(input*3)));
+		 }
+		 ExecutorService executor = Executors.newCachedThreadPool();
+		 try (BatchSolver batch = new BatchSolver(executor, 2)) {
+			 List<BatchSolver.Result> results = batch.solveAll(queries);
+			 for (int k = 0; k < queries.size(); k++) {
+				 assertTrue(results.get(k).isSolved());
+			 }
+			 assertTrue(batch.getEngineCount() >= 1 && batch.getEngineCount() <= 2);
+		 } finally {
+			 executor.shutdownNow();
+		 }
+	 }
+
+	 @Test
+	 public void testDistanceTableMatchesSearch(@TempDir Path diretorio) throws Exception {
+        // A tabela de distâncias tem de dar os custos da pesquisa de custo uniforme e caminhos que os reproduzem
+		 Path ficheiro = diretorio.resolve("distancias.bin");
+		 int horizonte = 40;
+		 DistanceTable.build(ficheiro, -12, 12, horizonte);
+		 try (DistanceTable tabela = DistanceTable.open(ficheiro)) {
+			 assertEquals(horizonte, tabela.getHorizonte());
+			 for (int goal = -12; goal <= 12; goal++) {
+				 for (int start = -15; start <= 15; start++) {
+					 Iterator<BestFirst.State> it = new BestFirst().solve(new Operation(start), new Operation(goal));
+					 int esperado = 0;
+					 while (it.hasNext()) esperado = (int) it.next().getG();
+
+					 int custo = tabela.cost(start, goal);
+					 if (esperado > horizonte) {
+						 // Acima do horizonte o par não está coberto e a heurística é a da Operation
+						 assertEquals(-1, custo);
+						 assertNull(tabela.solve(new Operation(start), new Operation(goal)));
+						 assertEquals(Operation.heuristic(start, goal), tabela.heuristic(start, goal));
+						 continue;
+					 }
+					 assertEquals(esperado, custo);
+					 assertEquals(esperado, tabela.heuristic(start, goal));
+
+					 // O caminho guardado tem de ser feito de movimentos válidos e custar o mesmo
+					 Iterator<DistanceTable.State> caminho = tabela.solve(new Operation(start), new Operation(goal));
+					 int valor = start;
+					 double g = 0;
+					 DistanceTable.State e = caminho.next();
+					 assertEquals(String.valueOf(start), e.toString());
+					 while (caminho.hasNext()) {
+						 e = caminho.next();
+						 int seguinte = Integer.parseInt(e.toString());
+						 double passo = e.getG() - g;
+						 boolean valido = false;
+						 for (int move = 0; move < Operation.MOVES; move++) {
+							 valido |= Operation.childValue(valor, move) == seguinte && Operation.moveCost(move) == passo;
+						 }
+						 assertTrue(valido);
+						 valor = seguinte;
+						 g = e.getG();
+					 }
+					 assertEquals(goal, valor);
+					 assertEquals(esperado, (int) g);
+				 }
+			 }
+			 // Fora do intervalo de objetivos também se usa a heurística da Operation
+			 assertEquals(-1, tabela.cost(5, 13));
+			 assertEquals(Operation.heuristic(5, 13), tabela.heuristic(5, 13));
+		 }
+	 }
+
+	 @Test
+	 public void testHashClosedSetReopensOnlyWithACheaperPath() {
+		 SearchEngine.State caro = new SearchEngine.State(new Operation(7), null, 5.0, 5.0);
+		 SearchEngine.State barato = new SearchEngine.State(new Operation(7), null, 3.0, 3.0);
+
+		 // Sem reabertura o primeiro fecho é definitivo
+		 HashClosedSet simples = new HashClosedSet();
+		 assertTrue(simples.close(caro));
+		 assertFalse(simples.close(barato));
+		 assertTrue(simples.isClosed(7, 1.0));
+
+		 // Com reabertura só um custo menor volta a abrir o layout
+		 HashClosedSet reabre = new HashClosedSet(true);
+		 assertTrue(reabre.close(caro));
+		 assertFalse(reabre.close(caro));
+		 assertTrue(reabre.isClosed(7, 5.0));
+		 assertFalse(reabre.isClosed(7, 3.0));
+		 assertTrue(reabre.close(barato));
+		 assertTrue(reabre.isClosed(7, 4.0));
+		 assertFalse(reabre.isClosed(8, 100.0));
+	 }
+
+	 @ParameterizedTest
+	 @MethodSource("casosPequenos")
+	 public void testEveryStrategyCombinationFindsTheOptimalCost(int input, int expected) {
+        // Cada combinação de avaliação, abertos e fechados do SearchEngine tem de encontrar o custo ótimo
+		 String[] nomesAbertos = {"heap", "indexada", "baldes FIFO", "baldes LIFO", "focal"};
+		 List<Supplier<SearchEngine.OpenList>> abertos = List.of(HeapOpenList::new, IndexedOpenList::new,
+				 () -> new BucketOpenList(TieBreaking.FIFO), () -> new BucketOpenList(TieBreaking.LIFO),
+				 () -> new FocalOpenList(0.0));
+		 String[] nomesFechados = {"hash", "hash com reabertura", "densa", "transposição"};
+		 List<Supplier<SearchEngine.ClosedSet>> fechados = List.of(HashClosedSet::new, () -> new HashClosedSet(true), () -> {
+			 // Só parte das chaves cabe no intervalo, para usar a tabela de bits e o mapa das chaves de fora
+			 DenseClosedSet d = new DenseClosedSet();
+			 d.setRange(-100, 100);
+			 return d;
+		 }, () -> new TranspositionTable(1 << 16));
+		 SearchEngine.Evaluation[] avaliacoes = {SearchEngine.Evaluation.UNIFORM_COST, SearchEngine.Evaluation.A_STAR};
+
+		 for (SearchEngine.Evaluation avaliacao : avaliacoes) {
+			 for (int a = 0; a < abertos.size(); a++) {
+				 for (int f = 0; f < fechados.size(); f++) {
+					 SearchEngine.ClosedSet fechado = fechados.get(f).get();
+					 SearchEngine s = new SearchEngine("teste", avaliacao, abertos.get(a).get(), fechado,
+							 SearchEngine.BoundingPolicy.UNBOUNDED);
+					 s.setClosedSet(fechado);
+					 String combinacao = nomesAbertos[a] + " + " + nomesFechados[f];
+					 // A heurística da Operation não é admissível: com desempate LIFO o A* pode devolver um caminho mais caro
+					 boolean exato = avaliacao == SearchEngine.Evaluation.UNIFORM_COST || a != 3;
+					 int c = custo(s.solve(new Operation(input), new Operation(input*3)));
+					 if (exato) {
+						 assertEquals(expected, c, combinacao);
+					 } else {
+						 assertTrue(c >= expected, combinacao);
+					 }
+				 }
+			 }
+		 }
+
+		 // Profundidade primeiro só com aprofundamento iterativo, sem fechados ou com uma tabela de transposição
+		 List<Supplier<SearchEngine.ClosedSet>> fechadosProfundidade = List.of(NoClosedSet::new, () -> new TranspositionTable(1 << 16));
+		 for (Supplier<SearchEngine.ClosedSet> fechado : fechadosProfundidade) {
+			 SearchEngine s = new SearchEngine("teste", SearchEngine.Evaluation.A_STAR, new DepthFirstOpenList(), fechado.get(),
+					 SearchEngine.BoundingPolicy.ITERATIVE_DEEPENING);
+			 assertEquals(expected, custo(s.solve(new Operation(input), new Operation(input*3))));
+		 }
+	 }
+
+	 @Test
+	 public void testBucketOpenListOrdersByFThenByTieBreaking() {
+		 // f fora de ordem, repetidos, abaixo da janela inicial, não inteiros e muito longe da janela
+		 double[] fs = {5, 3, 7, 3, 2.5, 1e9, -4, 100, 3};
+		 int[] fifo = {6, 4, 1, 3, 8, 0, 2, 7, 5};
+		 int[] lifo = {6, 4, 8, 3, 1, 0, 2, 7, 5};
+		 for (TieBreaking desempate : TieBreaking.values()) {
+			 BucketOpenList abertos = new BucketOpenList(desempate);
+			 for (int repeticao = 0; repeticao < 2; repeticao++) {
+				 for (int i = 0; i < fs.length; i++) {
+					 assertTrue(abertos.offer(new SearchEngine.State(new Operation(i), null, 0, fs[i])));
+				 }
+				 assertEquals(fs.length, abertos.size());
+				 int[] ordem = desempate == TieBreaking.FIFO ? fifo : lifo;
+				 for (int i : ordem) {
+					 assertEquals(i, abertos.poll().getKey(), desempate.name());
+				 }
+				 assertTrue(abertos.isEmpty());
+				 assertNull(abertos.poll());
+
+				 // Depois de limpa, a lista tem de poder ser reutilizada
+				 abertos.offer(new SearchEngine.State(new Operation(0), null, 0, 42));
+				 abertos.clear();
+				 assertEquals(0, abertos.size());
+			 }
+		 }
+	 }
+
+	 private static int custo(Iterator<SearchEngine.State> it) {
+		 double g = 0;
+		 while (it.hasNext()) g = it.next().getG();
+		 return (int) g;
+	 }
+
+	 @Test
+	 public void testSearchStatsCountsIdaIterations() {
+		 Operation actual1 = new Operation(-23);
+		 Operation goal1 = new Operation(-69);
+		 SearchStats stats = new SearchStats();
+		 BestFirstIDA ida = new BestFirstIDA();
+		 ida.setListener(stats);
+
+		 Iterator<BestFirstIDA.State> it = ida.solve(actual1, goal1);
+		 int passos = -1;
+		 while (it.hasNext()) {
+			 it.next();
+			 passos++;
+		 }
+
+		 assertTrue(stats.isSolved());
+		 assertEquals(13, (int) stats.getCost());
+		 assertEquals(passos, stats.getDepth());
+		 assertTrue(stats.getIterations() >= 1);
+		 assertTrue(stats.getGenerated() >= stats.getExpanded());
+		 assertTrue(stats.getEffectiveBranchingFactor() >= 1.0);
+	 }
+
+	 @Test
+	 public void testLongMapRemoveKeepsCollidingKeys() {
+		 LongMap<String> map = new LongMap<>(4);
+		 for (long k = 0; k < 1000; k++) {
+			 map.put(k * 1024, "v" + k);
+		 }
+		 for (long k = 0; k < 1000; k += 2) {
+			 assertEquals("v" + k, map.remove(k * 1024));
+		 }
+
+		 assertEquals(500, map.size());
+		 for (long k = 0; k < 1000; k++) {
+			 assertEquals(k % 2 == 0 ? null : "v" + k, map.get(k * 1024));
+		 }
+	 }
+
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testMemoryBoundedMatchesExpectedCosts(int input, int expected) {
+        // Só cabem em memória o caminho ótimo e 5 estados a mais: a pesquisa tem de esquecer folhas sem passar o limite
+		 Iterator<BestFirstA.State> otimo = new BestFirstA().solve(new Operation(input), new Operation(input*3));
+		 int profundidade = -1;
+		 while (otimo.hasNext()) {
+			 otimo.next();
+			 profundidade++;
+		 }
+		 BestFirstSMA s = new BestFirstSMA(profundidade + 5);
+
+		 Iterator<BestFirstSMA.State> it = s.solve(new Operation(input), new Operation(input*3));
+
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+
+		 assertEquals(expected, (int) result);
+		 // O pico inclui os sucessores de uma expansão antes de as folhas serem esquecidas
+		 assertTrue(s.getMaxEstadosUsados() <= s.getMaxEstados() + Operation.MOVES);
+		 if (input != 0) {
+			 assertTrue(s.getEsquecidos() > 0);
+			 assertTrue(s.getMaxEstadosUsados() > s.getMaxEstados());
+		 }
+	 }
+
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testAnytimeSolutionsImproveUntilOptimal(int input, int expected) {
+        // Cada solução publicada melhora o custo ou o limite da anterior e respeita o seu limite; a última é ótima
+		 BestFirstARA s = new BestFirstARA();
+		 List<BestFirstARA.Solution> solucoes = new ArrayList<>();
+
+		 BestFirstARA.Solution melhor = s.solve(new Operation(input), new Operation(input*3), null, solucoes::add);
+
+		 assertFalse(solucoes.isEmpty());
+		 for (int i = 0; i < solucoes.size(); i++) {
+			 BestFirstARA.Solution atual = solucoes.get(i);
+			 assertTrue(atual.getCost() <= atual.getBound() * expected + 1e-9);
+			 if (i > 0) {
+				 BestFirstARA.Solution anterior = solucoes.get(i - 1);
+				 assertTrue(atual.getCost() <= anterior.getCost());
+				 assertTrue(atual.getBound() <= anterior.getBound());
+				 assertTrue(atual.getCost() < anterior.getCost() || atual.getBound() < anterior.getBound());
+			 }
+		 }
+		 assertSame(solucoes.get(solucoes.size() - 1), melhor);
+		 assertTrue(melhor.isOptimal());
+		 assertEquals(expected, (int) melhor.getCost());
+	 }
+
+	 @Test
+	 public void testExpansionBudgetStopsWithLowerBound() throws Exception {
+		 Operation actual1 = new Operation(2000);
+		 Operation goal1 = new Operation(6000);
+
+		 SearchResult parcial = new BestFirstA().solve(actual1, goal1, SearchBudget.ofExpansions(100));
+		 assertEquals(SearchResult.Status.BUDGET_EXHAUSTED, parcial.getStatus());
+		 assertEquals(100, parcial.getExpanded());
+		 assertTrue(parcial.getPath().isEmpty());
+		 assertTrue(parcial.getLowerBound() > 0 && parcial.getLowerBound() <= 1003);
+
+		 ExecutorService executor = Executors.newSingleThreadExecutor();
+		 try {
+			 SearchResult completo = new BestFirstA().solveAsync(actual1, goal1, SearchBudget.UNLIMITED, executor)
+					 .get(10, TimeUnit.SECONDS);
+			 assertTrue(completo.isSolved());
+			 assertEquals(1003, (int) completo.getCost());
+		 } finally {
+			 executor.shutdownNow();
+		 }
+	 }
+
+	 @Test
+	 public void testFocalSearchReopensStatesForAValidLowerBound() {
+        // S=0, A=1, X=2, Y=3, G=4: a pesquisa focal fecha X primeiro pelo caminho caro S-X, e só reabrindo X com o
+        // caminho S-A-X encontra o custo ótimo 15, pelo que o limite inferior não pode passar de 15
+		 Grafo grafo = new Grafo(new double[] {12, 11, 10, 12, 0});
+		 grafo.aresta(0, 1, 1);
+		 grafo.aresta(0, 2, 3);
+		 grafo.aresta(1, 2, 1);
+		 grafo.aresta(2, 3, 1);
+		 grafo.aresta(3, 4, 12);
+
+		 SearchResult otimo = new BestFirstA().solve(grafo.no(0), grafo.no(4), SearchBudget.UNLIMITED);
+		 assertEquals(15, (int) otimo.getCost());
+		 SearchResult focal = new BestFirstFocal(0.1).solve(grafo.no(0), grafo.no(4), SearchBudget.UNLIMITED);
+		 assertEquals(SearchResult.Status.SOLVED, focal.getStatus());
+		 assertTrue(focal.getLowerBound() <= otimo.getCost());
+		 assertTrue(focal.getCost() <= 1.1 * otimo.getCost());
+		 assertTrue(focal.getSuboptimality() <= 1.1);
+	 }
+
+	 @Test
+	 public void testIterativeDeepeningKeepsTheIncumbentWhenTheBudgetRunsOut() {
+		 // S -> G custa 3 e o objetivo é o primeiro sucessor de S; S -> A -> C -> D ainda é explorado na iteração com
+		 // limite 3, porque A e C têm g menor que o do objetivo já encontrado
+		 Grafo grafo = new Grafo(new double[] {0, 0, 0, 0, 0});
+		 grafo.aresta(0, 1, 3);
+		 grafo.aresta(0, 2, 1);
+		 grafo.aresta(2, 3, 1);
+		 grafo.aresta(3, 4, 1);
+		 SearchEngine ida = new BestFirstIDA();
+
+		 SearchResult completo = ida.solve(grafo.no(0), grafo.no(1), SearchBudget.UNLIMITED);
+		 assertEquals(3, completo.getCost());
+		 // O orçamento acaba depois de o objetivo ser encontrado, durante a exploração de A
+		 SearchResult parcial = ida.solve(grafo.no(0), grafo.no(1), SearchBudget.ofExpansions(completo.getExpanded() - 1));
+		 assertEquals(SearchResult.Status.SOLVED, parcial.getStatus());
+		 assertEquals(3, parcial.getCost());
+		 assertEquals(2, parcial.getPath().size());
+		 assertTrue(parcial.getLowerBound() <= 3);
+	 }
 
+	 @Test
+	 public void testPrimitiveEngineAndBatchRespectTheBudget() throws InterruptedException {
+        // O BestFirstAInt e o BatchSolver param com o orçamento e quando a thread é interrompida
+		 Operation actual1 = new Operation(2000);
+		 Operation goal1 = new Operation(6000);
+		 BestFirstAInt s = new BestFirstAInt();
+
+		 SearchResult parcial = s.solve(actual1, goal1, SearchBudget.ofExpansions(100));
+		 assertEquals(SearchResult.Status.BUDGET_EXHAUSTED, parcial.getStatus());
+		 assertEquals(100, parcial.getExpanded());
+		 assertTrue(parcial.getLowerBound() > 0 && parcial.getLowerBound() <= 1003);
+
+		 SearchResult completo = s.solve(actual1, goal1, SearchBudget.UNLIMITED);
+		 assertTrue(completo.isSolved());
+		 assertEquals(1003, (int) completo.getCost());
+		 List<SearchEngine.State> caminho = completo.getPath();
+		 assertEquals(2000, caminho.get(0).getKey());
+		 assertEquals(6000, caminho.get(caminho.size() - 1).getKey());
+		 for (int i = 1; i < caminho.size(); i++) {
+			 assertSame(caminho.get(i - 1), caminho.get(i).getFather());
+		 }
+
+		 Thread.currentThread().interrupt();
+		 try {
+			 assertEquals(SearchResult.Status.CANCELLED, s.solve(actual1, goal1, SearchBudget.UNLIMITED).getStatus());
+		 } finally {
+			 Thread.interrupted();
+		 }
+
+		 List<BatchSolver.Query> queries = List.of(new BatchSolver.Query(new Operation(30), new Operation(90)),
+				 new BatchSolver.Query(actual1, goal1));
+		 try (BatchSolver batch = new BatchSolver(2)) {
+			 List<BatchSolver.Result> results = batch.solveAll(queries, SearchBudget.ofExpansions(100));
+			 assertEquals(18, (int) results.get(0).getCost());
+			 assertEquals(SearchResult.Status.BUDGET_EXHAUSTED, results.get(1).getResult().getStatus());
+			 assertFalse(results.get(1).isSolved());
+		 }
+	 }
+
+	 @ParameterizedTest
+	 @MethodSource("casos")
+	 public void testExternalMemoryMatchesExpectedCosts(int input, int expected, @TempDir Path diretorio) {
+		 // Lotes pequenos obrigam a juntar várias corridas ordenadas por balde
+		 BestFirstExternal s = new BestFirstExternal(diretorio, 4);
+
+		 Iterator<BestFirstExternal.State> it = s.solve(new Operation(input), new Operation(input*3));
+
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+
+		 assertEquals(expected, (int) result);
+	 }
+
+	 @Test
+	 public void testExternalMemoryRemovesDuplicatesAcrossBatches(@TempDir Path diretorio) {
+        // Com lotes de um registo, os duplicados do mesmo balde estão sempre em lotes diferentes e só podem ser removidos
+        // ao juntar as corridas: a pesquisa tem de expandir e rejeitar os mesmos estados que com um único lote por balde
+		 int[][] problemas = {{7, -40}, {40, -9}};
+		 for (int[] p : problemas) {
+			 SearchStats porLotes = new SearchStats();
+			 BestFirstExternal s = new BestFirstExternal(diretorio, 1);
+			 s.setListener(porLotes);
+			 double custo = 0;
+			 for (Iterator<BestFirstExternal.State> it = s.solve(new Operation(p[0]), new Operation(p[1])); it.hasNext();) {
+				 custo = it.next().getG();
+			 }
+
+			 SearchStats numLote = new SearchStats();
+			 BestFirstExternal unico = new BestFirstExternal(diretorio, 1 << 20);
+			 unico.setListener(numLote);
+			 double custoUnico = 0;
+			 for (Iterator<BestFirstExternal.State> it = unico.solve(new Operation(p[0]), new Operation(p[1])); it.hasNext();) {
+				 custoUnico = it.next().getG();
+			 }
+
+			 assertEquals(custoUnico, custo);
+			 assertTrue(porLotes.getDuplicates() > 0);
+			 assertEquals(numLote.getExpanded(), porLotes.getExpanded());
+			 assertEquals(numLote.getDuplicates(), porLotes.getDuplicates());
+		 }
+	 }
+
+	 @Test
+	 public void testSolutionCacheAnswersRepeatsAndSubpaths() {
+		 SolutionCache cache = new SolutionCache(2, 10000);
+		 Operation goal1 = new Operation(6000);
+
+		 SearchResult primeiro = cache.solve(new BestFirstA(), new Operation(2000), goal1);
+		 SearchResult repetido = cache.solve(new BestFirstA(), new Operation(2000), goal1);
+		 assertSame(primeiro, repetido);
+		 assertEquals(1, cache.getMisses());
+		 assertEquals(1, cache.getHits());
+
+		 // Um layout do caminho encontrado é respondido com o resto desse caminho
+		 SearchEngine.State meio = primeiro.getPath().get(300);
+		 SearchResult trecho = cache.solve(new BestFirstA(), meio.getLayout(), goal1);
+		 assertEquals(1, cache.getSubpathHits());
+		 assertEquals(primeiro.getCost() - meio.getG(), trecho.getCost());
+		 assertEquals(0, trecho.getPath().get(0).getG());
+
+		 cache.solve(new BestFirstA(), new Operation(30), new Operation(90));
+		 cache.solve(new BestFirstA(), new Operation(-70), new Operation(-210));
+		 assertEquals(2, cache.size());
+		 assertTrue(cache.getEvictions() > 0);
+
+		 // A solução de 2000 já foi removida, mas os custos dos estados do caminho continuam a responder aos trechos
+		 SearchEngine.State outro = primeiro.getPath().get(100);
+		 SearchResult depois = cache.solve(new BestFirstA(), outro.getLayout(), goal1);
+		 assertEquals(2, cache.getSubpathHits());
+		 assertEquals(primeiro.getCost() - outro.getG(), depois.getCost());
+		 assertEquals(primeiro.getPath().size() - 100, depois.getPath().size());
+		 assertEquals(goal1.stateKey(), depois.getPath().get(depois.getPath().size() - 1).getKey());
+		 assertEquals(primeiro.getCost() - outro.getG(), cache.costToGoal(outro.getKey(), goal1));
+		 assertTrue(cache.getHeuristicHits() > 0);
+
+		 // Com poucos estados só ficam os custos usados mais recentemente, e um caminho incompleto não é respondido
+		 SolutionCache pequena = new SolutionCache(1, 3);
+		 SearchResult curto = pequena.solve(new BestFirstA(), new Operation(30), new Operation(90));
+		 assertTrue(Double.isNaN(pequena.costToGoal(curto.getPath().get(0).getKey(), new Operation(90))));
+		 pequena.clear();
+		 assertNull(pequena.get(new Operation(30), new Operation(90)));
+	 }
+
+	 @Test
+	 public void testCachedHeuristicKeepsTheSearchBounds() {
+        // O layout envolvido pela cache mantém os limites do Operation, pelo que a pesquisa expande o mesmo número de estados
+		 SolutionCache cache = new SolutionCache(4, 10000);
+		 SearchResult simples = new BestFirst().solve(new Operation(3000), new Operation(9000), SearchBudget.UNLIMITED);
+		 SearchResult envolvido = new BestFirst().solve(cache.withCachedHeuristic(new Operation(3000)), new Operation(9000),
+				 SearchBudget.ofExpansions(1_000_000));
+		 assertEquals(SearchResult.Status.SOLVED, envolvido.getStatus());
+		 assertEquals(simples.getCost(), envolvido.getCost());
+		 assertEquals(simples.getExpanded(), envolvido.getExpanded());
+
+		 // Com os custos guardados a pesquisa seguinte para o mesmo objetivo encontra o mesmo custo
+		 cache.put(new Operation(3000), new Operation(9000), simples);
+		 SearchResult vizinho = new BestFirst().solve(cache.withCachedHeuristic(new Operation(3001)), new Operation(9000),
+				 SearchBudget.UNLIMITED);
+		 assertEquals(new BestFirst().solve(new Operation(3001), new Operation(9000), SearchBudget.UNLIMITED).getCost(), vizinho.getCost());
+		 assertTrue(cache.getHeuristicHits() > 0);
+
+		 // Um caminho sem prova de otimalidade é guardado como solução, mas não dá custos à heurística
+		 SearchResult subotimo = new SearchResult(SearchResult.Status.SOLVED, simples.getPath(), simples.getCost() / 2, 0);
+		 SolutionCache outra = new SolutionCache(4, 10000);
+		 outra.put(new Operation(3000), new Operation(9000), subotimo);
+		 assertSame(subotimo, outra.get(new Operation(3000), new Operation(9000)));
+		 assertTrue(Double.isNaN(outra.costToGoal(simples.getPath().get(1).getKey(), new Operation(9000))));
+	 }
+
+	 @Test
+	 public void testMultiGoalMatchesSingleGoalSearches() {
+		 Operation actual1 = new Operation(7);
+		 List<Operation> goals = List.of(new Operation(21), new Operation(-5), new Operation(16), new Operation(0), new Operation(7));
+
+		 Map<Ilayout, List<BestFirstMulti.State>> caminhos = new BestFirstMulti(false).solve(actual1, goals);
+
+		 assertEquals(goals.size(), caminhos.size());
+		 for (Operation goal1 : goals) {
+			 Iterator<BestFirst.State> it = new BestFirst().solve(actual1, goal1);
+			 double expected = 0;
+			 while (it.hasNext()) expected = it.next().getG();
+			 List<BestFirstMulti.State> caminho = caminhos.get(goal1);
+			 assertEquals(expected, caminho.get(caminho.size() - 1).getG());
+			 assertEquals(goal1.toString(), caminho.get(caminho.size() - 1).toString());
+		 }
+
+		 // Com a heurística, o objetivo 3n é resolvido com o custo ótimo no meio de outros objetivos
+		 caminhos = new BestFirstMulti().solve(new Operation(1000), List.of(new Operation(2998), new Operation(3000),
+				 new Operation(3001)));
+		 List<BestFirstMulti.State> caminho = caminhos.get(new Operation(3000));
+		 assertEquals(503, (int) caminho.get(caminho.size() - 1).getG());
+	 }
+
+	 @Test
+	 public void testBoundedUniformCostSolvesBigInput() {
+		 // Sem os limites do domínio, o custo uniforme não termina em tempo útil para números desta ordem
+		 Operation actual1 = new Operation(2000);
+		 Operation goal1 = new Operation(6000);
+
+		 Iterator<BestFirst.State> it = new BestFirst().solve(actual1, goal1);
+
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+		 assertEquals(1003, (int) result);
+
+		 // Os filhos que não cabem num int não são gerados
+		 assertEquals(1, new Operation(Integer.MAX_VALUE).children().size());
+		 assertEquals(2, new Operation(Integer.MIN_VALUE / 2 - 1).children().size());
+	 }
+
+	 @Test
+	 public void testOffHeapAStarReusesMemoryBetweenSolves() {
+		 try (BestFirstAOffHeap a = new BestFirstAOffHeap(16)) {
+			 int[] inicios = {2200, -3500, 30, 0};
+			 int[] custos = {1103, 881, 18, 0};
+			 for (int i = 0; i < inicios.length; i++) {
+				 Iterator<BestFirstAOffHeap.State> it = a.solve(new Operation(inicios[i]), new Operation(3 * inicios[i]));
+				 double result = 0;
+				 while (it.hasNext()) result = it.next().getG();
+				 assertEquals(custos[i], (int) result);
+			 }
+			 long reservados = a.getOffHeapBytes();
+			 a.solve(new Operation(30), new Operation(90));
+			 assertEquals(reservados, a.getOffHeapBytes());
+		 }
+	 }
+
+	 @Test
+	 public void testCompactPathsReplayMoves() {
+		 SearchEngine a = new BestFirstA();
+		 a.setCompactPaths(true);
+		 Iterator<SearchEngine.State> it = a.solve(new Operation(200000), new Operation(600000));
+		 List<String> caminho = new ArrayList<>();
+		 double result = 0;
+		 while (it.hasNext()) {
+			 SearchEngine.State e = it.next();
+			 caminho.add(e.toString());
+			 result = e.getG();
+		 }
+		 assertEquals(100003, (int) result);
+		 assertEquals(100002, caminho.size());
+		 assertEquals("600000", caminho.get(caminho.size() - 1));
+
+		 MoveTrail trilho = new MoveTrail(1);
+		 int raiz = trilho.add(-1, 0);
+		 int filho = trilho.add(raiz, 2);
+		 int neto = trilho.add(filho, 0);
+		 assertEquals(2, trilho.depth(neto));
+		 assertEquals("[3, 6, 7]", Arrays.toString(trilho.replay(new Operation(3), neto)));
+	 }
+
+	 @Test
+	 public void testFrontierSearchKeepsOnlyTheFrontier() {
+		 BestFirstFrontier f = new BestFirstFrontier(false);
+		 Iterator<BestFirstFrontier.State> it = f.solve(new Operation(2000), new Operation(6000));
+		 List<String> caminho = new ArrayList<>();
+		 double result = 0;
+		 while (it.hasNext()) {
+			 BestFirstFrontier.State e = it.next();
+			 caminho.add(e.toString());
+			 result = e.getG();
+		 }
+		 assertEquals(1003, (int) result);
+		 assertEquals("2000", caminho.get(0));
+		 assertEquals("6000", caminho.get(caminho.size() - 1));
+		 // Os estados expandidos são descartados: a tabela fica muito menor que o número de expansões
+		 assertTrue(f.getMaxFrontier() * 10 < f.getExpanded());
+		 assertTrue(f.getMaxPlaceholders() > 0);
+		 assertTrue(f.getMaxPlaceholders() <= f.getMaxFrontier());
+	 }
+
+	 @Test
+	 public void testFrontierSearchRejectsRepeatedMoves() {
+		 // Um layout que usa o mesmo movimento para dois predecessores tornaria ambígua a máscara das arestas usadas
+		 class Repetida extends Operation {
+			 Repetida(int n) {
+				 super(n);
+			 }
+
+			 @Override
+			 public Operation fromStateKey(long key) {
+				 return new Repetida((int) key);
+			 }
+
+			 @Override
+			 public void forEachParent(Ilayout goal, ChildSink sink) {
+				 sink.accept(0, getValue() - 1, 1, 0);
+				 sink.accept(0, getValue() + 1, 2, 0);
+			 }
+		 }
+		 IllegalStateException e = assertThrows(IllegalStateException.class,
+				 () -> new BestFirstFrontier().solve(new Operation(5), new Repetida(15)));
+		 assertTrue(e.getMessage().contains("predecessores"));
+	 }
+
+	 @Test
+	 public void testMacroMovesKeepOptimalCost() {
+		 int input = 2200;
+		 SearchStats primitivos = new SearchStats();
+		 SearchEngine a = new BestFirstA();
+		 a.setListener(primitivos);
+		 a.solve(new Operation(input), new Operation(input * 3));
+
+		 SearchStats macros = new SearchStats();
+		 a.setListener(macros);
+		 Iterator<SearchEngine.State> it = a.solve(new MacroOperation(input, input * 3), new MacroOperation(input * 3, input * 3));
+		 List<Ilayout> caminho = new ArrayList<>();
+		 while (it.hasNext()) caminho.add(it.next().getLayout());
+
+		 assertEquals(1103, (int) macros.getCost());
+		 assertTrue(macros.getExpanded() * 100 < primitivos.getExpanded());
+
+		 // O caminho expandido só tem movimentos primitivos e o mesmo custo
+		 List<Ilayout> expandido = MacroOperation.expand(caminho);
+		 double custo = 0;
+		 for (int i = 1; i < expandido.size(); i++) {
+			 int de = expandido.get(i - 1).getValue();
+			 int para = expandido.get(i).getValue();
+			 assertTrue(para == de + 1 || para == de - 1 || para == de * 2);
+			 custo += expandido.get(i).getG();
+		 }
+		 assertEquals(1103, (int) custo);
+		 assertEquals(input * 3, expandido.get(expandido.size() - 1).getValue());
+	 }
+
+	 @Test
+	 public void testMacroOperationEqualsOperationWithTheSameKey() {
+		 // A igualdade é pela chave de estado, pelo que um objetivo Operation é reconhecido a partir de uma MacroOperation
+		 assertEquals(new Operation(90), new MacroOperation(90, 90));
+		 assertEquals(new MacroOperation(90, 90), new Operation(90));
+		 assertEquals(new Operation(90).hashCode(), new MacroOperation(90, 30).hashCode());
+		 assertTrue(new MacroOperation(90, 90).isGoal(new Operation(90)));
+		 assertNotEquals(new Operation(91), new MacroOperation(90, 90));
+		 // Um layout de outro domínio com a mesma chave não é igual
+		 Ilayout outro = new Grafo(new double[91]).no(90);
+		 assertEquals(new Operation(90).stateKey(), outro.stateKey());
+		 assertNotEquals(new Operation(90), outro);
+		 assertNotEquals(new MacroOperation(90, 90), outro);
+		 assertFalse(new Operation(90).isGoal(outro));
+
+		 BestFirstSMA sma = new BestFirstSMA(5000);
+		 Iterator<BestFirstSMA.State> it = assertTimeoutPreemptively(Duration.ofSeconds(10),
+				 () -> sma.solve(new MacroOperation(30, 90), new Operation(90)));
+		 double result = 0;
+		 while (it.hasNext()) result = it.next().getG();
+		 assertEquals(18, (int) result);
+	 }
+
+	 @Test
+	 public void testCompactPathsAreRejectedInDepthFirstSearch() {
+        // O trilho cresceria com cada estado gerado, enquanto o IDA* só guarda o caminho atual
+		 SearchEngine ida = new BestFirstIDA();
+		 ida.setCompactPaths(true);
+		 assertThrows(IllegalStateException.class, () -> ida.solve(new Operation(30), new Operation(90)));
+		 ida.setCompactPaths(false);
+		 assertEquals(SearchResult.Status.SOLVED, ida.solve(new Operation(30), new Operation(90), SearchBudget.UNLIMITED).getStatus());
+	 }
+
+	 @Test
+	 public void testCompactPathsReplayMacroMoves() {
+		 // Os 5 movimentos da MacroOperation cabem no MoveTrail, e o caminho repetido tem o mesmo custo
+		 SearchEngine a = new BestFirstA();
+		 a.setCompactPaths(true);
+		 Iterator<SearchEngine.State> it = a.solve(new MacroOperation(2200, 6600), new MacroOperation(6600, 6600));
+		 List<Ilayout> caminho = new ArrayList<>();
+		 double result = 0;
+		 while (it.hasNext()) {
+			 SearchEngine.State e = it.next();
+			 caminho.add(e.getLayout());
+			 result = e.getG();
+		 }
+		 assertEquals(1103, (int) result);
+		 assertEquals(6600, caminho.get(caminho.size() - 1).getValue());
+		 assertTrue(caminho.size() < 1103);
+	 }
+
+	 @Test
+	 public void testFocalSearchStaysWithinEpsilon() {
+		 for (int input = -60; input <= 60; input++) {
+			 Operation actual1 = new Operation(input);
+			 Operation goal1 = new Operation(input * 3);
+			 double otimo = new BestFirst().solve(actual1, goal1, SearchBudget.UNLIMITED).getCost();
+
+			 SearchResult focal = new BestFirstFocal(0.1).solve(actual1, goal1, SearchBudget.UNLIMITED);
+			 assertTrue(focal.getCost() <= 1.1 * otimo + 1e-9);
+			 assertTrue(focal.getLowerBound() <= otimo);
+			 assertTrue(focal.getSuboptimality() <= 1.1 + 1e-9);
+
+			 assertEquals(otimo, new BestFirstFocal(0).solve(actual1, goal1, SearchBudget.UNLIMITED).getCost());
+		 }
+	 }
+
+	 /**
+	 * Um grafo pequeno, com os custos das arestas e a heurística de cada nó para um objetivo fixo.
+	 */
+	 private static final class Grafo {
+		 private final double[][] custos;
+		 private final double[] h;
+
+		 Grafo(double[] h) {
+			 this.h = h;
+			 custos = new double[h.length][h.length];
+			 for (double[] linha : custos) {
+				 Arrays.fill(linha, Double.NaN);
+			 }
+		 }
+
+		 void aresta(int de, int para, double custo) {
+			 custos[de][para] = custo;
+		 }
+
+		 No no(int i) {
+			 return new No(this, i, 0.0);
+		 }
+	 }
+
+	 /**
+	 * Um nó de um {@link Grafo} como layout, com o custo da aresta pela qual foi alcançado.
+	 */
+	 private static final class No implements Ilayout {
+		 private final Grafo grafo;
+		 private final int indice;
+		 private final double custo;
+
+		 No(Grafo grafo, int indice, double custo) {
+			 this.grafo = grafo;
+			 this.indice = indice;
+			 this.custo = custo;
+		 }
+
+		 @Override
+		 public List<Ilayout> children() {
+			 List<Ilayout> filhos = new ArrayList<>();
+			 for (int j = 0; j < grafo.h.length; j++) {
+				 if (!Double.isNaN(grafo.custos[indice][j])) {
+					 filhos.add(new No(grafo, j, grafo.custos[indice][j]));
+				 }
+			 }
+			 return filhos;
+		 }
+
+		 @Override
+		 public boolean isGoal(Ilayout l) {return indice == l.getValue();}
+
+		 @Override
+		 public int getValue() {return indice;}
+
+		 @Override
+		 public double getG() {return custo;}
+
+		 @Override
+		 public double getH(Ilayout actual, Ilayout goal) {return grafo.h[actual.getValue()];}
+
+		 @Override
+		 public boolean equals(Object o) {return o instanceof No && ((No) o).indice == indice;}
+
+		 @Override
+		 public int hashCode() {return indice;}
+
+		 @Override
+		 public String toString() {return String.valueOf(indice);}
+	 }
 }
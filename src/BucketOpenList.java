@@ -0,0 +1,130 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * Abertos numa fila de baldes (algoritmo de Dial), indexada pelo valor inteiro de f: inserir e retirar um estado
+ * custa O(1) em vez de O(log n). Cada balde é uma fila com desempate FIFO ou LIFO. Tal como na {@link HeapOpenList},
+ * podem existir vários estados com o mesmo layout, e os repetidos são rejeitados pelos fechados quando são retirados.
+ * Os baldes cobrem uma janela de valores de f que cresce conforme necessário; os estados com f não inteiro ou muito
+ * longe da janela (por exemplo, com a heurística saturada) ficam numa fila de prioridade auxiliar.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class BucketOpenList implements SearchEngine.OpenList {
+    private static final int LARGURA_MAXIMA = 1 << 22;
+
+    private final TieBreaking desempate;
+    private ArrayDeque<SearchEngine.State>[] baldes;
+    private long base;
+    private int minimo;
+    private int tamanho;
+    private final PriorityQueue<SearchEngine.State> excedentes = new PriorityQueue<>(10, (s1, s2) -> Double.compare(s1.getF(), s2.getF()));
+
+    /**
+     * Construtor para a classe BucketOpenList.
+     *
+     * @param desempate A ordem de saída dos estados com o mesmo f
+     */
+    @SuppressWarnings("unchecked")
+    public BucketOpenList(TieBreaking desempate) {
+        this.desempate = Objects.requireNonNull(desempate);
+        baldes = (ArrayDeque<SearchEngine.State>[]) new ArrayDeque<?>[64];
+    }
+
+    @Override
+    public void clear() {
+        for (ArrayDeque<SearchEngine.State> balde : baldes) {
+            if (balde != null) {
+                balde.clear();
+            }
+        }
+        tamanho = 0;
+        minimo = 0;
+        excedentes.clear();
+    }
+
+    @Override
+    public boolean offer(SearchEngine.State e) {
+        double f = e.getF();
+        if (f != Math.rint(f) || Double.isInfinite(f)) {
+            return excedentes.add(e);
+        }
+        long v = (long) f;
+        if (tamanho == 0) {
+            base = v;
+            minimo = 0;
+        }
+        long i = v - base;
+        if (i < 0) {
+            if (baldes.length - i > LARGURA_MAXIMA) {
+                return excedentes.add(e);
+            }
+            deslocar((int) -i);
+            i = 0;
+        } else if (i >= baldes.length) {
+            if (i >= LARGURA_MAXIMA) {
+                return excedentes.add(e);
+            }
+            crescer((int) i + 1);
+        }
+        ArrayDeque<SearchEngine.State> balde = baldes[(int) i];
+        if (balde == null) {
+            balde = baldes[(int) i] = new ArrayDeque<>();
+        }
+        balde.addLast(e);
+        tamanho++;
+        if (i < minimo) {
+            minimo = (int) i;
+        }
+        return true;
+    }
+
+    @Override
+    public SearchEngine.State poll() {
+        if (tamanho > 0) {
+            while (baldes[minimo] == null || baldes[minimo].isEmpty()) {
+                minimo++;
+            }
+            if (excedentes.isEmpty() || excedentes.peek().getF() >= base + minimo) {
+                tamanho--;
+                ArrayDeque<SearchEngine.State> balde = baldes[minimo];
+                return desempate == TieBreaking.FIFO ? balde.pollFirst() : balde.pollLast();
+            }
+        }
+        return excedentes.poll();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tamanho == 0 && excedentes.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return tamanho + excedentes.size();
+    }
+
+    /**
+     * Aumenta o número de baldes para pelo menos o valor pedido.
+     */
+    private void crescer(int necessario) {
+        int n = baldes.length;
+        while (n < necessario) {
+            n *= 2;
+        }
+        baldes = Arrays.copyOf(baldes, Math.min(n, LARGURA_MAXIMA));
+    }
+
+    /**
+     * Desloca os baldes para a frente, para que a janela passe a começar d valores abaixo da base atual.
+     */
+    private void deslocar(int d) {
+        crescer(baldes.length + d);
+        System.arraycopy(baldes, 0, baldes, d, baldes.length - d);
+        Arrays.fill(baldes, 0, d, null);
+        base -= d;
+        minimo += d;
+    }
+}
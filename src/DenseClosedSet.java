@@ -0,0 +1,70 @@
+import java.util.Arrays;
+
+/**
+ * Fechados numa tabela de bits indexada pela chave, para os layouts cujas chaves úteis estão num intervalo pequeno
+ * ({@link Ilayout#keyRange(Ilayout, double)}): cada consulta é um acesso a um array, sem dispersão. As chaves fora
+ * do intervalo são guardadas num mapa. Não guarda custos, pelo que nunca reabre estados. O motor usa-a
+ * automaticamente em vez de uma {@link HashClosedSet} sem reabertura.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class DenseClosedSet implements SearchEngine.ClosedSet {
+    /** Maior intervalo de chaves aceite (8 MB de bits). */
+    public static final long MAX_CHAVES = 1L << 26;
+
+    private long[] bits = new long[1];
+    private long minimo;
+    private long largura;
+    private final LongMap<SearchEngine.State> fora = new LongMap<>();
+
+    /**
+     * Define o intervalo de chaves guardadas na tabela de bits e limpa a estrutura.
+     *
+     * @param minimo A menor chave do intervalo
+     * @param maximo A maior chave do intervalo
+     */
+    public void setRange(long minimo, long maximo) {
+        if (maximo < minimo || maximo - minimo >= MAX_CHAVES) {
+            throw new IllegalArgumentException("Intervalo de chaves inválido");
+        }
+        this.minimo = minimo;
+        largura = maximo - minimo + 1;
+        int palavras = (int) ((largura + 63) >>> 6);
+        if (bits.length < palavras) {
+            bits = new long[palavras];
+        } else {
+            Arrays.fill(bits, 0, palavras, 0L);
+        }
+        fora.clear();
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(bits, 0, (int) ((largura + 63) >>> 6), 0L);
+        fora.clear();
+    }
+
+    @Override
+    public boolean close(SearchEngine.State e) {
+        long i = e.getKey() - minimo;
+        if (i < 0 || i >= largura) {
+            return fora.putIfAbsent(e.getKey(), e) == null;
+        }
+        int palavra = (int) (i >>> 6);
+        long bit = 1L << i;
+        if ((bits[palavra] & bit) != 0) {
+            return false;
+        }
+        bits[palavra] |= bit;
+        return true;
+    }
+
+    @Override
+    public boolean isClosed(long chave, double g) {
+        long i = chave - minimo;
+        if (i < 0 || i >= largura) {
+            return fora.containsKey(chave);
+        }
+        return (bits[(int) (i >>> 6)] & (1L << i)) != 0;
+    }
+}
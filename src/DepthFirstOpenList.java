@@ -0,0 +1,93 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Abertos em profundidade primeiro, com uma pilha explícita de frames: cada frame guarda um estado do caminho atual
+ * e os seus sucessores ainda por explorar. Os sucessores oferecidos depois de um poll pertencem ao estado retirado,
+ * e um estado nunca é devolvido se o seu layout já estiver no caminho atual, o que evita ciclos.
+ * A memória usada é proporcional à profundidade do caminho.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class DepthFirstOpenList implements SearchEngine.OpenList {
+    private final Deque<Frame> pilha = new ArrayDeque<>();
+    private final LongMap<SearchEngine.State> caminho = new LongMap<>();
+    private final Frame base = new Frame(null);
+
+    /**
+     * A classe interna Frame representa uma entrada da pilha: um estado do caminho atual e os seus sucessores.
+     */
+    private static final class Frame {
+        private final SearchEngine.State state;
+        private final List<SearchEngine.State> sucs = new ArrayList<>(3);
+        private int proximo;
+
+        Frame(SearchEngine.State state) {
+            this.state = state;
+        }
+    }
+
+    @Override
+    public void clear() {
+        pilha.clear();
+        caminho.clear();
+        base.sucs.clear();
+        base.proximo = 0;
+        pilha.push(base);
+    }
+
+    @Override
+    public boolean offer(SearchEngine.State e) {
+        if (pilha.isEmpty()) {
+            clear();
+        }
+        pilha.peek().sucs.add(e);
+        return true;
+    }
+
+    @Override
+    public SearchEngine.State poll() {
+        if (!avancar()) {
+            return null;
+        }
+        Frame topo = pilha.peek();
+        SearchEngine.State e = topo.sucs.get(topo.proximo++);
+        caminho.put(e.getKey(), e);
+        pilha.push(new Frame(e));
+        return e;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !avancar();
+    }
+
+    @Override
+    public int size() {
+        return pilha.size() - 1;
+    }
+
+    /**
+     * Retira da pilha os frames sem sucessores por explorar e salta os sucessores que formariam um ciclo.
+     *
+     * @return true se o frame do topo tem um sucessor para devolver
+     */
+    private boolean avancar() {
+        while (!pilha.isEmpty()) {
+            Frame topo = pilha.peek();
+            while (topo.proximo < topo.sucs.size() && caminho.containsKey(topo.sucs.get(topo.proximo).getKey())) {
+                topo.proximo++;
+            }
+            if (topo.proximo < topo.sucs.size()) {
+                return true;
+            }
+            if (topo == base) {
+                return false;
+            }
+            caminho.remove(pilha.pop().state.getKey());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A classe DistanceTable representa uma tabela persistente com o custo exato até ao objetivo e o próximo movimento ótimo,
+ * para todos os objetivos de um intervalo e todos os números de uma janela de valores.
+ * A tabela é calculada uma única vez, com uma pesquisa de Dijkstra inversa a partir de cada objetivo, e escrita num
+ * ficheiro binário compacto. Em execução o ficheiro é mapeado em memória (não é carregado), e cada consulta dentro
+ * da zona coberta é respondida seguindo os movimentos guardados, em tempo proporcional ao comprimento do caminho.
+ *
+ * Cada entrada é um int com o custo nos bits mais altos e o movimento (0, 1 ou 2, como em
+ * {@link Operation#childValue(int, int)}, ou 3 no próprio objetivo) nos 2 bits mais baixos; -1 indica um custo maior
+ * que o horizonte da tabela. A janela de valores é escolhida a partir do horizonte D: enquanto o número é positivo só
+ * a subtração o faz descer (custo 2) e enquanto é negativo só a adição o faz subir (custo 1), pelo que qualquer caminho
+ * de custo até D para o objetivo G fica entre min(G,0) - D e max(G,0) + D/2. Assim todos os custos até D são exatos.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class DistanceTable implements AutoCloseable {
+    private static final int MAGIC = 0x44495354;
+    private static final int CABECALHO = 6 * Integer.BYTES;
+    private static final int DESCONHECIDO = -1;
+    private static final int NO_OBJETIVO = 3;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer tabela;
+    private final int minGoal;
+    private final int maxGoal;
+    private final int minValue;
+    private final int largura;
+    private final int horizonte;
+
+    /**
+     * A classe State representa um estado do caminho lido da tabela.
+     */
+    static class State {
+        private final Operation layout;
+        private final double g;
+
+        /**
+         * Construtor para a classe State.
+         *
+         * @param l O layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         */
+        public State(Operation l, double g) {
+            layout = l;
+            this.g = g;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return layout.toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+    }
+
+    private DistanceTable(FileChannel canal) throws IOException {
+        this.canal = canal;
+        tabela = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        if (tabela.getInt(0) != MAGIC) {
+            throw new IOException("O ficheiro não é uma tabela de distâncias");
+        }
+        minGoal = tabela.getInt(4);
+        maxGoal = tabela.getInt(8);
+        minValue = tabela.getInt(12);
+        largura = tabela.getInt(16);
+        horizonte = tabela.getInt(20);
+    }
+
+    /**
+     * Abre uma tabela de distâncias, mapeando o ficheiro em memória.
+     *
+     * @param ficheiro O ficheiro da tabela
+     * @return A tabela aberta
+     * @throws IOException se o ficheiro não puder ser lido ou não for uma tabela de distâncias
+     */
+    public static DistanceTable open(Path ficheiro) throws IOException {
+        FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.READ);
+        try {
+            return new DistanceTable(canal);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Calcula a tabela de distâncias para todos os objetivos entre minGoal e maxGoal e escreve-a num ficheiro.
+     *
+     * @param ficheiro O ficheiro onde a tabela é escrita
+     * @param minGoal O menor objetivo coberto
+     * @param maxGoal O maior objetivo coberto
+     * @param horizonte O maior custo guardado na tabela
+     * @throws IOException se o ficheiro não puder ser escrito
+     */
+    public static void build(Path ficheiro, int minGoal, int maxGoal, int horizonte) throws IOException {
+        if (minGoal > maxGoal || horizonte < 0 || horizonte > Integer.MAX_VALUE >>> 2) {
+            throw new IllegalArgumentException("Intervalo de objetivos ou horizonte inválido");
+        }
+        long minimo = Math.min(minGoal, 0) - (long) horizonte;
+        long maximo = Math.max(maxGoal, 0) + (long) horizonte / 2;
+        long largura = maximo - minimo + 1;
+        long tamanho = CABECALHO + ((long) maxGoal - minGoal + 1) * largura * Integer.BYTES;
+        if (minimo < Integer.MIN_VALUE || maximo > Integer.MAX_VALUE || tamanho > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A tabela pedida é demasiado grande para ser mapeada em memória");
+        }
+
+        try (FileChannel canal = FileChannel.open(ficheiro, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(CABECALHO);
+            cabecalho.putInt(MAGIC).putInt(minGoal).putInt(maxGoal).putInt((int) minimo).putInt((int) largura).putInt(horizonte);
+            cabecalho.flip();
+            escrever(canal, cabecalho);
+
+            int[] entradas = new int[(int) largura];
+            ByteBuffer bloco = ByteBuffer.allocate((int) largura * Integer.BYTES);
+            for (long goal = minGoal; goal <= maxGoal; goal++) {
+                dijkstraInverso((int) goal, (int) minimo, horizonte, entradas);
+                bloco.clear();
+                bloco.asIntBuffer().put(entradas);
+                escrever(canal, bloco);
+            }
+        }
+    }
+
+    private static void escrever(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    /**
+     * Executa uma pesquisa de Dijkstra inversa a partir do objetivo, usando os predecessores de cada número
+     * (n-1, n+1 e n/2), e preenche as entradas de todos os números da janela. Como os custos são 1, 2 ou 3,
+     * a fila de prioridade é uma fila de baldes circular (algoritmo de Dial).
+     */
+    private static void dijkstraInverso(int goal, int minimo, int horizonte, int[] entradas) {
+        Arrays.fill(entradas, DESCONHECIDO);
+        int[][] baldes = new int[4][16];
+        int[] tamanhos = new int[4];
+        int origem = goal - minimo;
+        entradas[origem] = NO_OBJETIVO;
+        baldes[0][tamanhos[0]++] = origem;
+        int pendentes = 1;
+        for (int custo = 0; pendentes > 0 && custo <= horizonte; custo++) {
+            int b = custo & 3;
+            // Os custos são positivos, pelo que os números alcançados a partir deste balde vão sempre para outros baldes
+            for (int k = 0; k < tamanhos[b]; k++) {
+                int i = baldes[b][k];
+                pendentes--;
+                if (entradas[i] >>> 2 != custo) {
+                    continue; // Entrada desatualizada: o número já foi alcançado com menor custo
+                }
+                long v = (long) i + minimo;
+                // Predecessores: v-1 chega a v somando 1, v+1 subtraindo 1 e v/2 multiplicando por 2
+                pendentes += relaxar(v - 1, 0, custo, minimo, horizonte, entradas, baldes, tamanhos);
+                pendentes += relaxar(v + 1, 1, custo, minimo, horizonte, entradas, baldes, tamanhos);
+                if (v % 2 == 0 && v != 0) {
+                    pendentes += relaxar(v / 2, 2, custo, minimo, horizonte, entradas, baldes, tamanhos);
+                }
+            }
+            tamanhos[b] = 0;
+        }
+    }
+
+    private static int relaxar(long predecessor, int move, int custo, int minimo, int horizonte, int[] entradas,
+                               int[][] baldes, int[] tamanhos) {
+        long i = predecessor - minimo;
+        int novoCusto = custo + Operation.moveCost(move);
+        if (i < 0 || i >= entradas.length || novoCusto > horizonte) {
+            return 0;
+        }
+        int atual = entradas[(int) i];
+        if (atual != DESCONHECIDO && atual >>> 2 <= novoCusto) {
+            return 0;
+        }
+        entradas[(int) i] = novoCusto << 2 | move;
+        int b = novoCusto & 3;
+        if (tamanhos[b] == baldes[b].length) {
+            baldes[b] = Arrays.copyOf(baldes[b], tamanhos[b] * 2);
+        }
+        baldes[b][tamanhos[b]++] = (int) i;
+        return 1;
+    }
+
+    /**
+     * Lê a entrada da tabela de um número para um objetivo.
+     *
+     * @return A entrada, ou -1 se o par não estiver coberto pela tabela
+     */
+    private int entrada(int valor, int goal) {
+        if (goal < minGoal || goal > maxGoal) {
+            return DESCONHECIDO;
+        }
+        long i = (long) valor - minValue;
+        if (i < 0 || i >= largura) {
+            return DESCONHECIDO;
+        }
+        return tabela.getInt((int) (CABECALHO + (((long) goal - minGoal) * largura + i) * Integer.BYTES));
+    }
+
+    /**
+     * Retorna o custo exato do caminho ótimo de um número até ao objetivo, que pode ser usado como heurística perfeita.
+     *
+     * @param current O número atual
+     * @param target O número objetivo
+     * @return O custo exato, ou -1 se o par não estiver coberto pela tabela
+     */
+    public int cost(int current, int target) {
+        int e = entrada(current, target);
+        return e == DESCONHECIDO ? DESCONHECIDO : e >>> 2;
+    }
+
+    /**
+     * Retorna o valor heurístico (h) para um número: o custo exato quando o par está coberto pela tabela e,
+     * caso contrário, a heurística da Operation.
+     *
+     * @param current O número atual
+     * @param target O número objetivo
+     * @return O valor heurístico para o número atual
+     */
+    public int heuristic(int current, int target) {
+        int custo = cost(current, target);
+        return custo == DESCONHECIDO ? Operation.heuristic(current, target) : custo;
+    }
+
+    /**
+     * Obtém o caminho ótimo entre o layout inicial e o layout objetivo sem fazer nenhuma pesquisa, seguindo os movimentos
+     * guardados na tabela.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o caminho; retorna null se o par não estiver coberto pela tabela
+     */
+    public Iterator<State> solve(Operation s, Operation goal) {
+        int valor = s.getValue();
+        int e = entrada(valor, goal.getValue());
+        if (e == DESCONHECIDO) {
+            return null;
+        }
+        List<State> result = new ArrayList<>();
+        result.add(new State(new Operation(valor, 0), 0));
+        int g = 0;
+        while ((e & 3) != NO_OBJETIVO) {
+            int move = e & 3;
+            valor = Operation.childValue(valor, move);
+            g += Operation.moveCost(move);
+            result.add(new State(new Operation(valor, Operation.moveCost(move)), g));
+            e = entrada(valor, goal.getValue());
+        }
+        return result.iterator();
+    }
+
+    /**
+     * Retorna o maior custo guardado na tabela.
+     *
+     * @return O horizonte da tabela
+     */
+    public int getHorizonte() {
+        return horizonte;
+    }
+
+    /**
+     * Fecha o ficheiro da tabela.
+     *
+     * @throws IOException se o ficheiro não puder ser fechado
+     */
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+
+    /**
+     * Ferramenta de pré-cálculo da tabela.
+     * Utilização: java DistanceTable ficheiro menorObjetivo maiorObjetivo horizonte
+     */
+    public static void main (String [] args) throws Exception {
+        if (args.length != 4) {
+            System.out.println("Utilização: java DistanceTable ficheiro menorObjetivo maiorObjetivo horizonte");
+            return;
+        }
+        long inicio = System.currentTimeMillis();
+        build(Paths.get(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+        System.out.println("Tabela escrita em " + (System.currentTimeMillis() - inicio) + " ms");
+    }
+}
@@ -0,0 +1,123 @@
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Abertos de uma pesquisa focal (A*ε): os estados com f até (1+ε) vezes o menor f dos abertos formam a lista FOCAL,
+ * de onde poll retira o estado com a menor estimativa secundária (por omissão, h = f - g, a distância que falta).
+ * Tal como na {@link HeapOpenList}, um layout pode estar várias vezes nos abertos.
+ * O custo da solução é no máximo (1+ε) vezes o menor f dos abertos quando o objetivo é retirado ({@link #minF()}).
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class FocalOpenList implements SearchEngine.OpenList {
+    private final double peso;
+    private final ToDoubleFunction<SearchEngine.State> secundaria;
+    private final TreeSet<Entrada> abertos = new TreeSet<>(
+            Comparator.<Entrada>comparingDouble(x -> x.f).thenComparingLong(x -> x.sequencia));
+    private final PriorityQueue<Entrada> focal = new PriorityQueue<>(
+            Comparator.<Entrada>comparingDouble(x -> x.secundario).thenComparingDouble(x -> x.f)
+                    .thenComparingLong(x -> x.sequencia));
+    private double limiteFocal = Double.NEGATIVE_INFINITY;
+    private double ultimoMinimo = Double.NaN;
+    private long sequencia;
+
+    /**
+     * A classe interna Entrada guarda um estado com o seu f, a estimativa secundária e a ordem de chegada.
+     */
+    private static final class Entrada {
+        private final SearchEngine.State state;
+        private final double f;
+        private final double secundario;
+        private final long sequencia;
+
+        Entrada(SearchEngine.State state, double f, double secundario, long sequencia) {
+            this.state = state;
+            this.f = f;
+            this.secundario = secundario;
+            this.sequencia = sequencia;
+        }
+    }
+
+    /**
+     * Construtor para a classe FocalOpenList, com h = f - g como estimativa secundária.
+     *
+     * @param epsilon A sub-otimalidade aceite: o custo pode ser até (1+ε) vezes o ótimo
+     */
+    public FocalOpenList(double epsilon) {
+        this(epsilon, e -> e.getF() - e.getG());
+    }
+
+    /**
+     * Construtor para a classe FocalOpenList.
+     *
+     * @param epsilon A sub-otimalidade aceite: o custo pode ser até (1+ε) vezes o ótimo
+     * @param secundaria A estimativa secundária que ordena a lista FOCAL (menor primeiro), por exemplo o número
+     *                   de movimentos que falta
+     */
+    public FocalOpenList(double epsilon, ToDoubleFunction<SearchEngine.State> secundaria) {
+        if (!(epsilon >= 0) || Double.isInfinite(epsilon)) {
+            throw new IllegalArgumentException("Epsilon inválido: " + epsilon);
+        }
+        this.peso = 1 + epsilon;
+        this.secundaria = Objects.requireNonNull(secundaria);
+    }
+
+    @Override
+    public void clear() {
+        abertos.clear();
+        focal.clear();
+        limiteFocal = Double.NEGATIVE_INFINITY;
+        ultimoMinimo = Double.NaN;
+        sequencia = 0;
+    }
+
+    @Override
+    public boolean offer(SearchEngine.State e) {
+        Entrada x = new Entrada(e, e.getF(), secundaria.applyAsDouble(e), sequencia++);
+        abertos.add(x);
+        if (x.f <= limiteFocal) {
+            focal.add(x);
+        }
+        return true;
+    }
+
+    @Override
+    public SearchEngine.State poll() {
+        if (abertos.isEmpty()) {
+            return null;
+        }
+        ultimoMinimo = abertos.first().f;
+        atualizarFocal(Math.max(ultimoMinimo, peso * ultimoMinimo));
+        Entrada x = focal.poll();
+        abertos.remove(x);
+        return x.state;
+    }
+
+    @Override
+    public boolean isEmpty() {return abertos.isEmpty();}
+
+    @Override
+    public int size() {return abertos.size();}
+
+    @Override
+    public double minF() {return ultimoMinimo;}
+
+    /**
+     * Atualiza a lista FOCAL para um novo limite de f: junta os abertos que passaram a estar abaixo do limite
+     * ou, se o limite desceu, volta a construí-la.
+     */
+    private void atualizarFocal(double limite) {
+        if (limite > limiteFocal) {
+            Entrada inicio = new Entrada(null, limiteFocal, 0.0, Long.MAX_VALUE);
+            Entrada fim = new Entrada(null, limite, 0.0, Long.MAX_VALUE);
+            focal.addAll(abertos.subSet(inicio, false, fim, true));
+        } else if (limite < limiteFocal) {
+            focal.clear();
+            focal.addAll(abertos.headSet(new Entrada(null, limite, 0.0, Long.MAX_VALUE), true));
+        }
+        limiteFocal = limite;
+    }
+}
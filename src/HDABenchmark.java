@@ -0,0 +1,44 @@
+import java.util.Iterator;
+
+/**
+ * A classe HDABenchmark mede a escalabilidade do BestFirstHDA: resolve o mesmo problema (n até 3n) com 1, 2, 4, ...
+ * threads e imprime, para cada número de threads, o tempo real da pesquisa mais rápida, o total de estados expandidos
+ * por todas as threads nessa pesquisa, as expansões por segundo e o speedup do tempo real em relação a uma thread.
+ * As expansões por segundo sozinhas não medem o ganho: com mais threads há trabalho especulativo, que aumenta as
+ * expansões sem aproximar a solução.
+ * Utilização: java HDABenchmark [n] [máximo de threads] [repetições]
+ */
+public class HDABenchmark {
+
+	public static void main (String [] args) throws InterruptedException {
+		int number = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int repeticoes = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+		System.out.println("threads\ttempo(ms)\texpansoes\texpansoes/s\tspeedup\tcusto");
+		long base = 0;
+		for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads && threads * 2 > maxThreads ? maxThreads : threads * 2) {
+			BestFirstHDA s = new BestFirstHDA(threads);
+			// Aquecimento da JVM antes das medições
+			s.solve(new Operation(number), new Operation(number*3));
+			long melhorTempo = Long.MAX_VALUE;
+			long expansoes = 0;
+			double custo = 0;
+			for (int r = 0; r < repeticoes; r++) {
+				long inicio = System.nanoTime();
+				Iterator<BestFirstHDA.State> it = s.solve(new Operation(number), new Operation(number*3));
+				long tempo = System.nanoTime() - inicio;
+				// O tempo e as expansões reportados são os da mesma pesquisa
+				if (tempo < melhorTempo) {
+					melhorTempo = tempo;
+					expansoes = s.getExpansoes();
+				}
+				while (it != null && it.hasNext()) custo = it.next().getG();
+			}
+			if (threads == 1) base = melhorTempo;
+			double porSegundo = expansoes / (melhorTempo / 1e9);
+			System.out.printf("%d\t%.1f\t%d\t%.0f\t%.2f\t%d%n", threads, melhorTempo / 1e6, expansoes, porSegundo, (double) base / melhorTempo, (int) custo);
+			if (threads == maxThreads) break;
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Fechados num mapa pela chave do layout, com o estado com que cada layout foi fechado. Por omissão um layout é
+ * expandido no máximo uma vez por pesquisa, como no A* original. Com reabertura, um layout já fechado volta a ser
+ * expandido quando é alcançado com um custo menor, o que mantém a otimalidade (e os limites inferiores) das
+ * pesquisas que não expandem os estados por ordem de f, como a pesquisa focal.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class HashClosedSet implements SearchEngine.ClosedSet {
+    private final LongMap<SearchEngine.State> fechados = new LongMap<>();
+    private final boolean reabrir;
+
+    /**
+     * Construtor para a classe HashClosedSet, sem reabertura de estados.
+     */
+    public HashClosedSet() {
+        this(false);
+    }
+
+    /**
+     * Construtor para a classe HashClosedSet.
+     *
+     * @param reabrir true para voltar a expandir um layout fechado quando é alcançado com um custo menor
+     */
+    public HashClosedSet(boolean reabrir) {
+        this.reabrir = reabrir;
+    }
+
+    /**
+     * Indica se os layouts fechados são reabertos quando são alcançados com um custo menor.
+     *
+     * @return true se os estados são reabertos
+     */
+    public boolean reopens() {return reabrir;}
+
+    @Override
+    public void clear() {fechados.clear();}
+
+    @Override
+    public boolean close(SearchEngine.State e) {
+        SearchEngine.State anterior = fechados.get(e.getKey());
+        if (anterior != null && (!reabrir || anterior.getG() <= e.getG())) {
+            return false;
+        }
+        fechados.put(e.getKey(), e);
+        return true;
+    }
+
+    @Override
+    public boolean isClosed(long chave, double g) {
+        SearchEngine.State anterior = fechados.get(chave);
+        return anterior != null && (!reabrir || anterior.getG() <= g);
+    }
+}
@@ -0,0 +1,26 @@
+import java.util.PriorityQueue;
+
+/**
+ * Abertos numa fila de prioridade ordenada por f, que aceita vários estados com o mesmo layout
+ * (os repetidos são rejeitados pela estrutura de fechados quando são retirados).
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class HeapOpenList implements SearchEngine.OpenList {
+    private final PriorityQueue<SearchEngine.State> fila = new PriorityQueue<>(10, (s1, s2) -> Double.compare(s1.getF(), s2.getF()));
+
+    @Override
+    public void clear() {fila.clear();}
+
+    @Override
+    public boolean offer(SearchEngine.State e) {return fila.add(e);}
+
+    @Override
+    public SearchEngine.State poll() {return fila.poll();}
+
+    @Override
+    public boolean isEmpty() {return fila.isEmpty();}
+
+    @Override
+    public int size() {return fila.size();}
+}
@@ -2,6 +2,8 @@ import java.util.List;
 
 /**
  * A interface Ilayout define a estrutura para o layout específico e suas operações.
+ * As capacidades que só algumas pesquisas usam estão em interfaces à parte: {@link KeyedLayout} (recriar um layout a
+ * partir da sua chave) e {@link ReversibleLayout} (calcular os predecessores).
  */
 public interface Ilayout {
 	
@@ -11,8 +13,51 @@ public interface Ilayout {
 	 * @return A lista de filhos do layout
 	 */
 	List<Ilayout> children();
-	
-	
+
+
+	/**
+	 * A interface ChildSink recebe os filhos de um layout, um de cada vez, sem que seja criado nenhum objeto por filho.
+	 */
+	@FunctionalInterface
+	interface ChildSink {
+		/**
+		 * Recebe um filho.
+		 *
+		 * @param move O identificador do movimento que gera o filho (a posição do filho em {@link #children()})
+		 * @param key A chave do filho ({@link #stateKey()})
+		 * @param cost O custo do movimento (o g do filho)
+		 * @param h O valor da heurística do filho para o objetivo
+		 */
+		void accept(int move, long key, double cost, double h);
+	}
+
+
+	/**
+	 * Envia os filhos do layout atual para o sink, pela mesma ordem de {@link #children()}. Os layouts que o
+	 * redefinem geram os filhos sem alocar memória; por omissão, os filhos são obtidos com children().
+	 *
+	 * @param goal O layout objetivo, usado para calcular a heurística de cada filho
+	 * @param sink O destino dos filhos
+	 */
+	default void forEachChild(Ilayout goal, ChildSink sink) {
+		int move = 0;
+		for (Ilayout c : children()) {
+			sink.accept(move++, c.stateKey(), c.getG(), c.getH(c, goal));
+		}
+	}
+
+
+	/**
+	 * Cria o filho gerado por um movimento, com o mesmo identificador usado em {@link #forEachChild(Ilayout, ChildSink)}.
+	 *
+	 * @param move O identificador do movimento
+	 * @return O filho gerado pelo movimento
+	 */
+	default Ilayout apply(int move) {
+		return children().get(move);
+	}
+
+
 	/**
 	 * Verifica se o layout atual é igual ao layout passado como argumento.
 	 *
@@ -28,6 +73,20 @@ public interface Ilayout {
 	 * @return Do valor numerico do nó
 	 */
 	int getValue();
+
+
+	/**
+	 * Retorna uma chave de 64 bits que identifica o estado do layout: dois layouts iguais ({@link #equals(Object)})
+	 * têm sempre a mesma chave e layouts diferentes têm chaves diferentes. Os algoritmos usam esta chave nos conjuntos de
+	 * abertos e fechados, em vez de hashCode e equals, para que nenhuma string ou objeto seja criado ao procurar um estado.
+	 * Por omissão é o valor numérico do layout; os layouts cujo estado não é descrito por um único número devem
+	 * redefinir este método (por exemplo, com uma chave de Zobrist atualizada a cada movimento).
+	 *
+	 * @return A chave do estado
+	 */
+	default long stateKey() {
+		return getValue();
+	}
 	
 	/**
 	 * Retorna o valor de g(custo) para o layout.
@@ -45,4 +104,56 @@ public interface Ilayout {
 	 * @return O valor de h para o layout
 	 */
 	double getH(Ilayout actual, Ilayout goal);
+
+
+	/**
+	 * Indica se os custos (g) dos movimentos e os valores da heurística (h) são sempre números inteiros pequenos.
+	 * Nesse caso os algoritmos podem usar uma lista de abertos por baldes, com inserção e remoção em tempo constante.
+	 *
+	 * @return true se g e h são sempre inteiros, false caso contrário
+	 */
+	default boolean hasIntegralCosts() {
+		return false;
+	}
+
+
+	/**
+	 * Retorna um limite superior do custo do caminho ótimo entre o layout atual e o objetivo, isto é, o custo de um
+	 * caminho conhecido. Os algoritmos usam-no com {@link #lowerBound(long, Ilayout)} para descartar os estados que não
+	 * podem estar num caminho ótimo.
+	 *
+	 * @param goal O layout objetivo
+	 * @return O limite superior, ou infinito se não for conhecido
+	 */
+	default double upperBound(Ilayout goal) {
+		return Double.POSITIVE_INFINITY;
+	}
+
+
+	/**
+	 * Retorna um limite inferior do custo entre um estado, identificado pela sua chave, e o objetivo. Ao contrário da
+	 * heurística, nunca pode sobrestimar o custo, porque os estados com g mais este valor acima do limite superior
+	 * são descartados.
+	 *
+	 * @param key A chave do estado
+	 * @param goal O layout objetivo
+	 * @return O limite inferior (0 se não for conhecido)
+	 */
+	default double lowerBound(long key, Ilayout goal) {
+		return 0.0;
+	}
+
+
+	/**
+	 * Retorna o intervalo de chaves dos estados que podem estar num caminho de custo até custoMaximo entre o layout
+	 * atual e o objetivo. Quando o intervalo é pequeno, os algoritmos guardam os fechados numa tabela de bits indexada
+	 * pela chave em vez de uma tabela de dispersão.
+	 *
+	 * @param goal O layout objetivo
+	 * @param custoMaximo O custo máximo do caminho
+	 * @return A menor e a maior chave do intervalo, ou null se o intervalo não for conhecido
+	 */
+	default long[] keyRange(Ilayout goal, double custoMaximo) {
+		return null;
+	}
 }
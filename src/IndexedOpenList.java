@@ -0,0 +1,24 @@
+/**
+ * Abertos numa fila de prioridade indexada por layout: cada layout aparece no máximo uma vez e um caminho melhor
+ * para um layout que já está nos abertos diminui a sua prioridade em vez de inserir um duplicado.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class IndexedOpenList implements SearchEngine.OpenList {
+    private final IndexedPriorityQueue<SearchEngine.State, SearchEngine.State> fila = new IndexedPriorityQueue<>(10, SearchEngine.State::getKey);
+
+    @Override
+    public void clear() {fila.clear();}
+
+    @Override
+    public boolean offer(SearchEngine.State e) {return fila.offer(e, e, e.getF());}
+
+    @Override
+    public SearchEngine.State poll() {return fila.poll();}
+
+    @Override
+    public boolean isEmpty() {return fila.isEmpty();}
+
+    @Override
+    public int size() {return fila.size();}
+}
@@ -0,0 +1,245 @@
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * A classe IndexedPriorityQueue representa uma fila de prioridade (heap binário) indexada por chave.
+ * Cada chave aparece no máximo uma vez na fila, o que permite diminuir a prioridade de um elemento
+ * que já lá está (decrease-key) em vez de inserir duplicados. A prioridade é guardada junto de cada
+ * entrada, pelo que as comparações do heap nunca voltam a calcular a função de avaliação.
+ * O índice pode ser um HashMap (com o hashCode e o equals das chaves) ou um {@link LongMap}, quando é indicada uma
+ * função que converte cada chave num long único, como {@link Ilayout#stateKey()}.
+ *
+ * @param <K> O tipo das chaves (por exemplo, o layout de um estado)
+ * @param <E> O tipo dos elementos guardados na fila
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class IndexedPriorityQueue<K, E> {
+
+    /**
+     * A classe interna Entrada guarda um elemento, a sua chave, a sua prioridade e a posição atual no heap.
+     */
+    private static final class Entrada<K, E> {
+        private final K chave;
+        private E elemento;
+        private double prioridade;
+        private int posicao;
+
+        Entrada(K chave, E elemento, double prioridade) {
+            this.chave = chave;
+            this.elemento = elemento;
+            this.prioridade = prioridade;
+        }
+    }
+
+    private final Map<K, Entrada<K, E>> indice;
+    private final LongMap<Entrada<K, E>> indiceLong;
+    private final ToLongFunction<? super K> chaveLong;
+    private Entrada<K, E>[] heap;
+    private int tamanho;
+
+    /**
+     * Construtor para a classe IndexedPriorityQueue, indexada com o hashCode e o equals das chaves.
+     *
+     * @param capacidade A capacidade inicial do heap
+     */
+    public IndexedPriorityQueue(int capacidade) {
+        this(capacidade, null);
+    }
+
+    /**
+     * Construtor para a classe IndexedPriorityQueue, indexada por uma chave long.
+     *
+     * @param capacidade A capacidade inicial do heap
+     * @param chaveLong A função que converte cada chave num long único; null para usar o hashCode e o equals das chaves
+     */
+    @SuppressWarnings("unchecked")
+    public IndexedPriorityQueue(int capacidade, ToLongFunction<? super K> chaveLong) {
+        heap = (Entrada<K, E>[]) new Entrada<?, ?>[Math.max(1, capacidade)];
+        this.chaveLong = chaveLong;
+        indice = chaveLong == null ? new HashMap<>() : null;
+        indiceLong = chaveLong == null ? null : new LongMap<>(capacidade);
+    }
+
+    private Entrada<K, E> procurar(K chave) {
+        return indice != null ? indice.get(chave) : indiceLong.get(chaveLong.applyAsLong(chave));
+    }
+
+    private void indexar(Entrada<K, E> e) {
+        if (indice != null) {
+            indice.put(e.chave, e);
+        } else {
+            indiceLong.put(chaveLong.applyAsLong(e.chave), e);
+        }
+    }
+
+    private void desindexar(Entrada<K, E> e) {
+        if (indice != null) {
+            indice.remove(e.chave);
+        } else {
+            indiceLong.remove(chaveLong.applyAsLong(e.chave));
+        }
+    }
+
+    /**
+     * Insere um elemento na fila, ou diminui a sua prioridade se a chave já estiver na fila com uma prioridade maior.
+     *
+     * @param chave A chave do elemento
+     * @param elemento O elemento a inserir
+     * @param prioridade A prioridade do elemento (menor é melhor)
+     * @return true se o elemento foi inserido ou atualizado, false se já existia com prioridade igual ou melhor
+     */
+    public boolean offer(K chave, E elemento, double prioridade) {
+        Entrada<K, E> e = procurar(chave);
+        if (e == null) {
+            e = new Entrada<>(chave, elemento, prioridade);
+            indexar(e);
+            if (tamanho == heap.length) {
+                heap = Arrays.copyOf(heap, tamanho * 2);
+            }
+            heap[tamanho] = e;
+            e.posicao = tamanho;
+            subir(tamanho++);
+            return true;
+        }
+        if (prioridade < e.prioridade) {
+            e.elemento = elemento;
+            e.prioridade = prioridade;
+            subir(e.posicao);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove e retorna o elemento com menor prioridade.
+     *
+     * @return O elemento com menor prioridade, ou null se a fila estiver vazia
+     */
+    public E poll() {
+        if (tamanho == 0) {
+            return null;
+        }
+        Entrada<K, E> topo = heap[0];
+        Entrada<K, E> ultimo = heap[--tamanho];
+        heap[tamanho] = null;
+        if (tamanho > 0) {
+            heap[0] = ultimo;
+            ultimo.posicao = 0;
+            descer(0);
+        }
+        desindexar(topo);
+        return topo.elemento;
+    }
+
+    /**
+     * Retorna, sem remover, o elemento com menor prioridade.
+     *
+     * @return O elemento com menor prioridade, ou null se a fila estiver vazia
+     */
+    public E peek() {
+        return tamanho == 0 ? null : heap[0].elemento;
+    }
+
+    /**
+     * Retorna a menor prioridade presente na fila.
+     *
+     * @return A menor prioridade, ou infinito se a fila estiver vazia
+     */
+    public double peekPriority() {
+        return tamanho == 0 ? Double.POSITIVE_INFINITY : heap[0].prioridade;
+    }
+
+    /**
+     * Retorna o elemento associado a uma chave.
+     *
+     * @param chave A chave a procurar
+     * @return O elemento com essa chave, ou null se a chave não estiver na fila
+     */
+    public E get(K chave) {
+        Entrada<K, E> e = procurar(chave);
+        return e == null ? null : e.elemento;
+    }
+
+    /**
+     * Verifica se uma chave está na fila.
+     *
+     * @param chave A chave a procurar
+     * @return true se a chave estiver na fila, false caso contrário
+     */
+    public boolean contains(K chave) {
+        return procurar(chave) != null;
+    }
+
+    /**
+     * Verifica se a fila está vazia.
+     *
+     * @return true se a fila estiver vazia, false caso contrário
+     */
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Retorna o número de elementos na fila.
+     *
+     * @return O número de elementos na fila
+     */
+    public int size() {
+        return tamanho;
+    }
+
+    /**
+     * Percorre os elementos da fila sem os remover, pela ordem em que estão no heap (e não por prioridade).
+     * A fila não pode ser alterada durante o percurso.
+     *
+     * @param acao A ação aplicada a cada elemento
+     */
+    public void forEach(Consumer<? super E> acao) {
+        for (int i = 0; i < tamanho; i++) {
+            acao.accept(heap[i].elemento);
+        }
+    }
+
+    /**
+     * Remove todos os elementos da fila.
+     */
+    public void clear() {
+        Arrays.fill(heap, 0, tamanho, null);
+        tamanho = 0;
+        if (indice != null) {
+            indice.clear();
+        } else {
+            indiceLong.clear();
+        }
+    }
+
+    private void subir(int i) {
+        Entrada<K, E> e = heap[i];
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (heap[p].prioridade <= e.prioridade) break;
+            heap[i] = heap[p];
+            heap[i].posicao = i;
+            i = p;
+        }
+        heap[i] = e;
+        e.posicao = i;
+    }
+
+    private void descer(int i) {
+        Entrada<K, E> e = heap[i];
+        while (true) {
+            int filho = 2 * i + 1;
+            if (filho >= tamanho) break;
+            if (filho + 1 < tamanho && heap[filho + 1].prioridade < heap[filho].prioridade) filho++;
+            if (heap[filho].prioridade >= e.prioridade) break;
+            heap[i] = heap[filho];
+            heap[i].posicao = i;
+            i = filho;
+        }
+        heap[i] = e;
+        e.posicao = i;
+    }
+}
@@ -0,0 +1,127 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A classe JfrSearchListener acumula as estatísticas de uma pesquisa (como o SearchStats) e emite eventos do
+ * JDK Flight Recorder: um evento por pesquisa, com a duração e os contadores, e um evento por cada iteração do IDA*.
+ * Quando a gravação não está ativa os eventos não são registados e o custo é apenas o das estatísticas.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class JfrSearchListener extends SearchStats {
+    private SolveEvent solve;
+    private IterationEvent iteration;
+    private long expandedAtIteration;
+
+    /**
+     * Evento JFR de uma pesquisa completa.
+     */
+    @Name("bestfirst.Solve")
+    @Label("Solve")
+    @Category("BestFirst")
+    @Description("Uma chamada a solve de um algoritmo de pesquisa")
+    static class SolveEvent extends Event {
+        @Label("Algoritmo")
+        String engine;
+        @Label("Inicial")
+        String start;
+        @Label("Objetivo")
+        String goal;
+        @Label("Resolvido")
+        boolean solved;
+        @Label("Custo")
+        double cost;
+        @Label("Profundidade")
+        int depth;
+        @Label("Expandidos")
+        long expanded;
+        @Label("Gerados")
+        long generated;
+        @Label("Duplicados")
+        long duplicates;
+        @Label("Máximo de abertos")
+        int peakOpen;
+        @Label("Iterações")
+        int iterations;
+        @Label("Fator de ramificação efetivo")
+        double effectiveBranchingFactor;
+    }
+
+    /**
+     * Evento JFR de uma iteração do IDA*.
+     */
+    @Name("bestfirst.Iteration")
+    @Label("IDA* Iteration")
+    @Category("BestFirst")
+    @Description("Uma iteração de uma pesquisa iterativa, limitada por f")
+    static class IterationEvent extends Event {
+        @Label("Iteração")
+        int iteration;
+        @Label("Limite")
+        double threshold;
+        @Label("Próximo limite")
+        double nextThreshold;
+        @Label("Expandidos")
+        long expanded;
+    }
+
+    @Override
+    public void solveStarted(String engine, Ilayout start, Ilayout goal) {
+        super.solveStarted(engine, start, goal);
+        solve = new SolveEvent();
+        if (solve.isEnabled()) {
+            solve.engine = engine;
+            solve.start = String.valueOf(start);
+            solve.goal = String.valueOf(goal);
+        }
+        solve.begin();
+    }
+
+    @Override
+    public void iterationStarted(int iteration, double threshold) {
+        super.iterationStarted(iteration, threshold);
+        this.iteration = new IterationEvent();
+        this.iteration.iteration = iteration;
+        this.iteration.threshold = threshold;
+        expandedAtIteration = getExpanded();
+        this.iteration.begin();
+    }
+
+    @Override
+    public void iterationFinished(int iteration, double nextThreshold) {
+        super.iterationFinished(iteration, nextThreshold);
+        if (this.iteration != null) {
+            this.iteration.end();
+            if (this.iteration.shouldCommit()) {
+                this.iteration.nextThreshold = nextThreshold;
+                this.iteration.expanded = getExpanded() - expandedAtIteration;
+                this.iteration.commit();
+            }
+            this.iteration = null;
+        }
+    }
+
+    @Override
+    public void solveFinished(boolean solved, double cost, int depth) {
+        super.solveFinished(solved, cost, depth);
+        if (solve != null) {
+            solve.end();
+            if (solve.shouldCommit()) {
+                solve.solved = solved;
+                solve.cost = cost;
+                solve.depth = depth;
+                solve.expanded = getExpanded();
+                solve.generated = getGenerated();
+                solve.duplicates = getDuplicates();
+                solve.peakOpen = getPeakOpen();
+                solve.iterations = getIterations();
+                solve.effectiveBranchingFactor = getEffectiveBranchingFactor();
+                solve.commit();
+            }
+            solve = null;
+        }
+    }
+}
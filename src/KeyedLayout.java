@@ -0,0 +1,17 @@
+/**
+ * A interface KeyedLayout é implementada pelos layouts que podem ser recriados a partir da sua chave de estado
+ * ({@link Ilayout#stateKey()}). É exigida pelas pesquisas que guardam os estados apenas pela chave, fora dos objetos
+ * dos layouts, como a pesquisa em disco, o A* fora do heap e a pesquisa de fronteira.
+ *
+ * @param <L> O tipo do layout, devolvido por {@link #fromStateKey(long)}
+ */
+public interface KeyedLayout<L extends KeyedLayout<L>> extends Ilayout {
+
+	/**
+	 * Cria o layout identificado por uma chave de estado ({@link #stateKey()}), com custo (g) 0.
+	 *
+	 * @param key A chave do estado
+	 * @return O layout com essa chave
+	 */
+	L fromStateKey(long key);
+}
@@ -0,0 +1,198 @@
+import java.util.Arrays;
+
+/**
+ * A classe LongMap representa um mapa de chaves long para objetos, com endereçamento aberto e sondagem linear.
+ * Ao contrário de um HashMap, as chaves não são convertidas em objetos, pelo que procurar, inserir e remover não
+ * alocam memória (exceto quando a tabela cresce). É usado pelos algoritmos de pesquisa com a chave de cada estado
+ * ({@link Ilayout#stateKey()}). Os valores não podem ser null.
+ *
+ * @param <V> O tipo dos valores guardados
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class LongMap<V> {
+    private long[] chaves;
+    private Object[] valores;
+    private int tamanho;
+
+    /**
+     * Construtor para a classe LongMap, com capacidade inicial para 16 entradas.
+     */
+    public LongMap() {
+        this(16);
+    }
+
+    /**
+     * Construtor para a classe LongMap.
+     *
+     * @param capacidade O número de entradas que cabem no mapa antes de este crescer
+     */
+    public LongMap(int capacidade) {
+        int n = Integer.highestOneBit(Math.max(4, capacidade * 2 - 1)) << 1;
+        chaves = new long[n];
+        valores = new Object[n];
+    }
+
+    /**
+     * Calcula a posição inicial de uma chave na tabela.
+     */
+    private int posicao(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (chaves.length - 1);
+    }
+
+    /**
+     * Procura a posição de uma chave.
+     *
+     * @return A posição da chave, ou -1 se a chave não estiver no mapa
+     */
+    private int procurar(long chave) {
+        int mascara = chaves.length - 1;
+        for (int i = posicao(chave); valores[i] != null; i = (i + 1) & mascara) {
+            if (chaves[i] == chave) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retorna o valor associado a uma chave.
+     *
+     * @param chave A chave a procurar
+     * @return O valor associado, ou null se a chave não estiver no mapa
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long chave) {
+        int i = procurar(chave);
+        return i < 0 ? null : (V) valores[i];
+    }
+
+    /**
+     * Verifica se uma chave está no mapa.
+     *
+     * @param chave A chave a procurar
+     * @return true se a chave estiver no mapa, false caso contrário
+     */
+    public boolean containsKey(long chave) {
+        return procurar(chave) >= 0;
+    }
+
+    /**
+     * Associa um valor a uma chave, substituindo o valor anterior.
+     *
+     * @param chave A chave
+     * @param valor O valor (não pode ser null)
+     * @return O valor anterior, ou null se a chave não estava no mapa
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long chave, V valor) {
+        if (valor == null) {
+            throw new NullPointerException("O LongMap não aceita valores null");
+        }
+        int mascara = chaves.length - 1;
+        int i = posicao(chave);
+        while (valores[i] != null) {
+            if (chaves[i] == chave) {
+                V anterior = (V) valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        chaves[i] = chave;
+        valores[i] = valor;
+        if (++tamanho * 2 > chaves.length) {
+            crescer();
+        }
+        return null;
+    }
+
+    /**
+     * Associa um valor a uma chave, apenas se a chave ainda não estiver no mapa.
+     *
+     * @param chave A chave
+     * @param valor O valor (não pode ser null)
+     * @return O valor já associado à chave, ou null se o valor foi inserido
+     */
+    public V putIfAbsent(long chave, V valor) {
+        V atual = get(chave);
+        if (atual != null) {
+            return atual;
+        }
+        put(chave, valor);
+        return null;
+    }
+
+    /**
+     * Remove uma chave do mapa. As entradas seguintes do mesmo grupo são recuadas, para que as procuras não precisem
+     * de marcas de remoção.
+     *
+     * @param chave A chave a remover
+     * @return O valor que estava associado, ou null se a chave não estava no mapa
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long chave) {
+        int i = procurar(chave);
+        if (i < 0) {
+            return null;
+        }
+        V anterior = (V) valores[i];
+        int mascara = chaves.length - 1;
+        int livre = i;
+        for (int j = (i + 1) & mascara; valores[j] != null; j = (j + 1) & mascara) {
+            int inicio = posicao(chaves[j]);
+            // A entrada em j pode ocupar a posição livre se esta estiver entre a sua posição inicial e j (circularmente)
+            if (((j - inicio) & mascara) >= ((j - livre) & mascara)) {
+                chaves[livre] = chaves[j];
+                valores[livre] = valores[j];
+                livre = j;
+            }
+        }
+        valores[livre] = null;
+        tamanho--;
+        return anterior;
+    }
+
+    /**
+     * Retorna o número de entradas no mapa.
+     *
+     * @return O número de entradas
+     */
+    public int size() {
+        return tamanho;
+    }
+
+    /**
+     * Verifica se o mapa está vazio.
+     *
+     * @return true se o mapa estiver vazio, false caso contrário
+     */
+    public boolean isEmpty() {
+        return tamanho == 0;
+    }
+
+    /**
+     * Remove todas as entradas, mantendo a capacidade já alocada.
+     */
+    public void clear() {
+        if (tamanho > 0) {
+            Arrays.fill(valores, null);
+            tamanho = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void crescer() {
+        long[] chavesAntigas = chaves;
+        Object[] valoresAntigos = valores;
+        chaves = new long[chavesAntigas.length * 2];
+        valores = new Object[valoresAntigos.length * 2];
+        tamanho = 0;
+        for (int i = 0; i < chavesAntigas.length; i++) {
+            if (valoresAntigos[i] != null) {
+                put(chavesAntigas[i], (V) valoresAntigos[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A classe MacroOperation é um layout com os números de {@link Operation} que, além dos movimentos +1, -1 e *2, oferece
+ * dois macro-movimentos: +k com custo k e -k com custo 2k, equivalentes a k adições ou k subtrações seguidas. O valor de
+ * k leva o número até ao alvo mais próximo acima ou abaixo dele, sendo os alvos o objetivo e as suas metades sucessivas
+ * (arredondadas para baixo e para cima), que são os números onde um caminho ótimo passa de uma sequência de somas ou
+ * subtrações para uma multiplicação. Cada macro-movimento tem o custo da sequência de movimentos primitivos que
+ * substitui, pelo que o custo ótimo não muda, mas os números intermédios dessas sequências deixam de ser expandidos um a um.
+ * Os caminhos encontrados podem ser convertidos em movimentos primitivos com {@link #expand(List)}. No BestFirstIDA,
+ * que não deteta estados repetidos, os filhos extra podem aumentar o número de expansões em vez de o reduzir.
+ * A heurística e os limites do custo são os de {@link Operation}. Os predecessores por macro-movimentos dependem dos
+ * alvos de cada predecessor e não são calculados, pelo que a classe não implementa {@link ReversibleLayout}.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ *
+ */
+public class MacroOperation implements KeyedLayout<MacroOperation>, NumberLayout {
+
+	/** Número de movimentos possíveis: os 3 primitivos, o macro-movimento para cima e o macro-movimento para baixo. */
+	public static final int MACRO_MOVES = Operation.MOVES + 2;
+
+	private final Operation operacao;
+	private final int goal;
+
+	/**
+	 * Construtor para a classe MacroOperation.
+	 *
+	 * @param num O número associado à operação
+	 * @param goal O número objetivo, que define os alvos dos macro-movimentos
+	 */
+	public MacroOperation(int num, int goal) {
+		this(num, 0, goal);
+	}
+
+	/**
+	 * Construtor para a classe MacroOperation.
+	 *
+	 * @param num O número associado à operação
+	 * @param x O custo associado à operação
+	 * @param goal O número objetivo, que define os alvos dos macro-movimentos
+	 */
+	public MacroOperation(int num, int x, int goal) {
+		operacao = new Operation(num, x);
+		this.goal = goal;
+	}
+
+
+	/**
+	 * Verifica se o objeto passado é igual a esta instância da MacroOperation. Tal como na {@link Operation}, dois
+	 * layouts são iguais se tiverem a mesma chave de estado, pelo que uma MacroOperation é igual à Operation com o
+	 * mesmo número, independentemente do objetivo, mas não a um layout de outro domínio com a mesma chave.
+	 *
+	 * @param obj O objeto a ser comparado com a instância atual
+	 * @return true se os objetos forem iguais, false caso contrário
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof NumberLayout && stateKey() == ((NumberLayout) obj).stateKey();
+	}
+
+
+	/**
+	 * Retorna um código hash para a instância atual da MacroOperation, calculado a partir da chave de estado.
+	 *
+	 * @return O código hash para a instância atual
+	 */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(stateKey());
+	}
+
+
+	/**
+	 * Retorna uma representação em string da instância atual da MacroOperation.
+	 *
+	 * @return A representação em string da instância atual
+	 */
+	@Override
+	public String toString() {
+		return operacao.toString();
+	}
+
+
+	/**
+	 * Retorna os filhos do layout atual: os dos movimentos primitivos seguidos dos macro-movimentos.
+	 *
+	 * @return A lista de filhos do layout atual
+	 */
+	@Override
+	public List<Ilayout> children() {
+		List<Ilayout> child = new ArrayList<Ilayout>();
+		for (int move = 0; move < MACRO_MOVES; move++) {
+			if (exists(move)) {
+				child.add(apply(move));
+			}
+		}
+		return child;
+	}
+
+
+	/**
+	 * Envia os filhos do layout atual para o sink sem criar objetos, com os macro-movimentos depois dos primitivos.
+	 *
+	 * @param goal O layout objetivo
+	 * @param sink O destino dos filhos
+	 */
+	@Override
+	public void forEachChild(Ilayout goal, ChildSink sink) {
+		int objetivo = goal.getValue();
+		for (int move = 0; move < MACRO_MOVES; move++) {
+			if (exists(move)) {
+				int v = value(move);
+				sink.accept(move, v, cost(move), Operation.heuristic(v, objetivo));
+			}
+		}
+	}
+
+
+	/**
+	 * Cria o filho gerado por um movimento.
+	 *
+	 * @param move O identificador do movimento
+	 * @return O filho gerado pelo movimento
+	 */
+	@Override
+	public Ilayout apply(int move) {
+		return new MacroOperation(value(move), cost(move), goal);
+	}
+
+
+	/**
+	 * Cria o layout de um número, com custo 0 e o mesmo objetivo.
+	 *
+	 * @param key A chave do estado
+	 * @return O layout com essa chave
+	 */
+	@Override
+	public MacroOperation fromStateKey(long key) {
+		return new MacroOperation((int) key, 0, goal);
+	}
+
+
+	/**
+	 * Verifica se o layout passado como argumento é o objetivo.
+	 *
+	 * @param l O layout a ser comparado com o layout atual
+	 * @return true se os layouts forem iguais, false caso contrário
+	 */
+	@Override
+	public boolean isGoal(Ilayout l) {
+		return this.equals(l);
+	}
+
+
+	/**
+	 * Obtém o valor numerico do nó.
+	 *
+	 * @return O valor numerico do nó
+	 */
+	@Override
+	public int getValue() {
+		return operacao.getValue();
+	}
+
+
+	/**
+	 * Retorna a chave do estado, que é o próprio número.
+	 *
+	 * @return A chave do estado
+	 */
+	@Override
+	public long stateKey() {
+		return operacao.stateKey();
+	}
+
+
+	/**
+	 * Retorna o valor de g para o layout: o custo do movimento, ou da sequência de movimentos, que o gerou.
+	 *
+	 * @return O valor de g para o layout
+	 */
+	@Override
+	public double getG() {
+		return operacao.getG();
+	}
+
+
+	/**
+	 * Calcula o valor heurístico (h) com a heurística de {@link Operation}.
+	 *
+	 * @param actual o layout atual
+	 * @param goal o layout objetivo
+	 * @return o valor heurístico (h) para o layout
+	 */
+	@Override
+	public double getH(Ilayout actual, Ilayout goal) {
+		return operacao.getH(actual, goal);
+	}
+
+
+	/**
+	 * Os custos dos movimentos e dos macro-movimentos e a heurística são sempre inteiros.
+	 *
+	 * @return true
+	 */
+	@Override
+	public boolean hasIntegralCosts() {
+		return true;
+	}
+
+
+	/**
+	 * Retorna o custo do caminho direto até ao objetivo, como em {@link Operation#upperBound(Ilayout)}.
+	 *
+	 * @param goal O layout objetivo
+	 * @return O custo do caminho direto
+	 */
+	@Override
+	public double upperBound(Ilayout goal) {
+		return operacao.upperBound(goal);
+	}
+
+
+	/**
+	 * Retorna um limite inferior do custo entre um número e o objetivo, como em {@link Operation#lowerBound(long, Ilayout)};
+	 * os macro-movimentos têm o custo dos movimentos que substituem, pelo que o limite continua válido.
+	 *
+	 * @param key O número (a chave do estado)
+	 * @param goal O layout objetivo
+	 * @return O limite inferior do custo até ao objetivo
+	 */
+	@Override
+	public double lowerBound(long key, Ilayout goal) {
+		return operacao.lowerBound(key, goal);
+	}
+
+
+	/**
+	 * Retorna o intervalo de números que podem estar num caminho de custo até custoMaximo para o objetivo, como em
+	 * {@link Operation#keyRange(Ilayout, double)}.
+	 *
+	 * @param goal O layout objetivo
+	 * @param custoMaximo O custo máximo do caminho
+	 * @return A menor e a maior chave do intervalo
+	 */
+	@Override
+	public long[] keyRange(Ilayout goal, double custoMaximo) {
+		return operacao.keyRange(goal, custoMaximo);
+	}
+
+
+	/**
+	 * Verifica se um movimento existe a partir do número atual: os primitivos que não saem dos limites de int e os
+	 * macro-movimentos com um alvo a pelo menos 2 de distância (a 1 de distância são movimentos primitivos).
+	 */
+	private boolean exists(int move) {
+		if (move < Operation.MOVES) {
+			return !Operation.overflows(getValue(), move);
+		}
+		long k = Math.abs((long) target(getValue(), goal, move == Operation.MOVES) - getValue());
+		// O custo de -k tem de caber num int
+		return k != 0 && (move == Operation.MOVES || 2 * k <= Integer.MAX_VALUE);
+	}
+
+
+	/**
+	 * Retorna o número resultante de um movimento a partir do número atual.
+	 */
+	private int value(int move) {
+		if (move < Operation.MOVES) {
+			return Operation.childValue(getValue(), move);
+		}
+		if (move >= MACRO_MOVES) {
+			throw new IllegalArgumentException("Movimento inválido: " + move);
+		}
+		return target(getValue(), goal, move == Operation.MOVES);
+	}
+
+
+	/**
+	 * Retorna o custo de um movimento a partir do número atual: k para +k e 2k para -k.
+	 */
+	private int cost(int move) {
+		if (move < Operation.MOVES) {
+			return Operation.moveCost(move);
+		}
+		long k = Math.abs((long) value(move) - getValue());
+		return (int) (move == Operation.MOVES ? k : 2 * k);
+	}
+
+
+	/**
+	 * Calcula o alvo de um macro-movimento: o menor alvo acima de number + 1 ou o maior abaixo de number - 1.
+	 * Os alvos são goal, goal / 2, goal / 4, ... (arredondados para baixo) e cada um deles mais 1.
+	 *
+	 * @param number O número atual
+	 * @param goal O número objetivo
+	 * @param subir true para o alvo acima, false para o alvo abaixo
+	 * @return O alvo, ou o próprio número se não houver nenhum
+	 */
+	public static int target(int number, int goal, boolean subir) {
+		long atual = number;
+		long melhor = subir ? Long.MAX_VALUE : Long.MIN_VALUE;
+		for (int j = 0; j < Integer.SIZE; j++) {
+			long metade = Math.floorDiv((long) goal, 1L << j);
+			for (long t = metade; t <= metade + 1; t++) {
+				if (subir && t >= atual + 2 && t < melhor) {
+					melhor = t;
+				} else if (!subir && t <= atual - 2 && t > melhor) {
+					melhor = t;
+				}
+			}
+		}
+		if (melhor == Long.MAX_VALUE || melhor == Long.MIN_VALUE || melhor > Integer.MAX_VALUE || melhor < Integer.MIN_VALUE) {
+			return number;
+		}
+		return (int) melhor;
+	}
+
+
+	/**
+	 * Converte um caminho com macro-movimentos num caminho só com movimentos primitivos: cada macro-movimento +k
+	 * (ou -k) é substituído por k adições (ou subtrações) de custo 1 (ou 2).
+	 *
+	 * @param caminho Os layouts do caminho, do inicial ao objetivo, com o custo (g) de cada movimento
+	 * @return Os layouts do caminho só com movimentos primitivos
+	 */
+	public static List<Ilayout> expand(List<? extends Ilayout> caminho) {
+		List<Ilayout> result = new ArrayList<Ilayout>();
+		if (caminho.isEmpty()) {
+			return result;
+		}
+		Ilayout inicial = caminho.get(0);
+		result.add(inicial);
+		int goal = inicial instanceof MacroOperation ? ((MacroOperation) inicial).goal : caminho.get(caminho.size() - 1).getValue();
+		for (int i = 1; i < caminho.size(); i++) {
+			int de = caminho.get(i - 1).getValue();
+			Ilayout l = caminho.get(i);
+			int para = l.getValue();
+			if (isPrimitive(de, para, l.getG())) {
+				result.add(l);
+				continue;
+			}
+			int passo = para > de ? 1 : -1;
+			for (int v = de + passo; v != para + passo; v += passo) {
+				result.add(new MacroOperation(v, Operation.moveCost(passo > 0 ? 0 : 1), goal));
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Verifica se um passo do caminho é um movimento primitivo com o custo indicado.
+	 */
+	private static boolean isPrimitive(int de, int para, double custo) {
+		for (int move = 0; move < Operation.MOVES; move++) {
+			if (!Operation.overflows(de, move) && Operation.childValue(de, move) == para && Operation.moveCost(move) == custo) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+
+/**
+ * A classe MoveTrail guarda a árvore de pesquisa de forma compacta: cada nó ocupa um único int, com o índice do pai e
+ * o código de 3 bits do movimento que o gerou a partir do pai. Um caminho é reconstruído seguindo os índices dos pais
+ * e repetindo os movimentos a partir do layout inicial, para um array com o tamanho exato do caminho.
+ * Só serve para layouts com no máximo 8 movimentos ({@link Ilayout#apply(int)} com movimentos de 0 a 7), como a
+ * {@link Operation} e a {@link MacroOperation}.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class MoveTrail {
+    /** O número de bits usados pelo código do movimento. */
+    public static final int BITS_MOVIMENTO = 3;
+    /** O número máximo de nós, limitado pelos bits que restam para o índice do pai. */
+    public static final int MAX_NOS = (1 << (Integer.SIZE - 1 - BITS_MOVIMENTO)) - 1;
+    private static final int MASCARA_MOVIMENTO = (1 << BITS_MOVIMENTO) - 1;
+
+    private int[] nos;
+    private int tamanho;
+
+    /**
+     * Construtor para a classe MoveTrail, com capacidade inicial para 1024 nós.
+     */
+    public MoveTrail() {
+        this(1024);
+    }
+
+    /**
+     * Construtor para a classe MoveTrail.
+     *
+     * @param capacidade O número de nós para o qual a memória é reservada logo de início
+     */
+    public MoveTrail(int capacidade) {
+        nos = new int[Math.max(1, capacidade)];
+    }
+
+    /**
+     * Adiciona um nó.
+     *
+     * @param pai O índice do nó pai, ou -1 para a raiz
+     * @param move O movimento que gera o nó a partir do pai (ignorado na raiz)
+     * @return O índice do novo nó
+     */
+    public int add(int pai, int move) {
+        if ((move & ~MASCARA_MOVIMENTO) != 0 && pai >= 0) {
+            throw new IllegalArgumentException("O movimento " + move + " não cabe em " + BITS_MOVIMENTO + " bits");
+        }
+        if (pai < -1 || pai >= tamanho) {
+            throw new IndexOutOfBoundsException("Pai inválido: " + pai);
+        }
+        if (tamanho == MAX_NOS) {
+            throw new IllegalStateException("Número máximo de nós atingido");
+        }
+        if (tamanho == nos.length) {
+            nos = Arrays.copyOf(nos, (int) Math.min(MAX_NOS, 2L * nos.length));
+        }
+        nos[tamanho] = ((pai + 1) << BITS_MOVIMENTO) | (pai >= 0 ? move : 0);
+        return tamanho++;
+    }
+
+    /**
+     * Remove o último nó adicionado, por exemplo quando o estado que o usava foi rejeitado.
+     */
+    public void removeLast() {
+        if (tamanho == 0) {
+            throw new IllegalStateException("Não há nós");
+        }
+        tamanho--;
+    }
+
+    /**
+     * Retorna o índice do pai de um nó.
+     *
+     * @param no O índice do nó
+     * @return O índice do pai, ou -1 na raiz
+     */
+    public int parent(int no) {
+        return (nos[verificar(no)] >>> BITS_MOVIMENTO) - 1;
+    }
+
+    /**
+     * Retorna o movimento que gera um nó a partir do seu pai.
+     *
+     * @param no O índice do nó
+     * @return O código do movimento
+     */
+    public int move(int no) {
+        return nos[verificar(no)] & MASCARA_MOVIMENTO;
+    }
+
+    /**
+     * Retorna a profundidade de um nó (0 na raiz).
+     *
+     * @param no O índice do nó
+     * @return O número de movimentos desde a raiz
+     */
+    public int depth(int no) {
+        int profundidade = 0;
+        for (int n = parent(no); n >= 0; n = parent(n)) {
+            profundidade++;
+        }
+        return profundidade;
+    }
+
+    /**
+     * Reconstrói o caminho até um nó, repetindo os movimentos a partir do layout da raiz do nó.
+     *
+     * @param inicio O layout da raiz
+     * @param no O índice do último nó do caminho
+     * @return Os layouts do caminho, do inicial até ao do nó
+     */
+    public Ilayout[] replay(Ilayout inicio, int no) {
+        Ilayout[] caminho = new Ilayout[depth(no) + 1];
+        int[] movimentos = new int[caminho.length];
+        int k = caminho.length;
+        for (int n = no; n >= 0; n = parent(n)) {
+            movimentos[--k] = move(n);
+        }
+        caminho[0] = inicio;
+        for (int i = 1; i < caminho.length; i++) {
+            caminho[i] = caminho[i - 1].apply(movimentos[i]);
+        }
+        return caminho;
+    }
+
+    /**
+     * Remove todos os nós, mantendo a memória reservada.
+     */
+    public void clear() {
+        tamanho = 0;
+    }
+
+    /**
+     * Retorna o número de nós.
+     *
+     * @return O número de nós
+     */
+    public int size() {
+        return tamanho;
+    }
+
+    private int verificar(int no) {
+        if (no < 0 || no >= tamanho) {
+            throw new IndexOutOfBoundsException("Nó inválido: " + no);
+        }
+        return no;
+    }
+}
@@ -0,0 +1,15 @@
+/**
+ * Sem fechados: nenhum estado é rejeitado (os ciclos, se existirem, são evitados pela estrutura de abertos).
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class NoClosedSet implements SearchEngine.ClosedSet {
+    @Override
+    public void clear() {}
+
+    @Override
+    public boolean close(SearchEngine.State e) {return true;}
+
+    @Override
+    public boolean isClosed(long chave, double g) {return false;}
+}
@@ -0,0 +1,10 @@
+/**
+ * A interface NumberLayout marca os layouts cujo estado é apenas um número inteiro, como a {@link Operation} e a
+ * {@link MacroOperation}. Estes layouts são iguais entre si quando têm a mesma chave de estado
+ * ({@link Ilayout#stateKey()}), mesmo que sejam de classes diferentes; um layout de outro domínio com a mesma chave
+ * nunca é igual a eles.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+interface NumberLayout extends Ilayout {
+}
@@ -5,11 +5,19 @@ import java.util.List;
 /**
  * A classe Operation implementa a interface Ilayout e define as operações para um layout específico. 
  * Ela mantém informações sobre um número e um custo associado.
+ * Como a chave de cada estado é o próprio número e os movimentos são invertíveis, também implementa
+ * {@link KeyedLayout} e {@link ReversibleLayout}.
  * 
  * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
  *
  */
-public class Operation implements Ilayout, Cloneable {
+public class Operation implements KeyedLayout<Operation>, ReversibleLayout, NumberLayout, Cloneable {
+
+	/** Número de movimentos possíveis a partir de cada número (+1, -1 e *2). */
+	public static final int MOVES = 3;
+
+	/** Valor máximo devolvido pela heurística, para que g + h não ultrapasse os limites de int. */
+	public static final int MAX_HEURISTIC = Integer.MAX_VALUE / 2;
 
 	private int number;
 	private int cost;
@@ -36,35 +44,27 @@ public class Operation implements Ilayout, Cloneable {
 
 	
 	/**
-	 * Verifica se o objeto passado é igual a esta instância da Operation.
+	 * Verifica se o objeto passado é igual a esta instância da Operation. Dois layouts são iguais se tiverem a mesma
+	 * chave de estado ({@link Ilayout#stateKey()}), mesmo que sejam de classes diferentes, como uma
+	 * {@link MacroOperation} com o mesmo número; um layout que não seja {@link NumberLayout} nunca é igual.
 	 *
 	 * @param obj O objeto a ser comparado com a instância atual
 	 * @return true se os objetos forem iguais, false caso contrário
 	 */
 	@Override
 	public boolean equals(Object obj) {
-	    if (this == obj) {
-	        return true;
-	    }
-	    if (obj == null) {
-	        return false;
-	    }
-	    if (getClass() != obj.getClass()) {
-	        return false;
-	    }
-	    Operation other = (Operation) obj;
-	    return this.number == other.number; 
+	    return obj instanceof NumberLayout && stateKey() == ((NumberLayout) obj).stateKey();
 	}
 	
 	
 	/**
-	 * Retorna um código hash para a instância atual da Operation.
+	 * Retorna um código hash para a instância atual da Operation, calculado a partir da chave de estado.
 	 *
 	 * @return O código hash para a instância atual
 	 */
 	@Override
 	public int hashCode() {
-	    return Integer.hashCode(number);
+	    return Long.hashCode(stateKey());
 	}
 	
 	
@@ -89,17 +89,150 @@ public class Operation implements Ilayout, Cloneable {
 	@Override
 	public List<Ilayout> children() {
 		List<Ilayout> child = new ArrayList<Ilayout>();
-		Operation O1 = new Operation(number + 1, 1); // Cria uma nova operação com o número incrementado em 1 e custo 1
-		Operation O2 = new Operation(number - 1, 2); // Cria uma nova operação com o número decrementado em 1 e custo 2
-		Operation O3 = new Operation(number * 2, 3); // Cria uma nova operação com o número multiplicado por 2 e custo 3
-
-		child.add(O1); // Adiciona a operação O1 à lista de filhos
-		child.add(O2); // Adiciona a operação O2 à lista de filhos
-		child.add(O3); // Adiciona a operação O3 à lista de filhos
+		for (int move = 0; move < MOVES; move++) {
+			if (overflows(number, move)) {
+				continue;
+			}
+			// Cria uma nova operação com o número resultante do movimento e o respetivo custo
+			child.add(new Operation(childValue(number, move), moveCost(move)));
+		}
 		return child; // Retorna a lista de filhos do layout atual
 	}
 
 	
+	/**
+	 * Envia os filhos do layout atual para o sink sem criar objetos, calculando cada um com {@link #childValue(int, int)}.
+	 *
+	 * @param goal O layout objetivo
+	 * @param sink O destino dos filhos
+	 */
+	@Override
+	public void forEachChild(Ilayout goal, ChildSink sink) {
+		int objetivo = goal.getValue();
+		for (int move = 0; move < MOVES; move++) {
+			if (overflows(number, move)) {
+				continue;
+			}
+			int v = childValue(number, move);
+			sink.accept(move, v, moveCost(move), heuristic(v, objetivo));
+		}
+	}
+
+
+	/**
+	 * Cria o filho gerado por um movimento.
+	 *
+	 * @param move O identificador do movimento
+	 * @return O filho gerado pelo movimento
+	 */
+	@Override
+	public Ilayout apply(int move) {
+		return new Operation(childValue(number, move), moveCost(move));
+	}
+
+
+	/**
+	 * Cria o layout de um número, com custo 0; a chave do estado é o próprio número.
+	 *
+	 * @param key A chave do estado
+	 * @return O layout com essa chave
+	 */
+	@Override
+	public Operation fromStateKey(long key) {
+		return new Operation((int) key, 0);
+	}
+
+	
+	/**
+	 * Retorna os predecessores do layout atual, aplicando os movimentos inversos: n-1 (desfaz a adição),
+	 * n+1 (desfaz a subtração) e n/2 quando n é par (desfaz a multiplicação), cada um com o custo do movimento original.
+	 *
+	 * @return A lista de predecessores do layout atual
+	 */
+	@Override
+	public List<ReversibleLayout> parents() {
+		List<ReversibleLayout> parent = new ArrayList<ReversibleLayout>();
+		if (number != Integer.MIN_VALUE) {
+			parent.add(new Operation(number - 1, moveCost(0)));
+		}
+		if (number != Integer.MAX_VALUE) {
+			parent.add(new Operation(number + 1, moveCost(1)));
+		}
+		if (number % 2 == 0 && number != 0) {
+			parent.add(new Operation(number / 2, moveCost(2)));
+		}
+		return parent;
+	}
+
+
+	/**
+	 * Envia os predecessores do layout atual para o sink sem criar objetos, pela mesma ordem de {@link #parents()}.
+	 * O movimento de cada predecessor é o que o transforma no layout atual.
+	 *
+	 * @param goal O layout objetivo
+	 * @param sink O destino dos predecessores
+	 */
+	@Override
+	public void forEachParent(Ilayout goal, ChildSink sink) {
+		int objetivo = goal.getValue();
+		if (number != Integer.MIN_VALUE) {
+			sink.accept(0, number - 1, moveCost(0), heuristic(number - 1, objetivo));
+		}
+		if (number != Integer.MAX_VALUE) {
+			sink.accept(1, number + 1, moveCost(1), heuristic(number + 1, objetivo));
+		}
+		if (number % 2 == 0 && number != 0) {
+			sink.accept(2, number / 2, moveCost(2), heuristic(number / 2, objetivo));
+		}
+	}
+
+	
+	/**
+	 * Aplica um movimento a um número, sem criar objetos. Os movimentos são numerados pela mesma ordem
+	 * em que aparecem em {@link #children()}: 0 soma 1, 1 subtrai 1 e 2 multiplica por 2.
+	 *
+	 * @param number O número ao qual o movimento é aplicado
+	 * @param move O identificador do movimento
+	 * @return O número resultante
+	 */
+	public static int childValue(int number, int move) {
+		switch (move) {
+			case 0: return number + 1;
+			case 1: return number - 1;
+			case 2: return number * 2;
+			default: throw new IllegalArgumentException("Movimento inválido: " + move);
+		}
+	}
+
+	
+	/**
+	 * Verifica se um movimento sai dos limites de int. Esses filhos não são gerados.
+	 *
+	 * @param number O número ao qual o movimento é aplicado
+	 * @param move O identificador do movimento
+	 * @return true se o resultado do movimento não cabe num int
+	 */
+	public static boolean overflows(int number, int move) {
+		switch (move) {
+			case 0: return number == Integer.MAX_VALUE;
+			case 1: return number == Integer.MIN_VALUE;
+			case 2: return number > Integer.MAX_VALUE / 2 || number < Integer.MIN_VALUE / 2;
+			default: throw new IllegalArgumentException("Movimento inválido: " + move);
+		}
+	}
+
+	
+	/**
+	 * Retorna o custo de um movimento.
+	 *
+	 * @param move O identificador do movimento
+	 * @return O custo do movimento
+	 */
+	public static int moveCost(int move) {
+		return move + 1;
+	}
+
+	
 	/**
 	 * Verifica se o layout passado como argumento é o objetivo.
 	 *
@@ -121,6 +254,17 @@ public class Operation implements Ilayout, Cloneable {
 		return number;
 	}
 
+
+	/**
+	 * Retorna a chave do estado, que é o próprio número.
+	 *
+	 * @return A chave do estado
+	 */
+	@Override
+	public long stateKey() {
+		return number;
+	}
+
 	/**
 	 * Retorna o valor de g para o layout.
 	 *
@@ -142,11 +286,91 @@ public class Operation implements Ilayout, Cloneable {
 	 */
 	@Override
 	public double getH(Ilayout actual, Ilayout goal){
-        int p;
-        int p2;
-        int p3;
-        int current = actual.getValue();
-        int target = goal.getValue();
+		return heuristic(actual.getValue(), goal.getValue());
+	}
+
+
+	/**
+	 * Os custos dos movimentos (1, 2 e 3) e a heurística são sempre inteiros.
+	 *
+	 * @return true
+	 */
+	@Override
+	public boolean hasIntegralCosts() {
+		return true;
+	}
+
+
+	/**
+	 * Retorna o custo do caminho direto até ao objetivo, só com adições (se o objetivo é maior) ou só com subtrações.
+	 *
+	 * @param goal O layout objetivo
+	 * @return O custo do caminho direto
+	 */
+	@Override
+	public double upperBound(Ilayout goal) {
+		long alvo = goal.getValue();
+		return number <= alvo ? alvo - number : 2 * (number - alvo);
+	}
+
+
+	/**
+	 * Retorna um limite inferior do custo entre um número e o objetivo. Enquanto o número é maior que max(objetivo, 0),
+	 * só a subtração o faz descer, de 1 em 1 com custo 2; enquanto é menor que min(objetivo, 0), só a adição o faz
+	 * subir, de 1 em 1 com custo 1. Entre esses valores o limite é 0.
+	 *
+	 * @param key O número (a chave do estado)
+	 * @param goal O layout objetivo
+	 * @return O limite inferior do custo até ao objetivo
+	 */
+	@Override
+	public double lowerBound(long key, Ilayout goal) {
+		long alvo = goal.getValue();
+		long maximo = Math.max(alvo, 0);
+		long minimo = Math.min(alvo, 0);
+		if (key > maximo) {
+			return 2.0 * (key - maximo);
+		}
+		if (key < minimo) {
+			return minimo - key;
+		}
+		return 0.0;
+	}
+
+
+	/**
+	 * Retorna o intervalo de números que podem estar num caminho de custo até custoMaximo para o objetivo G:
+	 * de min(G, 0) - custoMaximo até max(G, 0) + custoMaximo / 2 (ver {@link #lowerBound(long, Ilayout)}),
+	 * limitado aos valores de int.
+	 *
+	 * @param goal O layout objetivo
+	 * @param custoMaximo O custo máximo do caminho
+	 * @return A menor e a maior chave do intervalo
+	 */
+	@Override
+	public long[] keyRange(Ilayout goal, double custoMaximo) {
+		long alvo = goal.getValue();
+		long d = (long) Math.min(custoMaximo, (double) Integer.MAX_VALUE * 4);
+		return new long[] {Math.max(Integer.MIN_VALUE, Math.min(alvo, 0) - d),
+				Math.min(Integer.MAX_VALUE, Math.max(alvo, 0) + d / 2)};
+	}
+
+	
+	/**
+	 * Versão primitiva de {@link #getH(Ilayout, Ilayout)}, que calcula a heurística diretamente a partir dos números
+	 * do layout atual e do layout objetivo.
+	 *
+	 * @param current o número do layout atual
+	 * @param target o número do layout objetivo
+	 * @return o valor heurístico (h) para o número atual
+	 */
+	public static int heuristic(int current, int target){
+        // Os cálculos são feitos com long para que números próximos dos limites de int não deem valores negativos
+        long p;
+        long p2;
+        long p3;
+        long atual = current;
+        long alvo = target;
         double half = target/2.0;
         double dupleHalf = half/2.0;
 
@@ -157,21 +381,22 @@ public class Operation implements Ilayout, Cloneable {
 
         if(target > 0) {
         	// Calculos para a situação em que o alvo é positivo
-            p = Math.abs(target - current);
-            p2 = (int) Math.abs(Math.floor(half) - current) + 3;
-            p3 = (int) Math.abs(((current - Math.floor(dupleHalf)) * 2) + 6);
+            p = Math.abs(alvo - atual);
+            p2 = (long) Math.abs(Math.floor(half) - atual) + 3;
+            p3 = (long) Math.abs(((atual - Math.floor(dupleHalf)) * 2) + 6);
         }
         else{
         	// Calculos para a situação em que o alvo é negativo
-            current = Math.abs(current);
-            target = Math.abs(target);
-            p = Math.abs(target - current)*2;
-            p2 = (int) Math.abs(Math.abs(Math.floor(half)) - current)*2 + 3;
-            p3 = (int) Math.abs((current - Math.abs(Math.ceil(dupleHalf)))) + 6;   
+            atual = Math.abs(atual);
+            alvo = Math.abs(alvo);
+            p = Math.abs(alvo - atual)*2;
+            p2 = (long) Math.abs(Math.abs(Math.floor(half)) - atual)*2 + 3;
+            p3 = (long) Math.abs((atual - Math.abs(Math.ceil(dupleHalf)))) + 6;   
         }  
 
-        // Retorna do valor mínimo entre p, p2 e p3 como custo estimado do estado atual ate ao estado objetivo
-        return Math.min(p,Math.min(p2,p3));
+        // Retorna do valor mínimo entre p, p2 e p3 como custo estimado do estado atual ate ao estado objetivo,
+        // limitado para que g + h continue a caber num int
+        return (int) Math.min(Math.min(p,Math.min(p2,p3)), MAX_HEURISTIC);
     }
 
 }
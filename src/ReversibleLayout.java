@@ -0,0 +1,44 @@
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A interface ReversibleLayout é implementada pelos layouts cujos movimentos podem ser invertidos, isto é, que sabem
+ * calcular os seus predecessores. É exigida pelas pesquisas que avançam a partir do objetivo, como a pesquisa
+ * bidirecional, e pelas que não guardam os estados fechados, como a pesquisa de fronteira.
+ */
+public interface ReversibleLayout extends Ilayout {
+
+	/**
+	 * Retorna os predecessores do layout atual, isto é, os layouts que têm o layout atual como filho.
+	 * O custo (g) de cada predecessor é o custo do movimento original, do predecessor para o layout atual.
+	 *
+	 * @return A lista de predecessores do layout
+	 */
+	List<ReversibleLayout> parents();
+
+
+	/**
+	 * Envia os predecessores do layout atual para o sink, identificando cada um pelo movimento que, aplicado ao
+	 * predecessor, gera o layout atual. O custo é o desse movimento e h é a heurística do predecessor para o objetivo.
+	 * Por omissão, os predecessores são obtidos com {@link #parents()} e os movimentos procurados entre os seus filhos.
+	 *
+	 * @param goal O layout objetivo, usado para calcular a heurística de cada predecessor
+	 * @param sink O destino dos predecessores
+	 */
+	default void forEachParent(Ilayout goal, ChildSink sink) {
+		long chave = stateKey();
+		Set<Long> vistos = new HashSet<>();
+		for (Ilayout p : parents()) {
+			long chavePai = p.stateKey();
+			if (vistos.add(chavePai)) {
+				double h = p.getH(p, goal);
+				p.forEachChild(goal, (move, key, cost, hFilho) -> {
+					if (key == chave) {
+						sink.accept(move, chavePai, cost, h);
+					}
+				});
+			}
+		}
+	}
+}
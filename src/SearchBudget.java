@@ -0,0 +1,82 @@
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * A classe SearchBudget representa os limites de uma pesquisa: o tempo máximo e o número máximo de estados expandidos.
+ * Quando um dos limites é atingido a pesquisa pára e devolve um {@link SearchResult} com o estado
+ * {@link SearchResult.Status#BUDGET_EXHAUSTED}. As instâncias são imutáveis.
+ * Os orçamentos são aceites pelo {@link SearchEngine} (e por isso pelo BestFirst, BestFirstA e BestFirstIDA), pelo
+ * {@link BestFirstAInt}, pelo {@link BestFirstHDA} e pelo {@link BatchSolver}; o BestFirstARA só aceita um prazo.
+ * Ficam fora deste contrato o BestFirstBi, o BestFirstSMA, o BestFirstFrontier, o BestFirstMulti, o
+ * BestFirstExternal e o BestFirstAOffHeap: não aceitam orçamento nem podem ser cancelados.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public final class SearchBudget {
+    /** Orçamento sem limites: a pesquisa só termina com uma solução, sem solução ou se for cancelada. */
+    public static final SearchBudget UNLIMITED = new SearchBudget(null, Long.MAX_VALUE);
+
+    private final Duration tempo;
+    private final long expansoes;
+
+    /**
+     * Construtor para a classe SearchBudget.
+     *
+     * @param tempo O tempo máximo da pesquisa; null para não ter limite de tempo
+     * @param expansoes O número máximo de estados expandidos (Long.MAX_VALUE para não ter limite)
+     */
+    public SearchBudget(Duration tempo, long expansoes) {
+        if (tempo != null && tempo.isNegative()) {
+            throw new IllegalArgumentException("O tempo máximo não pode ser negativo");
+        }
+        if (expansoes < 0) {
+            throw new IllegalArgumentException("O número máximo de expansões não pode ser negativo");
+        }
+        this.tempo = tempo;
+        this.expansoes = expansoes;
+    }
+
+    /**
+     * Cria um orçamento limitado apenas pelo tempo.
+     *
+     * @param tempo O tempo máximo da pesquisa
+     * @return O orçamento
+     */
+    public static SearchBudget ofTime(Duration tempo) {
+        return new SearchBudget(Objects.requireNonNull(tempo), Long.MAX_VALUE);
+    }
+
+    /**
+     * Cria um orçamento limitado apenas pelo número de estados expandidos.
+     *
+     * @param expansoes O número máximo de estados expandidos
+     * @return O orçamento
+     */
+    public static SearchBudget ofExpansions(long expansoes) {
+        return new SearchBudget(null, expansoes);
+    }
+
+    /**
+     * Retorna o tempo máximo da pesquisa.
+     *
+     * @return O tempo máximo, ou null se não houver limite de tempo
+     */
+    public Duration getTempo() {
+        return tempo;
+    }
+
+    /**
+     * Retorna o número máximo de estados expandidos.
+     *
+     * @return O número máximo de expansões (Long.MAX_VALUE se não houver limite)
+     */
+    public long getExpansoes() {
+        return expansoes;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchBudget[tempo=" + (tempo == null ? "-" : tempo) + ", expansoes="
+                + (expansoes == Long.MAX_VALUE ? "-" : String.valueOf(expansoes)) + "]";
+    }
+}
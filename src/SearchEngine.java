@@ -0,0 +1,742 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A classe SearchEngine é o núcleo comum dos algoritmos de pesquisa BestFirst, BestFirstA e BestFirstIDA.
+ * O ciclo principal (retirar o próximo estado, testar o objetivo, fechá-lo e gerar os sucessores) é o mesmo em todos;
+ * o que muda é configurado por quatro estratégias:
+ * <ul>
+ *     <li>{@link Evaluation}: a função de avaliação f de cada estado (por exemplo g, ou g + h);</li>
+ *     <li>{@link OpenList}: a estrutura dos estados abertos, que define a ordem de expansão;</li>
+ *     <li>{@link ClosedSet}: a estrutura dos estados fechados, que define que duplicados são rejeitados;</li>
+ *     <li>{@link BoundingPolicy}: o limite de f de cada iteração e se a pesquisa é repetida com um limite maior.</li>
+ * </ul>
+ * As estruturas de dados podem ser trocadas com {@link #setOpenList(OpenList)} e {@link #setClosedSet(ClosedSet)}
+ * sem alterar o algoritmo. Uma configuração pode indicar uma segunda lista de abertos, usada automaticamente quando o
+ * layout declara custos inteiros ({@link Ilayout#hasIntegralCosts()}), como a {@link BucketOpenList}.
+ * Se o layout conhecer um limite superior do custo da solução ({@link Ilayout#upperBound(Ilayout)}), os sucessores
+ * cujo g mais o limite inferior do custo até ao objetivo ({@link Ilayout#lowerBound(long, Ilayout)}) o ultrapassa são
+ * descartados; o limite superior desce sempre que o objetivo é gerado com um custo menor. Se além disso o intervalo de
+ * chaves desses estados for pequeno ({@link Ilayout#keyRange(Ilayout, double)}), a {@link HashClosedSet} é
+ * substituída por uma {@link DenseClosedSet}.
+ * Uma pesquisa pode ser limitada por um {@link SearchBudget} e executada noutra thread com
+ * {@link #solveAsync(Ilayout, Ilayout, SearchBudget, Executor)}, que pode ser cancelada.
+ * Uma instância não deve ser partilhada entre threads nem executar duas pesquisas ao mesmo tempo.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class SearchEngine {
+    private final String nome;
+    private final Evaluation avaliacao;
+    private final BoundingPolicy limites;
+    private OpenList abertos;
+    private OpenList abertosInteiros;
+    private OpenList emUso;
+    private ClosedSet fechados;
+    private boolean fechadosAutomaticos = true;
+    private final DenseClosedSet fechadosDensos = new DenseClosedSet();
+    private ClosedSet fechadosEmUso;
+    private SearchListener listener = SearchListener.NONE;
+    private Ilayout objective;
+    private long chaveObjetivo;
+    private Ilayout dominio;
+    private double limiteSuperior;
+    private boolean caminhosCompactos;
+    private final MoveTrail trilho = new MoveTrail();
+
+    // Estado a ser expandido e contadores da expansão atual, usados pelo gerador de sucessores
+    private State expandindo;
+    private int gerados;
+    private int duplicados;
+    private final Ilayout.ChildSink gerador = this::gerar;
+
+    // Orçamento da pesquisa atual: o relógio e os pedidos de cancelamento só são consultados de tantas em tantas expansões
+    private static final int EXPANSOES_ENTRE_RELOGIO = 64;
+    private long expansoes;
+    private long maxExpansoes;
+    private long inicio;
+    private long maxTempo;
+    private BooleanSupplier cancelado;
+    private SearchResult.Status paragem;
+    private double limiteInferior;
+
+    /**
+     * A classe State representa um estado dentro do algoritmo de pesquisa.
+     * Ela mantém informações sobre o layout do estado, o estado pai, o valor de g (custo acumulado desde o estado inicial)
+     * e o valor de f dado pela função de avaliação, calculado uma única vez, na criação do estado, tal como a chave
+     * do layout ({@link Ilayout#stateKey()}), que identifica o estado nos abertos e nos fechados.
+     * O layout de um sucessor só é criado quando é necessário (ao expandi-lo ou ao mostrar o caminho), a partir do
+     * layout do pai e do movimento que o gerou, pelo que os estados gerados e nunca expandidos não criam layouts.
+     */
+    static class State {
+        private Ilayout layout;
+        private final State father;
+        private final int move;
+        private final double g;
+        private final double f;
+        private final long chave;
+
+        /**
+         * Construtor para a classe State, com o layout já criado.
+         *
+         * @param l O layout do estado
+         * @param n O estado pai
+         * @param g O custo acumulado desde o estado inicial
+         * @param f O valor da função de avaliação
+         */
+        State(Ilayout l, State n, double g, double f) {
+            layout = l;
+            father = n;
+            move = -1;
+            this.g = g;
+            this.f = f;
+            chave = l.stateKey();
+        }
+
+        /**
+         * Construtor para a classe State, para um sucessor cujo layout é criado mais tarde.
+         *
+         * @param n O estado pai
+         * @param move O movimento que gera o estado a partir do pai
+         * @param chave A chave do layout do estado
+         * @param g O custo acumulado desde o estado inicial
+         * @param f O valor da função de avaliação
+         */
+        State(State n, int move, long chave, double g, double f) {
+            father = n;
+            this.move = move;
+            this.chave = chave;
+            this.g = g;
+            this.f = f;
+        }
+
+        /**
+         * Converte o estado em uma representação de string.
+         *
+         * @return A representação em string do estado
+         */
+        public String toString() { return getLayout().toString(); }
+
+        /**
+         * Obtém o valor de g para o estado.
+         *
+         * @return O valor de g para o estado
+         */
+        public double getG() {return g;}
+
+        /**
+         * Obtém o valor da função de avaliação f para o estado.
+         *
+         * @return O valor de f para o estado
+         */
+        public double getF() {return f;}
+
+        /**
+         * Obtém o layout do estado.
+         *
+         * @return O layout do estado
+         */
+        public Ilayout getLayout() {
+            if (layout == null) {
+                layout = criarLayout();
+            }
+            return layout;
+        }
+
+        /**
+         * Cria o layout do estado a partir do layout do pai e do movimento que o gerou.
+         *
+         * @return O layout do estado
+         */
+        Ilayout criarLayout() {
+            return father.getLayout().apply(move);
+        }
+
+        /**
+         * Verifica se uma chave é a do layout do pai do estado.
+         *
+         * @param c A chave a verificar
+         * @return true se o estado tem pai e c é a chave do pai
+         */
+        boolean isParentKey(long c) {
+            return father != null && c == father.chave;
+        }
+
+        /**
+         * Obtém o estado pai.
+         *
+         * @return O estado pai, ou null no estado inicial
+         */
+        public State getFather() {return father;}
+
+        /**
+         * Obtém a chave do layout do estado.
+         *
+         * @return A chave do estado
+         */
+        public long getKey() {return chave;}
+
+        /**
+         * Gera o código hash para o estado, a partir da chave do layout.
+         *
+         * @return O código hash gerado para o estado
+         */
+        public int hashCode() {
+            return Long.hashCode(chave);
+        }
+
+        /**
+         * Verifica se o objeto passado é igual a este estado.
+         *
+         * @param o O objeto a ser comparado com este estado
+         * @return true se os objetos são iguais, false caso contrário
+         */
+        public boolean equals (Object o) {
+            if (o==null) return false;
+            if (this.getClass() != o.getClass()) return false;
+            State n = (State) o;
+            return this.chave == n.chave;
+        }
+    }
+
+    /**
+     * A classe CompactState é o estado usado com os caminhos compactos ({@link #setCompactPaths(boolean)}): em vez do
+     * estado pai, guarda o índice do seu nó no {@link MoveTrail} da pesquisa, a chave do pai e, até o layout ser criado,
+     * o layout do pai. Assim um estado fechado não mantém vivos os estados do caminho até ele.
+     */
+    private static final class CompactState extends State {
+        private Ilayout layoutPai;
+        private final long chavePai;
+        private final int no;
+
+        CompactState(Ilayout l, int no, double g, double f) {
+            super(l, null, g, f);
+            chavePai = l.stateKey();
+            this.no = no;
+        }
+
+        CompactState(Ilayout layoutPai, long chavePai, int no, int move, long chave, double g, double f) {
+            super(null, move, chave, g, f);
+            this.layoutPai = layoutPai;
+            this.chavePai = chavePai;
+            this.no = no;
+        }
+
+        @Override
+        Ilayout criarLayout() {
+            Ilayout l = layoutPai.apply(super.move);
+            layoutPai = null;
+            return l;
+        }
+
+        @Override
+        boolean isParentKey(long c) {
+            return no != 0 && c == chavePai;
+        }
+    }
+
+    /**
+     * A interface Evaluation define a função de avaliação f, que ordena os estados abertos.
+     */
+    public interface Evaluation {
+        /** Pesquisa de custo uniforme: f = g. */
+        Evaluation UNIFORM_COST = (g, h) -> g;
+        /** A*: f = g + h. */
+        Evaluation A_STAR = (g, h) -> g + h;
+
+        /**
+         * Calcula o valor de f de um estado.
+         *
+         * @param g O custo acumulado desde o estado inicial
+         * @param h O valor da heurística do estado para o objetivo
+         * @return O valor de f
+         */
+        double evaluate(double g, double h);
+    }
+
+    /**
+     * A interface OpenList define a estrutura dos estados abertos. A ordem em que poll devolve os estados define a
+     * estratégia de pesquisa (melhor primeiro, profundidade primeiro, ...).
+     */
+    public interface OpenList {
+        /**
+         * Remove todos os estados, no início de cada iteração.
+         */
+        void clear();
+
+        /**
+         * Adiciona um estado aos abertos.
+         *
+         * @param e O estado a adicionar
+         * @return false se o estado foi rejeitado por já existir um estado com o mesmo layout e f igual ou menor
+         */
+        boolean offer(State e);
+
+        /**
+         * Remove e retorna o próximo estado a expandir.
+         *
+         * @return O próximo estado, ou null se não houver estados abertos
+         */
+        State poll();
+
+        /**
+         * Verifica se não há estados abertos.
+         *
+         * @return true se não houver estados abertos
+         */
+        boolean isEmpty();
+
+        /**
+         * Retorna o número de estados abertos.
+         *
+         * @return O número de estados abertos
+         */
+        int size();
+
+        /**
+         * Retorna o menor f entre os estados abertos no último poll (incluindo o estado retirado), nas estruturas que
+         * não devolvem os estados por ordem de f. Com uma heurística admissível é um limite inferior do custo da solução.
+         *
+         * @return O menor f no último poll, ou NaN se os estados são devolvidos por ordem de f
+         */
+        default double minF() {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * A interface ClosedSet define a estrutura dos estados fechados, que decide que estados duplicados são rejeitados.
+     */
+    public interface ClosedSet {
+        /**
+         * Remove todos os estados, no início de cada iteração.
+         */
+        void clear();
+
+        /**
+         * Fecha um estado antes de ele ser expandido. As estruturas que reabrem estados só rejeitam um layout já
+         * fechado com um custo igual ou menor; as que não reabrem rejeitam qualquer layout já fechado.
+         *
+         * @param e O estado a fechar
+         * @return false se o estado não deve ser expandido por o seu layout já ter sido fechado (com um custo igual ou
+         *         menor, nas estruturas que reabrem estados)
+         */
+        boolean close(State e);
+
+        /**
+         * Verifica se um sucessor pode ser descartado por o seu layout já estar fechado, com a mesma regra de
+         * {@link #close(State)}. É chamado antes de o estado do sucessor ser criado.
+         *
+         * @param chave A chave do layout do sucessor
+         * @param g O custo do sucessor desde o estado inicial
+         * @return true se o sucessor deve ser descartado
+         */
+        boolean isClosed(long chave, double g);
+    }
+
+    /**
+     * A interface BoundingPolicy define o limite de f de cada iteração. Os estados com f acima do limite são cortados e
+     * o menor f cortado pode ser usado como limite da iteração seguinte.
+     */
+    public interface BoundingPolicy {
+        /** Uma única iteração, sem limite, que termina no primeiro objetivo retirado dos abertos. */
+        BoundingPolicy UNBOUNDED = new BoundingPolicy() {
+            @Override
+            public double initialBound(State raiz) {return Double.POSITIVE_INFINITY;}
+
+            @Override
+            public double nextBound(double limite, double minimoCortado) {return Double.POSITIVE_INFINITY;}
+
+            @Override
+            public boolean stopAtFirstGoal() {return true;}
+        };
+
+        /**
+         * Aprofundamento iterativo (IDA*): o primeiro limite é o f do estado inicial e cada iteração seguinte usa o
+         * menor f cortado. Cada iteração é terminada em modo branch-and-bound, para devolver a solução mais barata
+         * dentro do limite mesmo que a heurística sobrestime o custo.
+         */
+        BoundingPolicy ITERATIVE_DEEPENING = new BoundingPolicy() {
+            @Override
+            public double initialBound(State raiz) {return raiz.f;}
+
+            @Override
+            public double nextBound(double limite, double minimoCortado) {return minimoCortado;}
+
+            @Override
+            public boolean stopAtFirstGoal() {return false;}
+        };
+
+        /**
+         * Retorna o limite de f da primeira iteração.
+         *
+         * @param raiz O estado inicial
+         * @return O primeiro limite
+         */
+        double initialBound(State raiz);
+
+        /**
+         * Retorna o limite da iteração seguinte, depois de uma iteração sem solução.
+         *
+         * @param limite O limite da iteração que terminou
+         * @param minimoCortado O menor f entre os estados cortados (infinito se nenhum foi cortado)
+         * @return O próximo limite; infinito (ou um valor não maior que o limite atual) termina a pesquisa
+         */
+        double nextBound(double limite, double minimoCortado);
+
+        /**
+         * Indica se a iteração termina no primeiro objetivo retirado dos abertos ou se continua, cortando os estados
+         * com g igual ou maior ao da melhor solução encontrada.
+         *
+         * @return true se a pesquisa termina no primeiro objetivo
+         */
+        boolean stopAtFirstGoal();
+    }
+
+    /**
+     * Construtor para a classe SearchEngine.
+     *
+     * @param nome O nome do algoritmo, reportado ao listener
+     * @param avaliacao A função de avaliação
+     * @param abertos A estrutura dos estados abertos
+     * @param fechados A estrutura dos estados fechados
+     * @param limites A política de limites
+     */
+    public SearchEngine(String nome, Evaluation avaliacao, OpenList abertos, ClosedSet fechados, BoundingPolicy limites) {
+        this(nome, avaliacao, abertos, null, fechados, limites);
+    }
+
+    /**
+     * Construtor para a classe SearchEngine, com uma lista de abertos alternativa para layouts com custos inteiros.
+     *
+     * @param nome O nome do algoritmo, reportado ao listener
+     * @param avaliacao A função de avaliação
+     * @param abertos A estrutura dos estados abertos
+     * @param abertosInteiros A estrutura dos estados abertos usada quando o layout inicial e o objetivo declaram custos
+     *                        inteiros; null para usar sempre a primeira
+     * @param fechados A estrutura dos estados fechados
+     * @param limites A política de limites
+     */
+    public SearchEngine(String nome, Evaluation avaliacao, OpenList abertos, OpenList abertosInteiros, ClosedSet fechados,
+                        BoundingPolicy limites) {
+        this.nome = Objects.requireNonNull(nome);
+        this.avaliacao = Objects.requireNonNull(avaliacao);
+        this.abertos = Objects.requireNonNull(abertos);
+        this.abertosInteiros = abertosInteiros;
+        this.fechados = Objects.requireNonNull(fechados);
+        this.limites = Objects.requireNonNull(limites);
+    }
+
+    /**
+     * Define a estrutura dos estados abertos usada nas próximas pesquisas, em todos os layouts (a escolha automática
+     * da lista para custos inteiros deixa de ser feita).
+     *
+     * @param abertos A estrutura dos estados abertos
+     */
+    public void setOpenList(OpenList abertos) {
+        this.abertos = Objects.requireNonNull(abertos);
+        this.abertosInteiros = null;
+    }
+
+    /**
+     * Define a estrutura dos estados fechados usada nas próximas pesquisas, em todos os layouts (a troca automática
+     * pela {@link DenseClosedSet} deixa de ser feita).
+     *
+     * @param fechados A estrutura dos estados fechados
+     */
+    public void setClosedSet(ClosedSet fechados) {
+        this.fechados = Objects.requireNonNull(fechados);
+        this.fechadosAutomaticos = false;
+    }
+
+    /**
+     * Define se as próximas pesquisas guardam os caminhos de forma compacta. Com caminhos compactos, cada estado gerado
+     * ocupa mais um int num {@link MoveTrail} (o índice do pai e o movimento) e deixa de referir o estado pai, pelo que
+     * os estados já expandidos podem ser recolhidos pelo GC quando a estrutura de fechados não os guarda; o caminho é
+     * reconstruído repetindo os movimentos a partir do layout inicial. Só serve para layouts com no máximo
+     * {@code 1 << MoveTrail.BITS_MOVIMENTO} movimentos. Não pode ser usado com a {@link DepthFirstOpenList} (como no
+     * BestFirstIDA): o trilho guarda todos os estados gerados, enquanto a pesquisa em profundidade só guarda o caminho
+     * atual, pelo que a memória deixaria de ser proporcional à profundidade.
+     *
+     * @param compactos true para guardar os caminhos de forma compacta
+     */
+    public void setCompactPaths(boolean compactos) {
+        this.caminhosCompactos = compactos;
+    }
+
+    /**
+     * Define o listener que recebe os eventos das próximas pesquisas (por omissão, {@link SearchListener#NONE}).
+     *
+     * @param listener O listener a usar
+     */
+    public void setListener(SearchListener listener) {
+        this.listener = Objects.requireNonNull(listener);
+    }
+
+    /**
+     * Recebe um filho do estado a ser expandido: descarta o pai do estado, os layouts já fechados e os que não podem
+     * estar num caminho melhor que o limite superior antes de criar qualquer objeto, e adiciona os restantes aos abertos.
+     */
+    private void gerar(int move, long chave, double custo, double h) {
+        State pai = expandindo;
+        if (pai.isParentKey(chave)) {
+            return;
+        }
+        gerados++;
+        double g = pai.g + custo;
+        if (fechadosEmUso.isClosed(chave, g)) {
+            duplicados++;
+            return;
+        }
+        if (chave == chaveObjetivo) {
+            limiteSuperior = Math.min(limiteSuperior, g);
+        } else if (limiteSuperior != Double.POSITIVE_INFINITY && g + dominio.lowerBound(chave, objective) > limiteSuperior) {
+            return;
+        }
+        double f = avaliacao.evaluate(g, h);
+        State filho;
+        if (caminhosCompactos) {
+            filho = new CompactState(pai.getLayout(), pai.chave, trilho.add(((CompactState) pai).no, move), move, chave, g, f);
+        } else {
+            filho = new State(pai, move, chave, g, f);
+        }
+        if (!emUso.offer(filho)) {
+            duplicados++;
+            if (caminhosCompactos) {
+                trilho.removeLast();
+            }
+        }
+    }
+
+    /**
+     * Resolve o problema para encontrar o caminho entre o layout inicial e o layout objetivo.
+     * Cada iteração expande os estados pela ordem da estrutura de abertos, cortando os que ultrapassam o limite de f;
+     * se não for encontrada uma solução, a política de limites decide se há uma nova iteração com um limite maior.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return Um iterador que contém o caminho entre o layout inicial e o layout objetivo; retorna null se não houver solução
+     */
+    final public Iterator<State> solve(Ilayout s, Ilayout goal) {
+        SearchResult resultado = solve(s, goal, SearchBudget.UNLIMITED);
+        return resultado.isSolved() ? resultado.getPath().iterator() : null;
+    }
+
+    /**
+     * Resolve o problema dentro de um orçamento de tempo e de estados expandidos. A pesquisa também pára se a thread
+     * for interrompida (o estado de interrupção é mantido).
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param orcamento Os limites da pesquisa
+     * @return O resultado da pesquisa: a solução, a prova de que não há solução ou o limite inferior atingido
+     */
+    public SearchResult solve(Ilayout s, Ilayout goal, SearchBudget orcamento) {
+        return solve(s, goal, orcamento, () -> false);
+    }
+
+    /**
+     * Resolve o problema noutra thread, dentro de um orçamento de tempo e de estados expandidos.
+     * Cancelar o futuro (ou completá-lo por fora) faz a pesquisa parar na próxima verificação, sem interromper a thread
+     * do executor. Enquanto a pesquisa não terminar, esta instância não deve ser usada noutra pesquisa.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param orcamento Os limites da pesquisa
+     * @param executor O executor onde a pesquisa é feita
+     * @return O futuro com o resultado da pesquisa
+     */
+    public CompletableFuture<SearchResult> solveAsync(Ilayout s, Ilayout goal, SearchBudget orcamento, Executor executor) {
+        Objects.requireNonNull(orcamento);
+        CompletableFuture<SearchResult> futuro = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (futuro.isDone()) {
+                return;
+            }
+            try {
+                futuro.complete(solve(s, goal, orcamento, futuro::isDone));
+            } catch (Throwable t) {
+                futuro.completeExceptionally(t);
+            }
+        });
+        return futuro;
+    }
+
+    private SearchResult solve(Ilayout s, Ilayout goal, SearchBudget orcamento, BooleanSupplier cancelado) {
+        objective = goal;
+        chaveObjetivo = goal.stateKey();
+        emUso = abertosInteiros != null && s.hasIntegralCosts() && goal.hasIntegralCosts() ? abertosInteiros : abertos;
+        if (caminhosCompactos && emUso instanceof DepthFirstOpenList) {
+            throw new IllegalStateException("Os caminhos compactos não podem ser usados numa pesquisa em profundidade");
+        }
+        dominio = s;
+        limiteSuperior = s.upperBound(goal);
+        fechadosEmUso = fechados;
+        // A tabela de bits não guarda custos, pelo que só substitui os fechados que não reabrem estados
+        if (fechadosAutomaticos && fechados instanceof HashClosedSet && !((HashClosedSet) fechados).reopens()
+                && limiteSuperior != Double.POSITIVE_INFINITY) {
+            long[] intervalo = s.keyRange(goal, limiteSuperior);
+            if (intervalo != null && intervalo[1] - intervalo[0] < DenseClosedSet.MAX_CHAVES) {
+                fechadosDensos.setRange(intervalo[0], intervalo[1]);
+                fechadosEmUso = fechadosDensos;
+            }
+        }
+        expansoes = 0;
+        maxExpansoes = orcamento.getExpansoes();
+        inicio = System.nanoTime();
+        maxTempo = orcamento.getTempo() == null ? -1 : orcamento.getTempo().toNanos();
+        this.cancelado = cancelado;
+        paragem = null;
+        listener.solveStarted(nome, s, goal);
+        double fRaiz = avaliacao.evaluate(0.0, s.getH(s, goal));
+        State raiz = caminhosCompactos ? new CompactState(s, 0, 0.0, fRaiz) : new State(s, null, 0.0, fRaiz);
+        double limite = limites.initialBound(raiz);
+        limiteInferior = 0.0;
+        int iteracao = 0;
+        while (true) {
+            iteracao++;
+            listener.iterationStarted(iteracao, limite);
+            if (limite != Double.POSITIVE_INFINITY) {
+                // A iteração anterior provou que não há solução com f abaixo do limite desta
+                limiteInferior = Math.max(limiteInferior, limite);
+            }
+            double[] minimoCortado = {Double.POSITIVE_INFINITY};
+            State encontrado = procurar(raiz, limite, minimoCortado);
+            listener.iterationFinished(iteracao, minimoCortado[0]);
+            if (encontrado != null) {
+                List<State> caminho = reconstruirCaminho(encontrado);
+                double minimo = emUso.minF();
+                double inferior;
+                if (paragem != null) {
+                    // O orçamento acabou com uma solução já encontrada: só o limite já provado é garantido
+                    inferior = Math.min(encontrado.g, limiteInferior);
+                } else {
+                    inferior = Double.isNaN(minimo) ? encontrado.g : Math.min(encontrado.g, Math.max(limiteInferior, minimo));
+                }
+                return new SearchResult(SearchResult.Status.SOLVED, caminho, inferior, expansoes);
+            }
+            if (paragem != null) {
+                listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+                return new SearchResult(paragem, null, limiteInferior, expansoes);
+            }
+            double proximo = limites.nextBound(limite, minimoCortado[0]);
+            if (proximo == Double.POSITIVE_INFINITY || !(proximo > limite)) {
+                // Nenhum estado foi cortado pelo limite: o espaço de estados foi esgotado sem solução
+                listener.solveFinished(false, Double.POSITIVE_INFINITY, -1);
+                return new SearchResult(SearchResult.Status.UNSOLVABLE, null, Double.POSITIVE_INFINITY, expansoes);
+            }
+            limite = proximo;
+        }
+    }
+
+    /**
+     * Verifica se a pesquisa tem de parar antes da próxima expansão, registando o motivo.
+     */
+    private boolean esgotado() {
+        if (expansoes >= maxExpansoes) {
+            paragem = SearchResult.Status.BUDGET_EXHAUSTED;
+        } else if (expansoes % EXPANSOES_ENTRE_RELOGIO == 0) {
+            if (cancelado.getAsBoolean() || Thread.currentThread().isInterrupted()) {
+                paragem = SearchResult.Status.CANCELLED;
+            } else if (maxTempo >= 0 && System.nanoTime() - inicio >= maxTempo) {
+                paragem = SearchResult.Status.BUDGET_EXHAUSTED;
+            }
+        }
+        return paragem != null;
+    }
+
+    /**
+     * Faz uma iteração da pesquisa limitada por f.
+     *
+     * @param raiz O estado inicial
+     * @param limite O limite de f desta iteração
+     * @param minimoCortado Recebe o menor f entre os estados cortados
+     * @return O estado objetivo encontrado (o de menor g, se a iteração não termina no primeiro); null se não houver nenhum.
+     *         Se o orçamento acabar, retorna o melhor objetivo encontrado até então, ou null
+     */
+    private State procurar(State raiz, double limite, double[] minimoCortado) {
+        emUso.clear();
+        fechadosEmUso.clear();
+        if (raiz instanceof CompactState) {
+            trilho.clear();
+            trilho.add(-1, 0);
+        }
+        emUso.offer(raiz);
+        State melhor = null;
+        while (!emUso.isEmpty()) {
+            State atual = emUso.poll();
+            if (atual.f > limite) {
+                minimoCortado[0] = Math.min(minimoCortado[0], atual.f);
+                continue;
+            }
+            if (melhor != null && atual.g >= melhor.g) {
+                continue;
+            }
+            if (!fechadosEmUso.close(atual)) {
+                listener.duplicatesRejected(1);
+                continue;
+            }
+            // Dois layouts são iguais se e só se têm a mesma chave
+            if (atual.chave == chaveObjetivo) {
+                if (limites.stopAtFirstGoal()) {
+                    return atual;
+                }
+                melhor = atual;
+                continue;
+            }
+            if (esgotado()) {
+                return melhor;
+            }
+            double minimo = emUso.minF();
+            limiteInferior = Math.max(limiteInferior, Double.isNaN(minimo) ? atual.f : minimo);
+            expansoes++;
+            listener.nodesExpanded(1, emUso.size());
+            expandindo = atual;
+            gerados = 0;
+            duplicados = 0;
+            atual.getLayout().forEachChild(objective, gerador);
+            listener.nodesGenerated(gerados);
+            listener.duplicatesRejected(duplicados);
+        }
+        return melhor;
+    }
+
+    /**
+     * Reconstrói o caminho a partir do estado objetivo até o estado inicial, num array com o tamanho do caminho.
+     * Os layouts são criados do estado inicial para o objetivo, cada um a partir do anterior.
+     *
+     * @param goalState O estado objetivo a partir do qual o caminho será reconstruído
+     * @return O caminho reconstruído
+     */
+    private List<State> reconstruirCaminho(State goalState) {
+        State[] result;
+        if (goalState instanceof CompactState) {
+            Ilayout[] layouts = trilho.replay(dominio, ((CompactState) goalState).no);
+            result = new State[layouts.length];
+            State anterior = null;
+            double g = 0.0;
+            for (int i = 0; i < layouts.length; i++) {
+                Ilayout l = layouts[i];
+                g = i == 0 ? 0.0 : g + l.getG();
+                anterior = new State(l, anterior, g, avaliacao.evaluate(g, l.getH(l, objective)));
+                result[i] = anterior;
+            }
+        } else {
+            int comprimento = 0;
+            for (State e = goalState; e != null; e = e.father) {
+                comprimento++;
+            }
+            result = new State[comprimento];
+            for (State e = goalState; e != null; e = e.father) {
+                result[--comprimento] = e;
+            }
+            for (State e : result) {
+                e.getLayout();
+            }
+        }
+        listener.solveFinished(true, goalState.getG(), result.length - 1);
+        return Arrays.asList(result);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * A interface SearchListener define os eventos que os algoritmos de pesquisa reportam durante uma chamada a solve:
+ * início e fim da pesquisa, estados expandidos e gerados, duplicados rejeitados e, no IDA*, cada iteração.
+ * Todos os métodos têm uma implementação vazia, pelo que basta implementar os eventos de interesse. Os algoritmos
+ * usam {@link #NONE} por omissão, cujo custo é desprezável.
+ * Os algoritmos com várias threads chamam o listener apenas a partir da thread que invocou solve, reportando os totais.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public interface SearchListener {
+
+    /** Listener que ignora todos os eventos. */
+    SearchListener NONE = new SearchListener() {};
+
+    /**
+     * Chamado no início de uma pesquisa.
+     *
+     * @param engine O nome do algoritmo
+     * @param start O layout inicial
+     * @param goal O layout objetivo
+     */
+    default void solveStarted(String engine, Ilayout start, Ilayout goal) {}
+
+    /**
+     * Chamado quando são expandidos estados.
+     *
+     * @param count O número de estados expandidos
+     * @param openSize O número de estados abertos nesse momento
+     */
+    default void nodesExpanded(long count, int openSize) {}
+
+    /**
+     * Chamado quando são gerados sucessores.
+     *
+     * @param count O número de sucessores gerados
+     */
+    default void nodesGenerated(long count) {}
+
+    /**
+     * Chamado quando são rejeitados sucessores que já tinham sido alcançados com um custo igual ou menor.
+     *
+     * @param count O número de duplicados rejeitados
+     */
+    default void duplicatesRejected(long count) {}
+
+    /**
+     * Chamado no início de cada iteração de um algoritmo iterativo (IDA*).
+     *
+     * @param iteration O número da iteração, a começar em 1
+     * @param threshold O limite de f desta iteração
+     */
+    default void iterationStarted(int iteration, double threshold) {}
+
+    /**
+     * Chamado no fim de cada iteração de um algoritmo iterativo (IDA*).
+     *
+     * @param iteration O número da iteração
+     * @param nextThreshold O limite da próxima iteração (infinito se não houver mais estados)
+     */
+    default void iterationFinished(int iteration, double nextThreshold) {}
+
+    /**
+     * Chamado no fim de uma pesquisa.
+     *
+     * @param solved true se foi encontrada uma solução
+     * @param cost O custo da solução (infinito se não houver solução)
+     * @param depth O número de movimentos da solução (-1 se não houver solução)
+     */
+    default void solveFinished(boolean solved, double cost, int depth) {}
+}
@@ -0,0 +1,112 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A classe SearchResult representa o resultado de uma pesquisa com orçamento ({@link SearchBudget}): se foi encontrada
+ * uma solução, se foi provado que não há solução, ou se a pesquisa parou antes de o saber. Neste último caso o resultado
+ * indica o limite inferior do custo da solução atingido até então (o maior f já expandido, ou o limite da iteração atual
+ * no IDA*), que só é um limite verdadeiro se a heurística não sobrestimar o custo.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public final class SearchResult {
+    /**
+     * Os estados possíveis de uma pesquisa terminada.
+     */
+    public enum Status {
+        /** Foi encontrada uma solução. */
+        SOLVED,
+        /** O espaço de estados foi esgotado sem encontrar o objetivo. */
+        UNSOLVABLE,
+        /** O tempo ou o número de expansões do orçamento acabou. */
+        BUDGET_EXHAUSTED,
+        /** A pesquisa foi cancelada ou a thread foi interrompida. */
+        CANCELLED
+    }
+
+    private final Status status;
+    private final List<SearchEngine.State> path;
+    private final double lowerBound;
+    private final long expanded;
+
+    SearchResult(Status status, List<SearchEngine.State> path, double lowerBound, long expanded) {
+        this.status = status;
+        this.path = path == null ? Collections.emptyList() : Collections.unmodifiableList(path);
+        this.lowerBound = lowerBound;
+        this.expanded = expanded;
+    }
+
+    /**
+     * Retorna o estado da pesquisa.
+     *
+     * @return O estado
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Verifica se foi encontrada uma solução.
+     *
+     * @return true se o estado é {@link Status#SOLVED}
+     */
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    /**
+     * Retorna o caminho entre o layout inicial e o layout objetivo.
+     *
+     * @return O caminho, ou uma lista vazia se não foi encontrada uma solução
+     */
+    public List<SearchEngine.State> getPath() {
+        return path;
+    }
+
+    /**
+     * Retorna o custo da solução.
+     *
+     * @return O custo do caminho, ou infinito se não foi encontrada uma solução
+     */
+    public double getCost() {
+        return path.isEmpty() ? Double.POSITIVE_INFINITY : path.get(path.size() - 1).getG();
+    }
+
+    /**
+     * Retorna o limite inferior do custo da solução atingido pela pesquisa.
+     *
+     * @return O limite inferior (o custo, se foi encontrada uma solução; infinito, se não há solução)
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Retorna o fator de sub-otimalidade garantido pela pesquisa: o custo da solução a dividir pelo limite inferior.
+     *
+     * @return O custo a dividir pelo limite inferior (1 para uma solução ótima), ou infinito se não foi encontrada
+     *         uma solução
+     */
+    public double getSuboptimality() {
+        double custo = getCost();
+        if (!isSolved() || custo == lowerBound) {
+            return isSolved() ? 1.0 : Double.POSITIVE_INFINITY;
+        }
+        return custo / lowerBound;
+    }
+
+    /**
+     * Retorna o número de estados expandidos pela pesquisa.
+     *
+     * @return O número de estados expandidos
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult[" + status + ", custo=" + getCost() + ", limiteInferior=" + lowerBound
+                + ", expandidos=" + expanded + "]";
+    }
+}
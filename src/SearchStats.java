@@ -0,0 +1,181 @@
+/**
+ * A classe SearchStats é um SearchListener que acumula as estatísticas de uma pesquisa: estados expandidos e gerados,
+ * duplicados rejeitados, tamanho máximo da lista de abertos, iterações do IDA*, tempo e custo da solução.
+ * A partir destes valores calcula o fator de ramificação efetivo da pesquisa. Não é thread-safe: cada pesquisa deve
+ * usar a sua instância.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class SearchStats implements SearchListener {
+    private String engine;
+    private long expanded;
+    private long generated;
+    private long duplicates;
+    private int peakOpen;
+    private int iterations;
+    private boolean solved;
+    private double cost = Double.POSITIVE_INFINITY;
+    private int depth = -1;
+    private long startNanos;
+    private long elapsedNanos;
+
+    @Override
+    public void solveStarted(String engine, Ilayout start, Ilayout goal) {
+        this.engine = engine;
+        expanded = 0;
+        generated = 0;
+        duplicates = 0;
+        peakOpen = 0;
+        iterations = 0;
+        solved = false;
+        cost = Double.POSITIVE_INFINITY;
+        depth = -1;
+        elapsedNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    public void nodesExpanded(long count, int openSize) {
+        expanded += count;
+        if (openSize > peakOpen) {
+            peakOpen = openSize;
+        }
+    }
+
+    @Override
+    public void nodesGenerated(long count) {
+        generated += count;
+    }
+
+    @Override
+    public void duplicatesRejected(long count) {
+        duplicates += count;
+    }
+
+    @Override
+    public void iterationStarted(int iteration, double threshold) {
+        iterations = iteration;
+    }
+
+    @Override
+    public void solveFinished(boolean solved, double cost, int depth) {
+        elapsedNanos = System.nanoTime() - startNanos;
+        this.solved = solved;
+        this.cost = cost;
+        this.depth = depth;
+    }
+
+    /**
+     * Obtém o nome do algoritmo da última pesquisa.
+     *
+     * @return O nome do algoritmo, ou null se ainda não houve nenhuma pesquisa
+     */
+    public String getEngine() {return engine;}
+
+    /**
+     * Obtém o número de estados expandidos.
+     *
+     * @return O número de estados expandidos
+     */
+    public long getExpanded() {return expanded;}
+
+    /**
+     * Obtém o número de sucessores gerados, incluindo os duplicados rejeitados.
+     *
+     * @return O número de estados gerados
+     */
+    public long getGenerated() {return generated;}
+
+    /**
+     * Obtém o número de estados rejeitados por já terem sido alcançados com um custo igual ou menor.
+     *
+     * @return O número de duplicados rejeitados
+     */
+    public long getDuplicates() {return duplicates;}
+
+    /**
+     * Obtém o maior tamanho da lista de abertos reportado durante a pesquisa.
+     *
+     * @return O tamanho máximo da lista de abertos
+     */
+    public int getPeakOpen() {return peakOpen;}
+
+    /**
+     * Obtém o número de iterações da pesquisa (mais de uma só no aprofundamento iterativo).
+     *
+     * @return O número de iterações
+     */
+    public int getIterations() {return iterations;}
+
+    /**
+     * Verifica se a última pesquisa encontrou uma solução.
+     *
+     * @return true se foi encontrada uma solução, false caso contrário
+     */
+    public boolean isSolved() {return solved;}
+
+    /**
+     * Obtém o custo da solução encontrada.
+     *
+     * @return O custo da solução, ou infinito se não houver solução
+     */
+    public double getCost() {return cost;}
+
+    /**
+     * Obtém o número de movimentos da solução encontrada.
+     *
+     * @return A profundidade da solução, ou -1 se não houver solução
+     */
+    public int getDepth() {return depth;}
+
+    /**
+     * Obtém o tempo da última pesquisa, do início ao fim.
+     *
+     * @return O tempo da pesquisa em nanossegundos
+     */
+    public long getElapsedNanos() {return elapsedNanos;}
+
+    /**
+     * Calcula o fator de ramificação efetivo b*, isto é, o fator de ramificação que uma árvore uniforme com a
+     * profundidade da solução precisaria de ter para conter os estados gerados: N + 1 = 1 + b* + b*^2 + ... + b*^d.
+     *
+     * @return O fator de ramificação efetivo, ou NaN se não houver solução com pelo menos um movimento
+     */
+    public double getEffectiveBranchingFactor() {
+        if (!solved || depth < 1) {
+            return Double.NaN;
+        }
+        double n = generated;
+        double baixo = 1.0;
+        double alto = Math.max(1.0, n);
+        for (int i = 0; i < 100; i++) {
+            double meio = (baixo + alto) / 2;
+            if (nosArvore(meio, depth) < n) {
+                baixo = meio;
+            } else {
+                alto = meio;
+            }
+        }
+        return (baixo + alto) / 2;
+    }
+
+    /**
+     * Retorna o número de estados (sem a raiz) de uma árvore uniforme com fator de ramificação b e profundidade d.
+     */
+    private static double nosArvore(double b, int d) {
+        double total = 0;
+        double nivel = 1;
+        for (int i = 1; i <= d && total < Double.MAX_VALUE; i++) {
+            nivel *= b;
+            total += nivel;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return engine + ": expandidos=" + expanded + ", gerados=" + generated + ", duplicados=" + duplicates
+                + ", maxAbertos=" + peakOpen + ", iteracoes=" + iterations + ", custo=" + cost + ", profundidade=" + depth
+                + ", b*=" + String.format("%.3f", getEffectiveBranchingFactor()) + ", tempo=" + elapsedNanos / 1000000 + " ms";
+    }
+}
@@ -0,0 +1,631 @@
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A classe SolutionCache guarda os resultados de pesquisas já feitas, para que pedidos repetidos (o mesmo layout inicial e
+ * o mesmo objetivo) sejam respondidos sem nova pesquisa. Além das soluções, guarda para cada estado dos caminhos
+ * encontrados o custo até ao objetivo e o movimento seguinte no caminho, o que permite:
+ * <ul>
+ *     <li>responder a um pedido cujo layout inicial está no caminho de uma solução guardada para o mesmo objetivo,
+ *     refazendo o resto desse caminho com os movimentos guardados;</li>
+ *     <li>usar esses custos como valores exatos da heurística em pesquisas seguintes para o mesmo objetivo
+ *     ({@link #withCachedHeuristic(Ilayout)}).</li>
+ * </ul>
+ * Para que os custos sejam exatos, só são guardados os custos dos caminhos provados ótimos pela pesquisa (com
+ * {@link SearchResult#getSuboptimality()} igual a 1); os outros resultados são guardados apenas como soluções.
+ * As duas tabelas têm tamanho limitado e, quando estão cheias, é removida a entrada usada há mais tempo (LRU).
+ * Os custos dos estados são guardados em arrays primitivos, repartidos por faixas com bloqueios próprios, pelo que a
+ * consulta da heurística em cada sucessor não aloca memória nem bloqueia a cache inteira, e não mantêm os caminhos das
+ * soluções em memória: o número de estados guardados limita a memória ocupada. A LRU é mantida em cada faixa.
+ * Todos os métodos são thread-safe; as pesquisas em falta são feitas fora do bloqueio, pelo que dois pedidos iguais
+ * simultâneos podem fazer a mesma pesquisa.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class SolutionCache {
+    private static final int FAIXAS = 16;
+    private static final int SEM_MOVIMENTO = -1;
+
+    private final LinkedHashMap<Par, SearchResult> solucoes;
+    private final Faixa[] faixas;
+    private long hits;
+    private long subpathHits;
+    private long misses;
+    private final LongAdder heuristicHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A classe interna Par identifica o par de chaves de estado (inicial, objetivo) de uma solução guardada.
+     */
+    private static final class Par {
+        private final long primeira;
+        private final long segunda;
+
+        Par(long primeira, long segunda) {
+            this.primeira = primeira;
+            this.segunda = segunda;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(primeira * 31 + segunda);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Par)) return false;
+            Par p = (Par) o;
+            return primeira == p.primeira && segunda == p.segunda;
+        }
+    }
+
+    /**
+     * A classe interna Faixa guarda uma parte dos custos até ao objetivo: uma tabela de endereçamento aberto de pares de
+     * chaves (objetivo, estado) para o custo até ao objetivo e o movimento seguinte, em arrays primitivos, com uma lista
+     * LRU ligada pelas posições da tabela. As entradas removidas ficam marcadas até a tabela ser reconstruída.
+     */
+    private static final class Faixa {
+        private static final byte VAZIA = 0;
+        private static final byte OCUPADA = 1;
+        private static final byte REMOVIDA = 2;
+
+        private final int maximo;
+        private long[] objetivos;
+        private long[] estados;
+        private double[] custos;
+        private int[] movimentos;
+        private int[] anterior;
+        private int[] seguinte;
+        private byte[] ocupacao;
+        private int tamanho;
+        private int removidas;
+        private int maisAntiga = -1;
+        private int maisRecente = -1;
+
+        Faixa(int maximo) {
+            this.maximo = maximo;
+            alocar(16);
+        }
+
+        private void alocar(int capacidade) {
+            objetivos = new long[capacidade];
+            estados = new long[capacidade];
+            custos = new double[capacidade];
+            movimentos = new int[capacidade];
+            anterior = new int[capacidade];
+            seguinte = new int[capacidade];
+            ocupacao = new byte[capacidade];
+            tamanho = 0;
+            removidas = 0;
+            maisAntiga = -1;
+            maisRecente = -1;
+        }
+
+        private static int dispersao(long objetivo, long estado) {
+            long h = (objetivo * 0x9E3779B97F4A7C15L ^ estado) * 0xC2B2AE3D27D4EB4FL;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        /**
+         * Retorna a posição de um par na tabela, ou -1 se o par não estiver guardado.
+         */
+        private int procurar(long objetivo, long estado) {
+            int mascara = objetivos.length - 1;
+            for (int i = dispersao(objetivo, estado) & mascara; ocupacao[i] != VAZIA; i = (i + 1) & mascara) {
+                if (ocupacao[i] == OCUPADA && objetivos[i] == objetivo && estados[i] == estado) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Retorna o custo até ao objetivo de um estado, marcando a entrada como a usada mais recentemente.
+         *
+         * @return O custo, ou NaN se o par não estiver guardado
+         */
+        synchronized double custo(long objetivo, long estado) {
+            int i = procurar(objetivo, estado);
+            if (i < 0) {
+                return Double.NaN;
+            }
+            desligar(i);
+            ligarNoFim(i);
+            return custos[i];
+        }
+
+        /**
+         * Retorna o movimento seguinte no caminho guardado de um estado para o objetivo.
+         *
+         * @return O movimento, SEM_MOVIMENTO para o próprio objetivo, ou SEM_MOVIMENTO - 1 se o par não estiver guardado
+         */
+        synchronized int movimento(long objetivo, long estado) {
+            int i = procurar(objetivo, estado);
+            return i < 0 ? SEM_MOVIMENTO - 1 : movimentos[i];
+        }
+
+        /**
+         * Guarda (ou atualiza) o custo e o movimento seguinte de um estado, removendo a entrada usada há mais tempo se a
+         * faixa ficar cheia.
+         *
+         * @return O número de entradas removidas
+         */
+        synchronized int guardar(long objetivo, long estado, double custo, int movimento) {
+            if (maximo == 0) {
+                return 0;
+            }
+            int mascara = objetivos.length - 1;
+            int livre = -1;
+            int i = dispersao(objetivo, estado) & mascara;
+            for (; ocupacao[i] != VAZIA; i = (i + 1) & mascara) {
+                if (ocupacao[i] == OCUPADA && objetivos[i] == objetivo && estados[i] == estado) {
+                    custos[i] = custo;
+                    movimentos[i] = movimento;
+                    desligar(i);
+                    ligarNoFim(i);
+                    return 0;
+                }
+                if (ocupacao[i] == REMOVIDA && livre < 0) {
+                    livre = i;
+                }
+            }
+            if (livre >= 0) {
+                i = livre;
+                removidas--;
+            }
+            colocar(i, objetivo, estado, custo, movimento);
+            int removidasAgora = 0;
+            if (tamanho > maximo) {
+                int antiga = maisAntiga;
+                desligar(antiga);
+                ocupacao[antiga] = REMOVIDA;
+                tamanho--;
+                removidas++;
+                removidasAgora = 1;
+            }
+            if ((tamanho + removidas) * 2 > objetivos.length) {
+                reconstruir();
+            }
+            return removidasAgora;
+        }
+
+        private void colocar(int i, long objetivo, long estado, double custo, int movimento) {
+            objetivos[i] = objetivo;
+            estados[i] = estado;
+            custos[i] = custo;
+            movimentos[i] = movimento;
+            ocupacao[i] = OCUPADA;
+            tamanho++;
+            ligarNoFim(i);
+        }
+
+        /**
+         * Reconstrói a tabela sem as entradas removidas, com capacidade para o dobro das entradas atuais, mantendo a
+         * ordem da LRU.
+         */
+        private void reconstruir() {
+            long[] objetivosAntigos = objetivos;
+            long[] estadosAntigos = estados;
+            double[] custosAntigos = custos;
+            int[] movimentosAntigos = movimentos;
+            int[] seguinteAntigo = seguinte;
+            int primeira = maisAntiga;
+            alocar(Math.max(16, Integer.highestOneBit(Math.max(1, tamanho)) << 2));
+            int mascara = objetivos.length - 1;
+            for (int j = primeira; j >= 0; j = seguinteAntigo[j]) {
+                int i = dispersao(objetivosAntigos[j], estadosAntigos[j]) & mascara;
+                while (ocupacao[i] != VAZIA) {
+                    i = (i + 1) & mascara;
+                }
+                colocar(i, objetivosAntigos[j], estadosAntigos[j], custosAntigos[j], movimentosAntigos[j]);
+            }
+        }
+
+        private void desligar(int i) {
+            if (anterior[i] >= 0) seguinte[anterior[i]] = seguinte[i]; else maisAntiga = seguinte[i];
+            if (seguinte[i] >= 0) anterior[seguinte[i]] = anterior[i]; else maisRecente = anterior[i];
+        }
+
+        private void ligarNoFim(int i) {
+            anterior[i] = maisRecente;
+            seguinte[i] = -1;
+            if (maisRecente >= 0) seguinte[maisRecente] = i; else maisAntiga = i;
+            maisRecente = i;
+        }
+
+        synchronized int size() {
+            return tamanho;
+        }
+
+        synchronized void limpar() {
+            alocar(16);
+        }
+    }
+
+    /**
+     * Construtor para a classe SolutionCache.
+     *
+     * @param maxSolucoes O número máximo de resultados guardados
+     * @param maxEstados O número máximo de estados cujo custo até ao objetivo é guardado (0 para não guardar nenhum)
+     */
+    public SolutionCache(int maxSolucoes, int maxEstados) {
+        if (maxSolucoes < 1 || maxEstados < 0) {
+            throw new IllegalArgumentException("Tamanhos inválidos para a cache");
+        }
+        solucoes = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Par, SearchResult> mais) {
+                if (size() > maxSolucoes) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        // O limite de estados é repartido pelas faixas, pelo que a soma dos limites é exatamente maxEstados
+        faixas = new Faixa[Math.max(1, Math.min(FAIXAS, maxEstados))];
+        for (int i = 0; i < faixas.length; i++) {
+            faixas[i] = new Faixa(maxEstados / faixas.length + (i < maxEstados % faixas.length ? 1 : 0));
+        }
+    }
+
+    private Faixa faixa(long objetivo, long estado) {
+        long h = (objetivo * 31 + estado) * 0x9E3779B97F4A7C15L;
+        return faixas[(int) ((h >>> 33) % faixas.length)];
+    }
+
+    /**
+     * Resolve o problema com o algoritmo dado, a menos que o resultado (ou um caminho que passe pelo layout inicial
+     * para o mesmo objetivo) já esteja guardado.
+     *
+     * @param engine O algoritmo a usar se o resultado não estiver guardado
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return O resultado da pesquisa
+     */
+    public SearchResult solve(SearchEngine engine, Ilayout s, Ilayout goal) {
+        return solve(engine, s, goal, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Resolve o problema com o algoritmo dado e um orçamento, a menos que o resultado já esteja guardado. Só são
+     * guardados os resultados definitivos (com solução ou sem solução); os que esgotaram o orçamento não.
+     *
+     * @param engine O algoritmo a usar se o resultado não estiver guardado
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param orcamento Os limites da pesquisa
+     * @return O resultado da pesquisa
+     */
+    public SearchResult solve(SearchEngine engine, Ilayout s, Ilayout goal, SearchBudget orcamento) {
+        SearchResult guardado = get(s, goal);
+        if (guardado != null) {
+            return guardado;
+        }
+        SearchResult resultado = engine.solve(s, goal, orcamento);
+        put(s, goal, resultado);
+        return resultado;
+    }
+
+    /**
+     * Procura o resultado de um problema: primeiro entre as soluções guardadas e depois entre os estados dos caminhos
+     * guardados para o mesmo objetivo, refazendo o resto do caminho a partir do layout inicial.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @return O resultado guardado, ou null se não houver nenhum
+     */
+    public SearchResult get(Ilayout s, Ilayout goal) {
+        synchronized (this) {
+            SearchResult resultado = solucoes.get(new Par(s.stateKey(), goal.stateKey()));
+            if (resultado != null) {
+                hits++;
+                return resultado;
+            }
+        }
+        SearchResult resto = resto(s, goal.stateKey());
+        synchronized (this) {
+            if (resto != null) {
+                subpathHits++;
+            } else {
+                misses++;
+            }
+        }
+        return resto;
+    }
+
+    /**
+     * Guarda o resultado de um problema. Se o resultado tiver uma solução provada ótima, o custo até ao objetivo e o
+     * movimento seguinte de cada estado do caminho também são guardados.
+     *
+     * @param s o layout inicial
+     * @param goal o layout objetivo
+     * @param resultado O resultado da pesquisa; os resultados que esgotaram o orçamento ou foram cancelados são ignorados
+     */
+    public void put(Ilayout s, Ilayout goal, SearchResult resultado) {
+        SearchResult.Status status = resultado.getStatus();
+        if (status != SearchResult.Status.SOLVED && status != SearchResult.Status.UNSOLVABLE) {
+            return;
+        }
+        synchronized (this) {
+            solucoes.put(new Par(s.stateKey(), goal.stateKey()), resultado);
+        }
+        // Os custos de um caminho subótimo sobrestimariam a heurística e os trechos das pesquisas seguintes
+        if (resultado.getSuboptimality() != 1.0) {
+            return;
+        }
+        List<SearchEngine.State> caminho = resultado.getPath();
+        long objetivo = goal.stateKey();
+        double custo = resultado.getCost();
+        for (int i = 0; i < caminho.size(); i++) {
+            SearchEngine.State e = caminho.get(i);
+            int move = i + 1 < caminho.size() ? movimento(e, caminho.get(i + 1), goal) : SEM_MOVIMENTO;
+            evictions.add(faixa(objetivo, e.getKey()).guardar(objetivo, e.getKey(), custo - e.getG(), move));
+        }
+    }
+
+    /**
+     * Retorna o custo até ao objetivo de um estado que está no caminho de uma solução guardada.
+     *
+     * @param chave A chave do estado
+     * @param goal o layout objetivo
+     * @return O custo até ao objetivo, ou NaN se não for conhecido
+     */
+    public double costToGoal(long chave, Ilayout goal) {
+        return costToGoal(chave, goal.stateKey());
+    }
+
+    private double costToGoal(long chave, long objetivo) {
+        double custo = faixa(objetivo, chave).custo(objetivo, chave);
+        if (!Double.isNaN(custo)) {
+            heuristicHits.increment();
+        }
+        return custo;
+    }
+
+    /**
+     * Procura o movimento que leva de um estado do caminho ao seguinte, com o custo do passo.
+     */
+    private static int movimento(SearchEngine.State de, SearchEngine.State para, Ilayout goal) {
+        double passo = para.getG() - de.getG();
+        int[] melhor = {SEM_MOVIMENTO};
+        double[] custoMelhor = {Double.POSITIVE_INFINITY};
+        Ilayout origem = de.getLayout();
+        if (origem instanceof CachedLayout) {
+            origem = ((CachedLayout) origem).layout;
+        }
+        origem.forEachChild(goal, (move, key, cost, h) -> {
+            // Entre os movimentos que chegam ao mesmo estado, o do caminho é o que tem o custo do passo
+            if (key == para.getKey() && Math.abs(cost - passo) < Math.abs(custoMelhor[0] - passo)) {
+                melhor[0] = move;
+                custoMelhor[0] = cost;
+            }
+        });
+        return melhor[0];
+    }
+
+    /**
+     * Refaz o resto de um caminho guardado a partir do layout inicial, aplicando os movimentos guardados até ao
+     * objetivo, com os custos contados a partir desse layout. O custo até ao objetivo tem de descer a cada passo;
+     * caso contrário, ou se faltar algum estado do caminho, não há resultado.
+     *
+     * @return O resultado com o resto do caminho, ou null se o caminho não estiver guardado
+     */
+    private SearchResult resto(Ilayout s, long objetivo) {
+        Ilayout atual = s;
+        double restante = faixa(objetivo, s.stateKey()).custo(objetivo, s.stateKey());
+        if (Double.isNaN(restante)) {
+            return null;
+        }
+        List<SearchEngine.State> result = new ArrayList<>();
+        SearchEngine.State anterior = new SearchEngine.State(atual, null, 0.0, 0.0);
+        result.add(anterior);
+        while (atual.stateKey() != objetivo) {
+            int move = faixa(objetivo, atual.stateKey()).movimento(objetivo, atual.stateKey());
+            if (move < 0) {
+                return null;
+            }
+            atual = atual.apply(move);
+            double proximo = faixa(objetivo, atual.stateKey()).custo(objetivo, atual.stateKey());
+            if (!(proximo < restante)) {
+                return null;
+            }
+            restante = proximo;
+            double g = anterior.getG() + atual.getG();
+            anterior = new SearchEngine.State(atual, anterior, g, g);
+            result.add(anterior);
+        }
+        return new SearchResult(SearchResult.Status.SOLVED, result, anterior.getG(), 0);
+    }
+
+    /**
+     * Envolve um layout para que a sua heurística use os custos exatos guardados na cache, quando existem, para o
+     * objetivo da pesquisa. Os filhos do layout envolvido também são envolvidos.
+     *
+     * @param l O layout inicial da pesquisa
+     * @return O layout envolvido
+     */
+    public Ilayout withCachedHeuristic(Ilayout l) {
+        return l instanceof CachedLayout ? l : new CachedLayout(l);
+    }
+
+    /**
+     * Retorna o número de pedidos respondidos com uma solução guardada.
+     *
+     * @return O número de hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retorna o número de pedidos respondidos com o resto do caminho de uma solução guardada.
+     *
+     * @return O número de hits em trechos
+     */
+    public synchronized long getSubpathHits() {
+        return subpathHits;
+    }
+
+    /**
+     * Retorna o número de pedidos sem resultado guardado.
+     *
+     * @return O número de misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Retorna o número de valores da heurística substituídos por custos exatos guardados.
+     *
+     * @return O número de hits da heurística
+     */
+    public long getHeuristicHits() {
+        return heuristicHits.sum();
+    }
+
+    /**
+     * Retorna o número de entradas removidas por falta de espaço.
+     *
+     * @return O número de remoções
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Retorna o número de resultados guardados.
+     *
+     * @return O número de resultados
+     */
+    public synchronized int size() {
+        return solucoes.size();
+    }
+
+    /**
+     * Remove todas as entradas, mantendo as métricas.
+     */
+    public synchronized void clear() {
+        solucoes.clear();
+        for (Faixa f : faixas) {
+            f.limpar();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        int estados = 0;
+        for (Faixa f : faixas) {
+            estados += f.size();
+        }
+        return "SolutionCache: solucoes=" + solucoes.size() + ", estados=" + estados + ", hits=" + hits
+                + ", hitsTrechos=" + subpathHits + ", misses=" + misses + ", hitsHeuristica=" + heuristicHits.sum()
+                + ", removidos=" + evictions.sum();
+    }
+
+    /**
+     * A classe interna CachedLayout envolve um layout e substitui o valor da heurística pelo custo exato guardado na
+     * cache, quando este é conhecido. Tudo o resto, incluindo os limites da pesquisa, é delegado no layout envolvido.
+     */
+    private final class CachedLayout implements Ilayout {
+        private final Ilayout layout;
+
+        CachedLayout(Ilayout layout) {
+            this.layout = layout;
+        }
+
+        private Ilayout desembrulhar(Ilayout l) {
+            return l instanceof CachedLayout ? ((CachedLayout) l).layout : l;
+        }
+
+        private double h(long chave, long objetivo, double h) {
+            double exato = costToGoal(chave, objetivo);
+            return Double.isNaN(exato) ? h : exato;
+        }
+
+        @Override
+        public List<Ilayout> children() {
+            List<Ilayout> filhos = layout.children();
+            List<Ilayout> result = new ArrayList<>(filhos.size());
+            for (Ilayout f : filhos) {
+                result.add(new CachedLayout(f));
+            }
+            return result;
+        }
+
+        @Override
+        public void forEachChild(Ilayout goal, ChildSink sink) {
+            Ilayout objetivo = desembrulhar(goal);
+            long chaveObjetivo = objetivo.stateKey();
+            layout.forEachChild(objetivo, (move, key, cost, h) -> sink.accept(move, key, cost, h(key, chaveObjetivo, h)));
+        }
+
+        @Override
+        public Ilayout apply(int move) {
+            return new CachedLayout(layout.apply(move));
+        }
+
+        @Override
+        public boolean isGoal(Ilayout l) {
+            return layout.isGoal(desembrulhar(l));
+        }
+
+        @Override
+        public int getValue() {
+            return layout.getValue();
+        }
+
+        @Override
+        public long stateKey() {
+            return layout.stateKey();
+        }
+
+        @Override
+        public double getG() {
+            return layout.getG();
+        }
+
+        @Override
+        public double getH(Ilayout actual, Ilayout goal) {
+            Ilayout objetivo = desembrulhar(goal);
+            Ilayout atual = desembrulhar(actual);
+            return h(atual.stateKey(), objetivo.stateKey(), layout.getH(atual, objetivo));
+        }
+
+        @Override
+        public boolean hasIntegralCosts() {
+            return layout.hasIntegralCosts();
+        }
+
+        @Override
+        public double upperBound(Ilayout goal) {
+            return layout.upperBound(desembrulhar(goal));
+        }
+
+        @Override
+        public double lowerBound(long key, Ilayout goal) {
+            return layout.lowerBound(key, desembrulhar(goal));
+        }
+
+        @Override
+        public long[] keyRange(Ilayout goal, double custoMaximo) {
+            return layout.keyRange(desembrulhar(goal), custoMaximo);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Ilayout && layout.equals(desembrulhar((Ilayout) o));
+        }
+
+        @Override
+        public int hashCode() {
+            return layout.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return layout.toString();
+        }
+    }
+}
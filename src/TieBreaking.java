@@ -0,0 +1,11 @@
+/**
+ * Ordem de desempate entre os estados com o mesmo f numa {@link BucketOpenList}.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public enum TieBreaking {
+    /** O estado inserido há mais tempo sai primeiro. */
+    FIFO,
+    /** O estado inserido mais recentemente sai primeiro (favorece os estados mais profundos). */
+    LIFO
+}
@@ -0,0 +1,54 @@
+import java.util.Arrays;
+
+/**
+ * Tabela de transposição de capacidade limitada: evita voltar a expandir, na mesma iteração, estados já
+ * alcançados com um custo igual ou menor. Cada chave tem uma única posição na tabela e um estado novo substitui
+ * sempre o que lá estava, pelo que a tabela nunca cresce nem aloca memória durante a pesquisa. Limpar a tabela
+ * apenas muda a geração atual, invalidando todas as entradas em tempo constante.
+ *
+ * @author Robim Rodrigues, Nuno Carvalho, Davide Pinto
+ */
+public class TranspositionTable implements SearchEngine.ClosedSet {
+    private final long[] chaves;
+    private final double[] custos;
+    private final int[] geracoes;
+    private int geracao = 1;
+
+    /**
+     * Construtor para a classe TranspositionTable.
+     *
+     * @param capacidade O número máximo de estados guardados
+     */
+    public TranspositionTable(int capacidade) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("A capacidade da tabela de transposição tem de ser positiva");
+        }
+        chaves = new long[capacidade];
+        custos = new double[capacidade];
+        geracoes = new int[capacidade];
+    }
+
+    @Override
+    public void clear() {
+        if (++geracao == 0) {
+            Arrays.fill(geracoes, 0);
+            geracao = 1;
+        }
+    }
+
+    @Override
+    public boolean close(SearchEngine.State e) {
+        long h = e.getKey() * 0x9E3779B97F4A7C15L;
+        int i = (int) Long.remainderUnsigned(h ^ (h >>> 32), chaves.length);
+        if (geracoes[i] == geracao && chaves[i] == e.getKey() && custos[i] <= e.getG()) {
+            return false;
+        }
+        geracoes[i] = geracao;
+        chaves[i] = e.getKey();
+        custos[i] = e.getG();
+        return true;
+    }
+
+    @Override
+    public boolean isClosed(long chave, double g) {return false;}
+}